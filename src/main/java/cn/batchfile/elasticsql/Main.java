@@ -10,6 +10,12 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
+import cn.batchfile.elasticsql.cache.IndexWatcher;
+import cn.batchfile.elasticsql.cache.ResultCache;
+import cn.batchfile.elasticsql.elasticsearch.BulkLoadManager;
+import cn.batchfile.elasticsql.elasticsearch.StatementExecutor;
+import cn.batchfile.elasticsql.elasticsearch.WriteBehindBuffer;
+import cn.batchfile.elasticsql.schema.SchemaManager;
 import cn.batchfile.elasticsql.server.HttpServer;
 
 import com.github.mpjct.jmpjct.JMP;
@@ -47,6 +53,25 @@ public class Main {
         }
         logger.info("socket server started");
         
+        // 监控索引变化，使缓存的查询结果失效
+        StatementExecutor watcherExecutor = new StatementExecutor();
+        watcherExecutor.connect(JMP.config.getProperty("elasticsearch.http"), JMP.config.getProperty("elasticsearch.transport"));
+        long pollInterval = Long.parseLong(JMP.config.getProperty("cache.poll_interval", "5").trim()) * 1000;
+        new IndexWatcher(watcherExecutor.getClient(), ResultCache.getInstance(), pollInterval).start();
+        logger.info("index watcher started");
+        
+        // 在内存中维护索引和字段的目录，回答information_schema的查询
+        SchemaManager.getInstance().start(watcherExecutor.getClient());
+        logger.info("schema manager started");
+        
+        // 缓存小批量的写入，合并成bulk请求
+        WriteBehindBuffer.getInstance().start(watcherExecutor.getClient());
+        logger.info("write behind buffer started");
+        
+        // 恢复上次未完成的批量导入修改的索引设置
+        BulkLoadManager.getInstance().start(watcherExecutor.getClient());
+        logger.info("bulk load manager started");
+        
         // 启动web服务
         new HttpServer().start();
         logger.info("http server started");
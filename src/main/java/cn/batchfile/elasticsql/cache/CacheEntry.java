@@ -0,0 +1,90 @@
+package cn.batchfile.elasticsql.cache;
+
+/**
+ * A cached result, the result set is kept compressed in pages of the off heap store
+ */
+public class CacheEntry {
+	private String key;
+	private String[] tables;
+	private long[] generations;
+	private int[] pages;
+	private int length;
+	private int rawLength;
+	private long created;
+	private long expireAt;
+	private long lastAccess;
+	private long hits;
+	
+	public CacheEntry(String key, String[] tables, long[] generations, int[] pages, int length, int rawLength, long ttl) {
+		this.key = key;
+		this.tables = tables;
+		this.generations = generations;
+		this.pages = pages;
+		this.length = length;
+		this.rawLength = rawLength;
+		this.created = System.currentTimeMillis();
+		this.expireAt = created + ttl;
+		this.lastAccess = created;
+	}
+	
+	public String getKey() {
+		return key;
+	}
+	
+	public String[] getTables() {
+		return tables;
+	}
+	
+	/**
+	 * Generations of the tables when the result was read
+	 */
+	public long[] getGenerations() {
+		return generations;
+	}
+	
+	public int[] getPages() {
+		return pages;
+	}
+	
+	/**
+	 * Compressed length
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Length of the encoded result before compression
+	 */
+	public int getRawLength() {
+		return rawLength;
+	}
+	
+	public long getCreated() {
+		return created;
+	}
+	
+	public long getLastAccess() {
+		return lastAccess;
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public boolean isExpired(long now) {
+		return now >= expireAt;
+	}
+	
+	/**
+	 * Off heap memory used by this entry
+	 */
+	public long getSize() {
+		return (long)pages.length * OffHeapStore.PAGE_SIZE;
+	}
+	
+	void touch(long now) {
+		hits ++;
+		lastAccess = now;
+	}
+}
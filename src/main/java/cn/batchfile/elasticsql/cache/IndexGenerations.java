@@ -0,0 +1,96 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.regex.Regex;
+
+/**
+ * Generation counter of each index, it is bumped whenever the index is written.
+ * Statements may name an alias or a wildcard pattern instead of the index,
+ * those names are bumped as well when one of the indices behind them changes.
+ * A generation is the value of a clock shared by all names, a name seen for
+ * the first time starts at the clock, so a name which has been dropped comes
+ * back newer than any snapshot taken before it was dropped. Names no cached
+ * result reads are dropped, the map does not grow with every name queried.
+ */
+public class IndexGenerations {
+	
+	private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong clock = new AtomicLong();
+	private volatile Map<String, Set<String>> aliases = new HashMap<String, Set<String>>();
+	
+	public long get(String name) {
+		AtomicLong generation = generations.get(name);
+		if (generation == null) {
+			AtomicLong created = new AtomicLong(clock.get());
+			generation = generations.putIfAbsent(name, created);
+			if (generation == null) {
+				generation = created;
+			}
+		}
+		return generation.get();
+	}
+	
+	public long[] snapshot(String[] names) {
+		long[] snapshot = new long[names.length];
+		for (int i = 0; i < names.length; i ++) {
+			snapshot[i] = get(names[i]);
+		}
+		return snapshot;
+	}
+	
+	public boolean isCurrent(String[] names, long[] snapshot) {
+		for (int i = 0; i < names.length; i ++) {
+			if (get(names[i]) != snapshot[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Bump every known name that resolves to the index. A pattern is written
+	 * for the indices of a partitioned table, it bumps every name it matches.
+	 */
+	public synchronized void bump(String index) {
+		Set<String> indexAliases = aliases.get(index);
+		if (indexAliases == null) {
+			indexAliases = Collections.emptySet();
+		}
+		
+		long generation = clock.incrementAndGet();
+		for (Map.Entry<String, AtomicLong> entry : generations.entrySet()) {
+			String name = entry.getKey();
+			if (name.equals(index) || indexAliases.contains(name) || Regex.simpleMatch(name, index) || Regex.simpleMatch(index, name)) {
+				entry.getValue().set(generation);
+			}
+		}
+	}
+	
+	/**
+	 * Drop the names not in use. A statement in flight whose name is dropped
+	 * reads it back at the clock, its result is not cached if anything was
+	 * written meanwhile.
+	 * 
+	 * @param names names read by the cached results
+	 */
+	public synchronized void retain(Set<String> names) {
+		generations.keySet().retainAll(names);
+	}
+	
+	public int size() {
+		return generations.size();
+	}
+	
+	/**
+	 * @param aliases aliases of each index
+	 */
+	public void setAliases(Map<String, Set<String>> aliases) {
+		this.aliases = aliases;
+	}
+}
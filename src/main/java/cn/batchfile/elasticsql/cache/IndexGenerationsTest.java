@@ -0,0 +1,58 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class IndexGenerationsTest {
+	@Test
+	public void testBump() {
+		IndexGenerations generations = new IndexGenerations();
+		Map<String, Set<String>> aliases = new HashMap<String, Set<String>>();
+		aliases.put("logs-2024.01", Collections.singleton("logs"));
+		generations.setAliases(aliases);
+
+		String[] names = {"logs", "logs-*", "users"};
+		long[] snapshot = generations.snapshot(names);
+		assertTrue(generations.isCurrent(names, snapshot));
+		generations.bump("logs-2024.01");
+		assertEquals(snapshot[2], generations.get("users"));
+		assertTrue(generations.get("logs") > snapshot[0]);
+		assertTrue(generations.get("logs-*") > snapshot[1]);
+		assertFalse(generations.isCurrent(names, snapshot));
+	}
+
+	@Test
+	public void testRetain() {
+		IndexGenerations generations = new IndexGenerations();
+		String[] kept = {"users"};
+		long[] keptSnapshot = generations.snapshot(kept);
+		for (int i = 0; i < 1000; i ++) {
+			generations.get("logs-" + i);
+		}
+		generations.retain(new HashSet<String>(Collections.singleton("users")));
+		assertEquals(1, generations.size());
+		assertTrue(generations.isCurrent(kept, keptSnapshot));
+	}
+
+	@Test
+	public void testDroppedNameInFlight() {
+		IndexGenerations generations = new IndexGenerations();
+		String[] names = {"orders"};
+		long[] snapshot = generations.snapshot(names);
+		generations.retain(Collections.<String>emptySet());
+		generations.bump("orders");
+		generations.retain(Collections.<String>emptySet());
+		// the write in between is not lost with the name
+		assertFalse(generations.isCurrent(names, snapshot));
+
+		snapshot = generations.snapshot(names);
+		generations.retain(Collections.<String>emptySet());
+		assertTrue(generations.isCurrent(names, snapshot));
+	}
+}
@@ -0,0 +1,95 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.action.admin.indices.stats.IndexStats;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.hppc.cursors.ObjectCursor;
+
+/**
+ * Poll index statistics and invalidate cached results of the indices
+ * changed by writes which did not go through the proxy
+ */
+public class IndexWatcher implements Runnable {
+	
+	private static final Logger logger = Logger.getLogger("IndexWatcher");
+	private Client client;
+	private ResultCache cache;
+	private long interval;
+	private Map<String, String> signatures = new HashMap<String, String>();
+	
+	public IndexWatcher(Client client, ResultCache cache, long interval) {
+		this.client = client;
+		this.cache = cache;
+		this.interval = interval;
+	}
+	
+	public void start() {
+		Thread thread = new Thread(this, "index-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void run() {
+		while (true) {
+			try {
+				poll();
+			} catch (Exception e) {
+				logger.warn("can not poll index stats: " + e.getMessage());
+			}
+			
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+	public void poll() {
+		Map<String, Set<String>> aliases = new HashMap<String, Set<String>>();
+		for (ObjectCursor<IndexMetaData> index : client.admin().cluster().prepareState().clear().setMetaData(true)
+				.get().getState().getMetaData().getIndices().values()) {
+			Set<String> names = new HashSet<String>();
+			for (ObjectCursor<String> alias : index.value.getAliases().keys()) {
+				names.add(alias.value);
+			}
+			aliases.put(index.value.getIndex(), names);
+		}
+		cache.getGenerations().setAliases(aliases);
+		
+		Map<String, IndexStats> indices = client.admin().indices().prepareStats().clear()
+				.setIndexing(true).setDocs(true).setRefresh(true).get().getIndices();
+		for (Map.Entry<String, IndexStats> entry : indices.entrySet()) {
+			String index = entry.getKey();
+			String signature = signature(entry.getValue().getPrimaries());
+			String last = signatures.put(index, signature);
+			if (last != null && !last.equals(signature)) {
+				logger.debug(String.format("index %s changed, %s -> %s", index, last, signature));
+				cache.invalidate(index);
+			}
+		}
+		
+		// deleted indices
+		for (String index : new HashSet<String>(signatures.keySet())) {
+			if (!indices.containsKey(index)) {
+				signatures.remove(index);
+				cache.invalidate(index);
+			}
+		}
+	}
+	
+	private String signature(CommonStats stats) {
+		return String.format("%d/%d/%d/%d", 
+				stats.getIndexing().getTotal().getIndexCount(),
+				stats.getIndexing().getTotal().getDeleteCount(),
+				stats.getDocs().getCount(),
+				stats.getRefresh().getTotal());
+	}
+}
@@ -0,0 +1,125 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page allocator over direct memory slabs, the cached data does not live on 
+ * the java heap and does not add to garbage collection pauses.
+ * Slabs are allocated on demand up to the capacity and are never released,
+ * freed pages are reused by later entries.
+ */
+public class OffHeapStore {
+	
+	public static final int PAGE_SIZE = 4096;
+	private static final int SLAB_SIZE = 4 * 1024 * 1024;
+	
+	private final long capacity;
+	private final int pagesPerSlab;
+	private final int maxPages;
+	private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+	private int[] freePages = new int[1024];
+	private int freeCount;
+	private int allocatedPages;
+	
+	public OffHeapStore(long capacity) {
+		this.capacity = capacity;
+		this.pagesPerSlab = (int)Math.max(1, Math.min(SLAB_SIZE, capacity) / PAGE_SIZE);
+		this.maxPages = (int)Math.min(Integer.MAX_VALUE, capacity / PAGE_SIZE);
+	}
+	
+	public static int pages(int length) {
+		return (length + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+	
+	/**
+	 * Number of pages which can still be written, including the ones of slabs not allocated yet
+	 */
+	public int getAvailablePages() {
+		return freeCount + maxPages - allocatedPages;
+	}
+	
+	/**
+	 * Copy data into free pages
+	 * @return the pages holding the data, null if there are not enough free pages
+	 */
+	public int[] write(byte[] data) {
+		int[] pages = new int[pages(data.length)];
+		if (pages.length > getAvailablePages()) {
+			return null;
+		}
+		
+		for (int i = 0; i < pages.length; i ++) {
+			if (freeCount == 0) {
+				allocateSlab();
+			}
+			pages[i] = freePages[-- freeCount];
+			
+			ByteBuffer page = page(pages[i]);
+			int offset = i * PAGE_SIZE;
+			page.put(data, offset, Math.min(PAGE_SIZE, data.length - offset));
+		}
+		return pages;
+	}
+	
+	public byte[] read(int[] pages, int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < pages.length; i ++) {
+			int offset = i * PAGE_SIZE;
+			page(pages[i]).get(data, offset, Math.min(PAGE_SIZE, length - offset));
+		}
+		return data;
+	}
+	
+	public void free(int[] pages) {
+		for (int page : pages) {
+			if (freeCount == freePages.length) {
+				int[] grown = new int[freePages.length * 2];
+				System.arraycopy(freePages, 0, grown, 0, freeCount);
+				freePages = grown;
+			}
+			freePages[freeCount ++] = page;
+		}
+	}
+	
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Direct memory allocated by the slabs
+	 */
+	public long getAllocated() {
+		return (long)allocatedPages * PAGE_SIZE;
+	}
+	
+	/**
+	 * Direct memory used by the pages of cached entries
+	 */
+	public long getUsed() {
+		return getAllocated() - (long)freeCount * PAGE_SIZE;
+	}
+	
+	private ByteBuffer page(int page) {
+		ByteBuffer slab = slabs.get(page / pagesPerSlab).duplicate();
+		int position = (page % pagesPerSlab) * PAGE_SIZE;
+		slab.limit(position + PAGE_SIZE);
+		slab.position(position);
+		return slab;
+	}
+	
+	private void allocateSlab() {
+		int count = Math.min(pagesPerSlab, maxPages - allocatedPages);
+		int first = slabs.size() * pagesPerSlab;
+		slabs.add(ByteBuffer.allocateDirect(count * PAGE_SIZE));
+		allocatedPages += count;
+		
+		// hand out the lowest pages first
+		int[] pages = new int[count];
+		for (int i = 0; i < count; i ++) {
+			pages[i] = first + count - 1 - i;
+		}
+		free(pages);
+	}
+}
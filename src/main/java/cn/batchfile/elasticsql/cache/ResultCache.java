@@ -0,0 +1,271 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.elasticsearch.common.compress.lzf.ChunkDecoder;
+import org.elasticsearch.common.compress.lzf.LZFEncoder;
+import org.elasticsearch.common.compress.lzf.LZFException;
+import org.elasticsearch.common.compress.lzf.util.ChunkDecoderFactory;
+
+import com.github.mpjct.jmpjct.JMP;
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Result cache shared by all connections.
+ * Results are keyed by schema and normalized sql, the time to live is taken 
+ * from the tables the statement reads (cache.ttl.&lt;table&gt;, or cache.ttl),
+ * and the total size is bounded by cache.max_memory with lru or lfu eviction.
+ * Results are encoded, compressed with lzf and kept out of the java heap.
+ * Every entry remembers the generations of its tables, a write to one of 
+ * them invalidates the entry no matter how long its ttl is.
+ */
+public class ResultCache {
+	
+	public static final String STATS_TABLE = "cache_stats";
+	
+	private static final Logger logger = Logger.getLogger("ResultCache");
+	private static ResultCache instance;
+	
+	private final Properties config;
+	private final boolean enabled;
+	private final long defaultTtl;
+	private final long maxMemory;
+	private final boolean lfu;
+	
+	// access ordered, the eldest entry is the least recently used one
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(256, 0.75f, true);
+	private final IndexGenerations generations = new IndexGenerations();
+	private final OffHeapStore store;
+	private final ChunkDecoder decoder = ChunkDecoderFactory.optimalInstance();
+	private long rawBytes;
+	private long storedBytes;
+	private long hits;
+	private long misses;
+	private long inserts;
+	private long notCached;
+	private long evictions;
+	private long expirations;
+	private long invalidations;
+	
+	public static synchronized ResultCache getInstance() {
+		if (instance == null) {
+			instance = new ResultCache(JMP.config);
+		}
+		return instance;
+	}
+	
+	public ResultCache(Properties config) {
+		this.config = config;
+		this.enabled = Boolean.parseBoolean(config.getProperty("cache.enabled", "true").trim());
+		this.defaultTtl = Long.parseLong(config.getProperty("cache.ttl", "60").trim()) * 1000;
+		this.maxMemory = Long.parseLong(config.getProperty("cache.max_memory", "64").trim()) * 1024 * 1024;
+		this.store = new OffHeapStore(maxMemory);
+		this.lfu = StringUtils.equalsIgnoreCase(config.getProperty("cache.eviction", "lru").trim(), "lfu");
+	}
+	
+	public static String key(String schema, String sql) {
+		return StringUtils.defaultString(schema) + ":" + SqlNormalizer.normalize(sql);
+	}
+	
+	/**
+	 * Time to live of a statement reading the tables, the smallest one wins
+	 * @return milliseconds, 0 if the result should not be cached
+	 */
+	public long getTtl(String[] tables) {
+		if (!enabled || tables == null || tables.length == 0) {
+			return 0;
+		}
+		
+		long ttl = Long.MAX_VALUE;
+		for (String table : tables) {
+			String value = config.getProperty("cache.ttl." + table);
+			ttl = Math.min(ttl, value == null ? defaultTtl : Long.parseLong(value.trim()) * 1000);
+		}
+		return ttl;
+	}
+	
+	public synchronized ResultSet get(String key) {
+		if (!enabled) {
+			return null;
+		}
+		
+		long now = System.currentTimeMillis();
+		CacheEntry entry = entries.get(key);
+		if (entry != null && entry.isExpired(now)) {
+			remove(key);
+			expirations ++;
+			entry = null;
+		} else if (entry != null && !generations.isCurrent(entry.getTables(), entry.getGenerations())) {
+			remove(key);
+			invalidations ++;
+			entry = null;
+		}
+		if (entry == null) {
+			misses ++;
+			return null;
+		}
+		
+		hits ++;
+		entry.touch(now);
+		try {
+			return ResultCodec.decode(decoder.decode(store.read(entry.getPages(), entry.getLength())));
+		} catch (LZFException e) {
+			logger.error("can not decompress cached result " + key, e);
+			remove(key);
+			return null;
+		}
+	}
+	
+	/**
+	 * Take the generations of the tables before the statement is sent to elasticsearch
+	 */
+	public long[] snapshot(String[] tables) {
+		return generations.snapshot(tables);
+	}
+	
+	/**
+	 * @param snapshot generations of the tables taken before the result was read,
+	 * the result is dropped if any of them has been written since
+	 */
+	public synchronized void put(String key, String[] tables, long[] snapshot, ResultSet rs) {
+		long ttl = getTtl(tables);
+		if (ttl <= 0 || !generations.isCurrent(tables, snapshot)) {
+			notCached ++;
+			return;
+		}
+		
+		byte[] raw = ResultCodec.encode(rs);
+		byte[] data = LZFEncoder.encode(raw);
+		int pages = OffHeapStore.pages(data.length);
+		if ((long)pages * OffHeapStore.PAGE_SIZE > maxMemory) {
+			notCached ++;
+			return;
+		}
+		
+		remove(key);
+		while (store.getAvailablePages() < pages && !entries.isEmpty()) {
+			evict();
+		}
+		CacheEntry entry = new CacheEntry(key, tables, snapshot, store.write(data), data.length, raw.length, ttl);
+		entries.put(key, entry);
+		rawBytes += entry.getRawLength();
+		storedBytes += entry.getLength();
+		inserts ++;
+		logger.debug(String.format("cache %s, %d bytes, ttl %dms", key, entry.getSize(), ttl));
+	}
+	
+	/**
+	 * An index has been written, drop the results read from it
+	 */
+	public synchronized void invalidate(String index) {
+		generations.bump(index);
+		
+		Set<String> tables = new HashSet<String>();
+		Iterator<CacheEntry> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			CacheEntry entry = iter.next();
+			if (!generations.isCurrent(entry.getTables(), entry.getGenerations())) {
+				iter.remove();
+				release(entry);
+				invalidations ++;
+			} else {
+				tables.addAll(Arrays.asList(entry.getTables()));
+			}
+		}
+		generations.retain(tables);
+	}
+	
+	public IndexGenerations getGenerations() {
+		return generations;
+	}
+	
+	public synchronized void clear() {
+		for (CacheEntry entry : entries.values()) {
+			release(entry);
+		}
+		entries.clear();
+		generations.retain(Collections.<String>emptySet());
+	}
+	
+	/**
+	 * Statistics in the form of SHOW STATUS
+	 */
+	public synchronized ResultSet getStats() {
+		ResultSet rs = new ResultSet();
+		rs.addColumn(new Column("Variable_name"));
+		rs.addColumn(new Column("Value"));
+		
+		rs.addRow(new Row("enabled", String.valueOf(enabled)));
+		rs.addRow(new Row("eviction_policy", lfu ? "lfu" : "lru"));
+		rs.addRow(new Row("entries", entries.size()));
+		rs.addRow(new Row("memory_used", store.getUsed()));
+		rs.addRow(new Row("memory_limit", maxMemory));
+		rs.addRow(new Row("offheap_allocated", store.getAllocated()));
+		rs.addRow(new Row("raw_bytes", rawBytes));
+		rs.addRow(new Row("compressed_bytes", storedBytes));
+		rs.addRow(new Row("compression_ratio", String.format("%.2f", storedBytes == 0 ? 0d : (double)rawBytes / storedBytes)));
+		rs.addRow(new Row("hits", hits));
+		rs.addRow(new Row("misses", misses));
+		rs.addRow(new Row("hit_ratio", String.format("%.4f", hits + misses == 0 ? 0d : (double)hits / (hits + misses))));
+		rs.addRow(new Row("inserts", inserts));
+		rs.addRow(new Row("not_cached", notCached));
+		rs.addRow(new Row("evictions", evictions));
+		rs.addRow(new Row("expirations", expirations));
+		rs.addRow(new Row("invalidations", invalidations));
+		return rs;
+	}
+	
+	private void remove(String key) {
+		CacheEntry entry = entries.remove(key);
+		if (entry != null) {
+			release(entry);
+		}
+	}
+	
+	private void release(CacheEntry entry) {
+		store.free(entry.getPages());
+		rawBytes -= entry.getRawLength();
+		storedBytes -= entry.getLength();
+	}
+	
+	private void evict() {
+		long now = System.currentTimeMillis();
+		String victim = null;
+		long minHits = Long.MAX_VALUE;
+		
+		Iterator<Map.Entry<String, CacheEntry>> iter = entries.entrySet().iterator();
+		while (iter.hasNext()) {
+			CacheEntry entry = iter.next().getValue();
+			if (entry.isExpired(now)) {
+				iter.remove();
+				release(entry);
+				expirations ++;
+				return;
+			}
+			if (!lfu) {
+				victim = entry.getKey();
+				break;
+			}
+			if (entry.getHits() < minHits) {
+				minHits = entry.getHits();
+				victim = entry.getKey();
+			}
+		}
+		
+		if (victim != null) {
+			remove(victim);
+			evictions ++;
+		}
+	}
+}
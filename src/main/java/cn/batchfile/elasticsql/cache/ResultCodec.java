@@ -0,0 +1,84 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Encode a result set as column names followed by rows of nullable strings,
+ * this is much smaller than keeping the packets or the row objects
+ */
+public class ResultCodec {
+
+	public static byte[] encode(ResultSet rs) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			
+			out.writeInt(rs.columns.size());
+			for (Column column : rs.columns) {
+				out.writeUTF(column.name);
+			}
+			
+			out.writeInt(rs.rows.size());
+			for (Row row : rs.rows) {
+				out.writeInt(row.data.size());
+				for (Object value : row.data) {
+					if (value == null) {
+						out.writeBoolean(false);
+					} else {
+						out.writeBoolean(true);
+						writeString(out, value.toString());
+					}
+				}
+			}
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public static ResultSet decode(byte[] data) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			ResultSet rs = new ResultSet();
+			
+			int columns = in.readInt();
+			for (int i = 0; i < columns; i ++) {
+				rs.addColumn(new Column(in.readUTF()));
+			}
+			
+			int rows = in.readInt();
+			for (int i = 0; i < rows; i ++) {
+				Row row = new Row();
+				int size = in.readInt();
+				for (int j = 0; j < size; j ++) {
+					row.data.add(in.readBoolean() ? readString(in) : null);
+				}
+				rs.addRow(row);
+			}
+			return rs;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,112 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Normalize sql text so that statements which only differ in white spaces, 
+ * comments and keyword case share the same cache key.
+ * Quoted strings and identifiers are kept as they are. Field names are case
+ * sensitive in elasticsearch, so an aggregate function name is folded only
+ * when a parenthesis follows it, a column named min or count keeps its case.
+ */
+public class SqlNormalizer {
+	
+	private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+			"SELECT", "FROM", "WHERE", "AND", "OR", "NOT", "IN", "IS", "NULL", "LIKE", "BETWEEN",
+			"GROUP", "ORDER", "BY", "ASC", "DESC", "LIMIT", "AS", "HAVING", "DISTINCT", "ON",
+			"TRUE", "FALSE"));
+	private static final Set<String> FUNCTIONS = new HashSet<String>(Arrays.asList(
+			"COUNT", "SUM", "AVG", "MIN", "MAX"));
+
+	public static String normalize(String sql) {
+		StringBuilder out = new StringBuilder(sql.length());
+		int len = sql.length();
+		int i = 0;
+		boolean space = false;
+		
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"' || c == '`') {
+				int end = skipQuoted(sql, i, c);
+				appendSpace(out, space);
+				space = false;
+				out.append(sql, i, end);
+				i = end;
+			} else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-' || c == '#') {
+				while (i < len && sql.charAt(i) != '\n') {
+					i ++;
+				}
+				space = true;
+			} else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? len : end + 2;
+				space = true;
+			} else if (Character.isWhitespace(c)) {
+				space = true;
+				i ++;
+			} else if (Character.isLetter(c) || c == '_') {
+				int end = i + 1;
+				while (end < len && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+					end ++;
+				}
+				String word = sql.substring(i, end);
+				String upper = word.toUpperCase();
+				appendSpace(out, space);
+				space = false;
+				boolean fold = KEYWORDS.contains(upper) || FUNCTIONS.contains(upper) && isCall(sql, end);
+				out.append(fold ? upper : word);
+				i = end;
+			} else {
+				appendSpace(out, space);
+				space = false;
+				out.append(c);
+				i ++;
+			}
+		}
+		
+		// trailing semicolons
+		int end = out.length();
+		while (end > 0 && (out.charAt(end - 1) == ';' || out.charAt(end - 1) == ' ')) {
+			end --;
+		}
+		out.setLength(end);
+		return out.toString();
+	}
+	
+	private static void appendSpace(StringBuilder out, boolean space) {
+		if (space && out.length() > 0) {
+			out.append(' ');
+		}
+	}
+	
+	/**
+	 * @return true if a parenthesis follows the word ending at end
+	 */
+	private static boolean isCall(String sql, int end) {
+		while (end < sql.length() && Character.isWhitespace(sql.charAt(end))) {
+			end ++;
+		}
+		return end < sql.length() && sql.charAt(end) == '(';
+	}
+	
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			char c = sql.charAt(i);
+			if (c == '\\' && quote != '`') {
+				i += 2;
+			} else if (c == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				i ++;
+			}
+		}
+		return sql.length();
+	}
+}
@@ -0,0 +1,34 @@
+package cn.batchfile.elasticsql.cache;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SqlNormalizerTest {
+	@Test
+	public void testSpacesAndComments() {
+		assertEquals("SELECT a FROM t WHERE b = 1",
+				SqlNormalizer.normalize("  select a\n\tfrom t /* c */ where -- x\n b = 1 ;;"));
+		assertEquals(SqlNormalizer.normalize("SELECT a FROM t # x"), SqlNormalizer.normalize("select   a from t"));
+	}
+
+	@Test
+	public void testQuotedKept() {
+		assertEquals("SELECT a FROM t WHERE b = 'from  X' AND `Select` = \"it''s\"",
+				SqlNormalizer.normalize("select a from t where b = 'from  X' and `Select` = \"it''s\""));
+		assertEquals("SELECT a FROM t WHERE b = 'x\\' -- y'",
+				SqlNormalizer.normalize("select a from t where b = 'x\\' -- y'"));
+	}
+
+	@Test
+	public void testFunctionFolded() {
+		assertEquals("SELECT COUNT(*), MAX (a) FROM t", SqlNormalizer.normalize("select count(*), max (a) from t"));
+	}
+
+	@Test
+	public void testFunctionNameAsColumn() {
+		assertEquals("SELECT min FROM t", SqlNormalizer.normalize("select min from t"));
+		assertEquals("SELECT MIN FROM t", SqlNormalizer.normalize("SELECT MIN FROM t"));
+		assertFalse(SqlNormalizer.normalize("select min from t").equals(SqlNormalizer.normalize("select MIN from t")));
+		assertEquals("SELECT MIN(count) FROM t ORDER BY count", SqlNormalizer.normalize("select min(count) from t order by count"));
+	}
+}
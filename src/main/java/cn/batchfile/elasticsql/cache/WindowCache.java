@@ -0,0 +1,337 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Condition.OPEAR;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.KVValue;
+import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Where;
+
+import com.github.mpjct.jmpjct.JMP;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Incremental cache of date_histogram aggregations over a moving time window,
+ * such as GROUP BY date_histogram(field='ts', interval='1m') WHERE ts &gt; 'now-24h'.
+ *
+ * Buckets which ended more than cache.window.settle seconds ago are closed,
+ * their rows are kept per normalized statement. A refresh only asks
+ * elasticsearch for the first bucket of the window, which is cut by the
+ * lower bound, and for the buckets after the cached ones.
+ * Closed buckets are assumed to be immutable, writes through the proxy
+ * drop the windows of the index, late writes from outside are not seen.
+ */
+public class WindowCache {
+
+	private static final Logger logger = Logger.getLogger("WindowCache");
+	private static final DateMathParser DATE_PARSER = new DateMathParser(
+			Joda.forPattern("dateOptionalTime||yyyy-MM-dd HH:mm:ss"), TimeUnit.MILLISECONDS);
+	private static final Pattern FIXED_INTERVAL = Pattern.compile("\\d+(?:ms|s|m|h|d)");
+	private static WindowCache instance;
+
+	private final boolean enabled;
+	private final long settle;
+	private final int maxWindows;
+	private final LinkedHashMap<String, Window> windows;
+	private long refreshes;
+	private long fullFetches;
+
+	public static synchronized WindowCache getInstance() {
+		if (instance == null) {
+			instance = new WindowCache(JMP.config);
+		}
+		return instance;
+	}
+
+	public WindowCache(Properties config) {
+		this.enabled = Boolean.parseBoolean(config.getProperty("cache.window.enabled", "true").trim());
+		this.settle = Long.parseLong(config.getProperty("cache.window.settle", "60").trim()) * 1000;
+		this.maxWindows = Integer.parseInt(config.getProperty("cache.window.max_queries", "256").trim());
+		this.windows = new LinkedHashMap<String, Window>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+				return size() > maxWindows;
+			}
+		};
+	}
+
+	/**
+	 * Work out which part of the window has to be read from elasticsearch
+	 * @return null if the statement is not a date histogram over a moving window
+	 */
+	public synchronized Plan plan(String key, Select select, long now) {
+		if (!enabled || !select.isAgg || select.getGroupBys().isEmpty()) {
+			return null;
+		}
+
+		Field group = select.getGroupBys().get(0);
+		if (!(group instanceof MethodField) || !"date_histogram".equalsIgnoreCase(group.getName())) {
+			return null;
+		}
+
+		String field = null;
+		long interval = 0;
+		for (KVValue kv : ((MethodField)group).getParams()) {
+			String name = kv.key.toLowerCase();
+			if ("field".equals(name)) {
+				field = kv.value.toString();
+			} else if ("interval".equals(name)) {
+				interval = parseInterval(kv.value.toString());
+			} else if (!"format".equals(name) && !"alias".equals(name)) {
+				// time zones and offsets move the bucket boundaries
+				return null;
+			}
+		}
+		if (field == null || interval <= 0) {
+			return null;
+		}
+
+		Long lower = getLowerBound(select.getWhere(), field, now);
+		if (lower == null) {
+			return null;
+		}
+
+		long headEnd = floor(lower, interval) + interval;
+		long tailStart = floor(now - settle, interval);
+		if (tailStart <= headEnd) {
+			return null;
+		}
+
+		Plan plan = new Plan(key, select.getIndexArr(), field, group.getAlias(), headEnd, tailStart);
+		Window window = windows.get(key);
+		if (window == null || window.coveredFrom > headEnd || window.coveredTo < headEnd) {
+			plan.fetchFrom = headEnd;
+			plan.full = true;
+		} else {
+			plan.fetchFrom = window.coveredTo;
+			plan.generation = window.generation;
+			for (List<Map<String, Object>> rows : window.buckets.subMap(headEnd, window.coveredTo).values()) {
+				plan.cached.addAll(rows);
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Merge rows read for the plan with the cached buckets,
+	 * and keep the buckets which are closed now
+	 */
+	public synchronized List<Map<String, Object>> merge(Plan plan, List<Map<String, Object>> fetched) {
+		List<Map<String, Object>> head = new ArrayList<Map<String, Object>>();
+		List<Map<String, Object>> tail = new ArrayList<Map<String, Object>>();
+		TreeMap<Long, List<Map<String, Object>>> closed = new TreeMap<Long, List<Map<String, Object>>>();
+
+		for (Map<String, Object> row : fetched) {
+			Object value = row.get(plan.alias);
+			if (!(value instanceof Number)) {
+				// can not tell the bucket, do not keep anything
+				logger.debug("no bucket key in row " + row);
+				return fetched;
+			}
+
+			long bucket = ((Number)value).longValue();
+			if (bucket < plan.headEnd) {
+				head.add(row);
+			} else {
+				tail.add(row);
+				if (bucket >= plan.fetchFrom && bucket < plan.tailStart) {
+					if (!closed.containsKey(bucket)) {
+						closed.put(bucket, new ArrayList<Map<String, Object>>());
+					}
+					closed.get(bucket).add(row);
+				}
+			}
+		}
+
+		if (plan.full) {
+			fullFetches ++;
+			Window window = new Window(plan.tables);
+			window.buckets.putAll(closed);
+			window.coveredFrom = plan.headEnd;
+			window.coveredTo = plan.tailStart;
+			windows.put(plan.key, window);
+		} else {
+			refreshes ++;
+			Window window = windows.get(plan.key);
+			if (window != null && window.generation == plan.generation && window.coveredTo == plan.fetchFrom) {
+				window.buckets.headMap(plan.headEnd).clear();
+				window.buckets.putAll(closed);
+				window.coveredFrom = plan.headEnd;
+				window.coveredTo = plan.tailStart;
+				window.generation ++;
+			}
+		}
+
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(head.size() + plan.cached.size() + tail.size());
+		rows.addAll(head);
+		rows.addAll(plan.cached);
+		rows.addAll(tail);
+		return rows;
+	}
+
+	/**
+	 * An index has been written through the proxy, drop its windows. The pattern
+	 * of a partitioned table drops the windows of every index it matches.
+	 */
+	public synchronized void invalidate(String index) {
+		Iterator<Window> iter = windows.values().iterator();
+		while (iter.hasNext()) {
+			for (String table : iter.next().tables) {
+				if (table.equals(index) || Regex.simpleMatch(table, index) || Regex.simpleMatch(index, table)) {
+					iter.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		windows.clear();
+	}
+
+	public synchronized void appendStats(ResultSet rs) {
+		long buckets = 0;
+		for (Window window : windows.values()) {
+			buckets += window.buckets.size();
+		}
+		rs.addRow(new Row("window_queries", windows.size()));
+		rs.addRow(new Row("window_buckets", buckets));
+		rs.addRow(new Row("window_full_fetches", fullFetches));
+		rs.addRow(new Row("window_refreshes", refreshes));
+	}
+
+	private long floor(long time, long interval) {
+		return time - (time % interval + interval) % interval;
+	}
+
+	/**
+	 * @return milliseconds of a fixed interval, 0 for weeks, months, quarters and
+	 * years which follow the calendar, their buckets are not cut on the epoch
+	 */
+	private long parseInterval(String interval) {
+		switch (interval.trim().toLowerCase()) {
+		case "second":
+			return 1000;
+		case "minute":
+			return 60 * 1000;
+		case "hour":
+			return 60 * 60 * 1000;
+		case "day":
+			return 24 * 60 * 60 * 1000;
+		default:
+			// 1M is a month and 1m a minute, the case of the unit matters
+			if (!FIXED_INTERVAL.matcher(interval.trim()).matches()) {
+				return 0;
+			}
+			return TimeValue.parseTimeValue(interval.trim(), null).millis();
+		}
+	}
+
+	/**
+	 * The window must be a plain conjunction with only lower bounds on the time field
+	 */
+	private Long getLowerBound(Where where, String field, long now) {
+		if (where == null) {
+			return null;
+		}
+
+		Long lower = null;
+		for (Where element : where.getWheres()) {
+			if (!(element instanceof Condition) || element.getConn() != Where.CONN.AND) {
+				return null;
+			}
+
+			Condition condition = (Condition)element;
+			if (!StringUtils.equals(condition.getName(), field)) {
+				continue;
+			}
+			if (condition.getOpear() != OPEAR.GT && condition.getOpear() != OPEAR.GTE) {
+				return null;
+			}
+
+			long bound;
+			Object value = condition.getValue();
+			try {
+				bound = value instanceof Number ? ((Number)value).longValue()
+						: DATE_PARSER.parse(StringUtils.strip(value.toString(), "'\""), now);
+			} catch (Exception e) {
+				return null;
+			}
+			lower = lower == null ? bound : Math.max(lower, bound);
+		}
+		return lower;
+	}
+
+	/**
+	 * What to read for one execution of a windowed statement
+	 */
+	public static class Plan {
+		private String key;
+		private String[] tables;
+		private String field;
+		private String alias;
+		private long headEnd;
+		private long tailStart;
+		private long fetchFrom;
+		private boolean full;
+		private long generation;
+		private List<Map<String, Object>> cached = new ArrayList<Map<String, Object>>();
+
+		private Plan(String key, String[] tables, String field, String alias, long headEnd, long tailStart) {
+			this.key = key;
+			this.tables = tables;
+			this.field = field;
+			this.alias = alias;
+			this.headEnd = headEnd;
+			this.tailStart = tailStart;
+		}
+
+		/**
+		 * Restrict the filter of the statement to the first bucket and the buckets not cached
+		 */
+		public BoolFilterBuilder restrict(BoolFilterBuilder filter) {
+			if (!full) {
+				filter.must(FilterBuilders.boolFilter()
+						.should(FilterBuilders.rangeFilter(field).lt(headEnd))
+						.should(FilterBuilders.rangeFilter(field).gte(fetchFrom)));
+			}
+			return filter;
+		}
+
+		public boolean isFull() {
+			return full;
+		}
+	}
+
+	private static class Window {
+		private String[] tables;
+		private TreeMap<Long, List<Map<String, Object>>> buckets = new TreeMap<Long, List<Map<String, Object>>>();
+		private long coveredFrom;
+		private long coveredTo;
+		private long generation;
+
+		private Window(String[] tables) {
+			this.tables = tables;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package cn.batchfile.elasticsql.cache;
+
+import java.util.Properties;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.joda.time.DateTimeZone;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class WindowCacheTest {
+	private static final long NOW = new DateTime(2015, 3, 10, 12, 0, DateTimeZone.UTC).getMillis();
+	private final WindowCache cache = new WindowCache(new Properties());
+
+	@Test
+	public void testFixedInterval() throws Exception {
+		assertNotNull(plan("1h", "now-1d"));
+		assertNotNull(plan("hour", "now-1d"));
+		assertNotNull(plan("7d", "now-60d"));
+		assertNotNull(plan("30m", "now-1d"));
+	}
+
+	@Test
+	public void testWeeklyInterval() throws Exception {
+		// weeks start on monday in elasticsearch, not on the thursday of the epoch
+		assertNull(plan("1w", "now-60d"));
+		assertNull(plan("week", "now-60d"));
+		assertNull(plan("2w", "now-60d"));
+	}
+
+	@Test
+	public void testCalendarInterval() throws Exception {
+		assertNull(plan("1M", "now-1y"));
+		assertNull(plan("month", "now-1y"));
+		assertNull(plan("1q", "now-2y"));
+		assertNull(plan("quarter", "now-2y"));
+		assertNull(plan("1y", "now-5y"));
+		assertNull(plan("year", "now-5y"));
+	}
+
+	private WindowCache.Plan plan(String interval, String from) throws Exception {
+		String sql = String.format("select count(*) from logs where ts >= '%s' "
+				+ "group by date_histogram(field='ts','interval'='%s','alias'='t')", from, interval);
+		Select select = new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr(sql));
+		return cache.plan(sql, select, NOW);
+	}
+}
@@ -0,0 +1,261 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.hppc.cursors.ObjectObjectCursor;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Index settings tuned while sessions load data in bulk: refresh is turned off
+ * and, if the session asks, replicas are dropped. The original settings are
+ * written to the bulk_load.journal file before they are changed, the indices
+ * left in the journal by a proxy which died during a load are restored when
+ * it starts again.
+ */
+public class BulkLoadManager {
+
+	private static final Logger logger = Logger.getLogger("BulkLoadManager");
+	private static final String REFRESH_INTERVAL = "index.refresh_interval";
+	private static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+	private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+	private static BulkLoadManager instance;
+
+	private File journal;
+	private Client client;
+	/** original settings, keyed by setting:index */
+	private Properties originals = new Properties();
+	/** number of loads of each index */
+	private Map<String, Integer> loads = new HashMap<String, Integer>();
+
+	public static synchronized BulkLoadManager getInstance() {
+		if (instance == null) {
+			instance = new BulkLoadManager(JMP.config);
+		}
+		return instance;
+	}
+
+	public BulkLoadManager(Properties config) {
+		this.journal = new File(config.getProperty("bulk_load.journal", "./bulk_load.journal").trim());
+	}
+
+	/**
+	 * Restore the indices left in the journal, and the indices being loaded when the proxy stops
+	 */
+	public synchronized void start(Client client) {
+		this.client = client;
+		if (journal.exists()) {
+			FileInputStream in = null;
+			try {
+				in = new FileInputStream(journal);
+				originals.load(in);
+			} catch (IOException e) {
+				logger.error("can not read bulk load journal " + journal, e);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+			restoreAll();
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread("bulk-load-restore") {
+			public void run() {
+				restoreAll();
+			}
+		});
+	}
+
+	public boolean isStarted() {
+		return client != null;
+	}
+
+	/**
+	 * Start the bulk load of a session, the indices are tuned when they are written
+	 */
+	public Load open() {
+		return new Load();
+	}
+
+	/**
+	 * Bulk load of one session
+	 */
+	public class Load {
+		private long started = System.currentTimeMillis();
+		private Set<String> tables = new HashSet<String>();
+		private Set<String> indices = new LinkedHashSet<String>();
+		private long rows = 0;
+
+		/**
+		 * Tune the indices of the tables before they are written
+		 *
+		 * @param replicas false to drop the replicas during the load
+		 */
+		public void write(String[] names, boolean replicas) {
+			for (String table : names) {
+				if (tables.add(table)) {
+					indices.addAll(tune(table, replicas));
+				}
+			}
+		}
+
+		public void add(long written) {
+			rows += written;
+		}
+
+		/**
+		 * Restore the settings of the indices and refresh them
+		 *
+		 * @return rows written, time and throughput of the load
+		 */
+		public String close() {
+			for (String index : indices) {
+				release(index);
+			}
+			double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+			String report = String.format("Bulk load: %d rows into %s in %.1f s, %.0f rows/s",
+					rows, indices.isEmpty() ? "no index" : StringUtils.join(indices, ", "), seconds, rows / seconds);
+			logger.info(report);
+			return report;
+		}
+	}
+
+	/**
+	 * @return the indices of the table, tuned for the load
+	 */
+	private synchronized List<String> tune(String table, boolean replicas) {
+		List<String> indices = new ArrayList<String>();
+		GetSettingsResponse response;
+		try {
+			response = client.admin().indices().prepareGetSettings(table).get();
+		} catch (Exception e) {
+			// the index is created by the first write, with its default settings
+			logger.warn(String.format("can not tune index %s for bulk load: %s", table, e.getMessage()));
+			return indices;
+		}
+
+		for (ObjectObjectCursor<String, Settings> settings : response.getIndexToSettings()) {
+			String index = settings.key;
+			indices.add(index);
+			Integer count = loads.get(index);
+			if (count != null) {
+				loads.put(index, count + 1);
+				continue;
+			}
+
+			ImmutableSettings.Builder load = ImmutableSettings.settingsBuilder().put(REFRESH_INTERVAL, "-1");
+			originals.setProperty(REFRESH_INTERVAL + ":" + index, settings.value.get(REFRESH_INTERVAL, DEFAULT_REFRESH_INTERVAL));
+			if (!replicas) {
+				originals.setProperty(NUMBER_OF_REPLICAS + ":" + index, settings.value.get(NUMBER_OF_REPLICAS, "1"));
+				load.put(NUMBER_OF_REPLICAS, 0);
+			}
+			save();
+			client.admin().indices().prepareUpdateSettings(index).setSettings(load).get();
+			loads.put(index, 1);
+			logger.info(String.format("index %s tuned for bulk load, replicas %s", index, replicas ? "kept" : "dropped"));
+		}
+		return indices;
+	}
+
+	private synchronized void release(String index) {
+		Integer count = loads.get(index);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			loads.put(index, count - 1);
+			return;
+		}
+		loads.remove(index);
+		try {
+			restore(index);
+		} catch (Exception e) {
+			// kept in the journal, restored when the proxy starts again
+			logger.error(String.format("can not restore settings of index %s: %s", index, e.getMessage()));
+		}
+	}
+
+	private synchronized void restoreAll() {
+		Set<String> indices = new HashSet<String>();
+		for (String key : originals.stringPropertyNames()) {
+			indices.add(StringUtils.substringAfter(key, ":"));
+		}
+		for (String index : indices) {
+			try {
+				restore(index);
+			} catch (Exception e) {
+				logger.error(String.format("can not restore settings of index %s: %s", index, e.getMessage()));
+			}
+		}
+		loads.clear();
+	}
+
+	/**
+	 * Put back the original settings of an index and make the documents written visible
+	 */
+	private void restore(String index) {
+		ImmutableSettings.Builder settings = ImmutableSettings.settingsBuilder();
+		for (String setting : new String[] {REFRESH_INTERVAL, NUMBER_OF_REPLICAS}) {
+			String value = originals.getProperty(setting + ":" + index);
+			if (value != null) {
+				settings.put(setting, value);
+			}
+		}
+		client.admin().indices().prepareUpdateSettings(index).setSettings(settings).get();
+		client.admin().indices().prepareRefresh(index).get();
+
+		originals.remove(REFRESH_INTERVAL + ":" + index);
+		originals.remove(NUMBER_OF_REPLICAS + ":" + index);
+		save();
+		logger.info(String.format("settings of index %s restored", index));
+	}
+
+	/**
+	 * Write the journal and sync it to disk, it is removed when no index is tuned.
+	 * It is written to a temporary file renamed over the journal, a crash while
+	 * it is written leaves the previous journal.
+	 */
+	private void save() {
+		if (originals.isEmpty()) {
+			if (journal.exists() && !journal.delete()) {
+				logger.warn("can not delete bulk load journal " + journal);
+			}
+			return;
+		}
+
+		File temp = new File(journal.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(temp);
+			originals.store(out, "original settings of the indices tuned for bulk load");
+			out.getFD().sync();
+			out.close();
+			out = null;
+			Files.move(temp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new ExecuteException(1105, "HY000", "can not write bulk load journal: " + e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+}
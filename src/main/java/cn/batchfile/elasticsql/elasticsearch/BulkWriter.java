@@ -0,0 +1,193 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.rest.RestStatus;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Send bulk requests to elasticsearch. A large bulk is split in chunks of
+ * bulk.actions operations or bulk.size bytes, at most bulk.concurrency chunks
+ * are in flight at the same time.
+ */
+public class BulkWriter {
+
+	private static final Logger logger = Logger.getLogger("BulkWriter");
+	private static final int MAX_ERRORS = 10;
+	private static BulkWriter instance;
+
+	private int actions;
+	private long size;
+	private int concurrency;
+
+	public static synchronized BulkWriter getInstance() {
+		if (instance == null) {
+			instance = new BulkWriter(JMP.config);
+		}
+		return instance;
+	}
+
+	public BulkWriter(Properties config) {
+		this.actions = Integer.parseInt(config.getProperty("bulk.actions", "1000").trim());
+		this.size = Long.parseLong(config.getProperty("bulk.size", "5").trim()) * 1024 * 1024;
+		this.concurrency = Integer.parseInt(config.getProperty("bulk.concurrency", "4").trim());
+	}
+
+	public int getActions() {
+		return actions;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Outcome of the operations of a bulk, rows are numbered from 1 in the order they were added
+	 */
+	public static class BulkResult {
+		public long created;
+		/** documents which existed and were overwritten */
+		public long replaced;
+		/** documents which existed and were deleted */
+		public long deleted;
+		/** deletes of documents which were already gone */
+		public long missing;
+		public long failed;
+		/** failures which are conflicts with an existing document */
+		public long conflicts;
+		public List<String> errors = new ArrayList<String>();
+
+		public void add(BulkResponse response, long offset) {
+			for (BulkItemResponse item : response.getItems()) {
+				if (item.isFailed()) {
+					failed++;
+					if (item.getFailure().getStatus() == RestStatus.CONFLICT) {
+						conflicts++;
+					}
+					if (errors.size() < MAX_ERRORS) {
+						errors.add(String.format("row %d: %s", offset + item.getItemId() + 1, item.getFailureMessage()));
+					}
+				} else if (item.getResponse() instanceof IndexResponse && !((IndexResponse) item.getResponse()).isCreated()) {
+					replaced++;
+				} else if (item.getResponse() instanceof DeleteResponse) {
+					if (((DeleteResponse) item.getResponse()).isFound()) {
+						deleted++;
+					} else {
+						missing++;
+					}
+				} else {
+					created++;
+				}
+			}
+		}
+
+		public void add(BulkResult result) {
+			created += result.created;
+			replaced += result.replaced;
+			deleted += result.deleted;
+			missing += result.missing;
+			failed += result.failed;
+			conflicts += result.conflicts;
+			for (String error : result.errors) {
+				if (errors.size() < MAX_ERRORS) {
+					errors.add(error);
+				}
+			}
+		}
+	}
+
+	public BulkResult write(Client client, BulkRequest bulk) {
+		Stream stream = open(client);
+		for (ActionRequest<?> request : bulk.requests()) {
+			stream.add(request);
+		}
+		return stream.close();
+	}
+
+	/**
+	 * Start a stream of operations, chunks are sent while operations are added
+	 */
+	public Stream open(Client client) {
+		return new Stream(client, concurrency);
+	}
+
+	/**
+	 * Start a stream with its own number of chunks in flight
+	 */
+	public Stream open(Client client, int concurrency) {
+		return new Stream(client, concurrency);
+	}
+
+	/**
+	 * Operations sent in chunks as they are added. Adding blocks while
+	 * bulk.concurrency chunks are in flight, so a stream holds at most
+	 * bulk.concurrency + 1 chunks whatever its length.
+	 */
+	public class Stream {
+		private Client client;
+		private int maxRunning;
+		private BulkResult result = new BulkResult();
+		private LinkedList<ActionFuture<BulkResponse>> running = new LinkedList<ActionFuture<BulkResponse>>();
+		private LinkedList<Long> offsets = new LinkedList<Long>();
+		private BulkRequest chunk = new BulkRequest();
+		private long offset = 0;
+
+		private Stream(Client client, int maxRunning) {
+			this.client = client;
+			this.maxRunning = Math.max(1, maxRunning);
+		}
+
+		public void add(ActionRequest<?> request) {
+			chunk.add(request);
+			if (chunk.numberOfActions() >= actions || chunk.estimatedSizeInBytes() >= size) {
+				flush();
+			}
+		}
+
+		/**
+		 * Send the operations added so far
+		 */
+		public void flush() {
+			if (chunk.numberOfActions() == 0) {
+				return;
+			}
+			if (running.size() >= maxRunning) {
+				result.add(running.removeFirst().actionGet(), offsets.removeFirst());
+			}
+			running.add(client.bulk(chunk));
+			offsets.add(offset);
+			offset += chunk.numberOfActions();
+			chunk = new BulkRequest();
+		}
+
+		/**
+		 * Send the last chunk and wait for all of them
+		 */
+		public BulkResult close() {
+			flush();
+			while (!running.isEmpty()) {
+				result.add(running.removeFirst().actionGet(), offsets.removeFirst());
+			}
+			logger.debug(String.format("bulk of %d operations, %d created, %d replaced, %d deleted, %d failed",
+					offset, result.created, result.replaced, result.deleted, result.failed));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.nlpcn.es4sql.query.GetQueryAction;
+
+/**
+ * Documents of a select by _id, read with a multi get
+ */
+public class GetResultHandler implements ResultHandler {
+
+	private List<String> head = new ArrayList<String>();
+	private List<Map<String, Object>> body;
+
+	public GetResultHandler(GetQueryAction action, MultiGetResponse response) {
+		this.body = action.getBody(response);
+		for (Map<String, Object> document : body) {
+			for (String key : document.keySet()) {
+				if (!head.contains(key)) {
+					head.add(key);
+				}
+			}
+		}
+	}
+
+	public List<String> getHead() {
+		return head;
+	}
+
+	public List<Map<String, Object>> getBody() {
+		return body;
+	}
+}
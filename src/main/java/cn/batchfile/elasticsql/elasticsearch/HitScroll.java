@@ -0,0 +1,99 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+/**
+ * Hits of a search read page by page with a scroll, for the statements which
+ * write every document they match. The next page is requested when a page is
+ * returned, so it is read while the caller writes the page. The first page
+ * of a scan has no hits, it is skipped. The pages are waited for through
+ * the statement running, a KILL stops the scroll at the page in flight.
+ */
+public class HitScroll {
+
+	private static final Logger logger = Logger.getLogger("HitScroll");
+
+	private Client client;
+	private RunningStatement statement;
+	private SearchRequestBuilder request;
+	private TimeValue keepAlive;
+	private String scrollId;
+	private ListenableActionFuture<SearchResponse> pending;
+	private long total = -1;
+	private boolean exhausted = false;
+
+	public HitScroll(Client client, RunningStatement statement, SearchRequestBuilder request, TimeValue keepAlive) {
+		this.client = client;
+		this.statement = statement;
+		this.request = request;
+		this.keepAlive = keepAlive;
+		request.setScroll(keepAlive);
+	}
+
+	/**
+	 * @return hits of the next page, null after the last one
+	 */
+	public SearchHit[] next() {
+		if (exhausted) {
+			return null;
+		}
+
+		SearchResponse response;
+		if (total < 0) {
+			response = statement.get(request);
+			total = response.getHits().getTotalHits();
+			if (response.getHits().getHits().length == 0 && total > 0) {
+				scrollId = response.getScrollId();
+				response = statement.get(client.prepareSearchScroll(scrollId).setScroll(keepAlive));
+			}
+		} else {
+			// a page given up is not waited for again by close
+			ListenableActionFuture<SearchResponse> page = pending;
+			pending = null;
+			response = statement.get(page);
+		}
+		scrollId = response.getScrollId();
+
+		SearchHit[] hits = response.getHits().getHits();
+		if (hits.length == 0) {
+			close();
+			return null;
+		}
+		pending = client.prepareSearchScroll(scrollId).setScroll(keepAlive).execute();
+		return hits;
+	}
+
+	/**
+	 * @return number of hits of the search, known after the first page
+	 */
+	public long getTotal() {
+		return Math.max(total, 0);
+	}
+
+	public void close() {
+		exhausted = true;
+		if (pending != null) {
+			try {
+				scrollId = pending.actionGet().getScrollId();
+			} catch (Exception e) {
+				logger.warn("error when read scroll: " + e.getMessage());
+			}
+			pending = null;
+		}
+		if (scrollId != null) {
+			try {
+				client.prepareClearScroll().addScrollId(scrollId).get();
+			} catch (Exception e) {
+				// the scroll expires on its own after keepAlive
+				logger.warn("error when clear scroll: " + e.getMessage());
+			}
+			scrollId = null;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nlpcn.es4sql.domain.LoadData;
+
+/**
+ * Read the lines of a LOAD DATA file as MySQL does: fields are split on the
+ * FIELDS TERMINATED BY string, may be quoted with the ENCLOSED BY character,
+ * and the ESCAPED BY character escapes a special character or writes \N for NULL.
+ * The file is read in a fixed buffer, whatever its size.
+ */
+public class InfileReader {
+
+	private Reader in;
+	private char[] buffer = new char[65536];
+	private int position = 0;
+	private int limit = 0;
+	private boolean eof = false;
+	private String fieldTerminator;
+	private String lineTerminator;
+	private String lineStart;
+	private char enclosure;
+	private char escape;
+	private StringBuilder field = new StringBuilder();
+	private long lines = 0;
+
+	public InfileReader(Reader in, LoadData load) {
+		this.in = in;
+		this.fieldTerminator = load.getFieldsTerminatedBy();
+		this.lineTerminator = load.getLinesTerminatedBy();
+		this.lineStart = load.getLinesStartingBy();
+		this.enclosure = load.getEnclosedBy().isEmpty() ? 0 : load.getEnclosedBy().charAt(0);
+		this.escape = load.getEscapedBy().isEmpty() ? 0 : load.getEscapedBy().charAt(0);
+	}
+
+	/**
+	 * @return fields of the next line, a null field for NULL, null at the end of the file
+	 */
+	public List<String> next() throws IOException {
+		if (!available(1)) {
+			return null;
+		}
+		if (!lineStart.isEmpty() && !seek(lineStart)) {
+			return null;
+		}
+
+		List<String> fields = new ArrayList<String>();
+		for (;;) {
+			fields.add(enclosure != 0 && buffer[position] == enclosure ? quoted() : unquoted());
+			if (at(fieldTerminator)) {
+				position += fieldTerminator.length();
+				if (!available(1)) {
+					// a terminator at the end of the file is followed by an empty field
+					fields.add("");
+					break;
+				}
+			} else {
+				if (at(lineTerminator)) {
+					position += lineTerminator.length();
+				}
+				break;
+			}
+		}
+		lines++;
+		return fields;
+	}
+
+	/**
+	 * @return number of lines read
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	private String quoted() throws IOException {
+		field.setLength(0);
+		position++;
+		while (available(1)) {
+			char c = buffer[position++];
+			if (c == escape && available(1)) {
+				field.append(unescape(buffer[position++]));
+			} else if (c == enclosure) {
+				if (available(1) && buffer[position] == enclosure) {
+					// a doubled quote is a quote
+					field.append(c);
+					position++;
+				} else if (!available(1) || at(fieldTerminator) || at(lineTerminator)) {
+					break;
+				} else {
+					field.append(c);
+				}
+			} else {
+				field.append(c);
+			}
+		}
+		return field.toString();
+	}
+
+	private String unquoted() throws IOException {
+		field.setLength(0);
+		boolean nul = false;
+		while (available(1)) {
+			char c = buffer[position];
+			if ((c == fieldTerminator.charAt(0) && at(fieldTerminator)) || (c == lineTerminator.charAt(0) && at(lineTerminator))) {
+				break;
+			}
+			position++;
+			if (c == escape && available(1)) {
+				char escaped = buffer[position++];
+				if (escaped == 'N' && field.length() == 0) {
+					nul = true;
+				} else {
+					field.append(unescape(escaped));
+				}
+			} else {
+				field.append(c);
+			}
+		}
+
+		if (nul && field.length() == 0) {
+			return null;
+		}
+		// with quoted fields, an unquoted NULL is NULL
+		if (enclosure != 0 && field.length() == 4 && "NULL".contentEquals(field)) {
+			return null;
+		}
+		return field.toString();
+	}
+
+	private char unescape(char c) {
+		switch (c) {
+		case '0':
+			return 0;
+		case 'b':
+			return '\b';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'Z':
+			return 26;
+		default:
+			return c;
+		}
+	}
+
+	/**
+	 * Skip to the end of the next occurrence of text
+	 */
+	private boolean seek(String text) throws IOException {
+		while (available(text.length())) {
+			if (at(text)) {
+				position += text.length();
+				return true;
+			}
+			position++;
+		}
+		position = limit;
+		return false;
+	}
+
+	private boolean at(String text) throws IOException {
+		if (!available(text.length())) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (buffer[position + i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fill the buffer until it holds n characters from the current position
+	 *
+	 * @return false if the file ends before
+	 */
+	private boolean available(int n) throws IOException {
+		while (limit - position < n) {
+			if (eof) {
+				return false;
+			}
+			if (position > 0) {
+				System.arraycopy(buffer, position, buffer, 0, limit - position);
+				limit -= position;
+				position = 0;
+			}
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,91 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.nlpcn.es4sql.domain.LoadData;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InfileReaderTest {
+	@Test
+	public void testDefaults() throws Exception {
+		LoadData load = new LoadData();
+		assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "")), read(load, "a\tb\nc\t"));
+		assertEquals(Arrays.asList(Arrays.asList("a", "b")), read(load, "a\tb\n"));
+	}
+
+	@Test
+	public void testNull() throws Exception {
+		LoadData load = new LoadData();
+		load.setFieldsTerminatedBy(",");
+		// \N is NULL alone only, elsewhere the escape keeps the N
+		assertEquals(Arrays.asList(Arrays.asList(null, "\\N", "NULL", "xN")), read(load, "\\N,\\\\N,NULL,x\\N\n"));
+		// with quoted fields an unquoted NULL is NULL, a quoted one a string
+		load.setEnclosedBy("\"");
+		assertEquals(Arrays.asList(Arrays.asList(null, "NULL")), read(load, "NULL,\"NULL\"\n"));
+	}
+
+	@Test
+	public void testEnclosure() throws Exception {
+		LoadData load = new LoadData();
+		load.setFieldsTerminatedBy(",");
+		load.setEnclosedBy("\"");
+		assertEquals(Arrays.asList(Arrays.asList("a,b", "say \"hi\"", "x\ny", "c"), Arrays.asList("d")),
+				read(load, "\"a,b\",\"say \"\"hi\"\"\",\"x\ny\",c\n\"d\""));
+		// a quote not followed by a terminator is part of the field
+		assertEquals(Arrays.asList(Arrays.asList("a\"b", "c")), read(load, "\"a\"b\",c\n"));
+	}
+
+	@Test
+	public void testEscape() throws Exception {
+		LoadData load = new LoadData();
+		assertEquals(Arrays.asList(Arrays.asList("a\tb", "c\nd", "e\\", "\0\u001a")), read(load, "a\\\tb\tc\\nd\te\\\\\t\\0\\Z\n"));
+		load.setEscapedBy("");
+		assertEquals(Arrays.asList(Arrays.asList("a\\nb", "\\N")), read(load, "a\\nb\t\\N\n"));
+	}
+
+	@Test
+	public void testTerminators() throws Exception {
+		LoadData load = new LoadData();
+		load.setFieldsTerminatedBy("||");
+		load.setLinesTerminatedBy("\r\n");
+		assertEquals(Arrays.asList(Arrays.asList("a|b", "c"), Arrays.asList("d\ne", "")),
+				read(load, "a|b||c\r\nd\ne||\r\n"));
+	}
+
+	@Test
+	public void testLinesStartingBy() throws Exception {
+		LoadData load = new LoadData();
+		load.setFieldsTerminatedBy(",");
+		load.setLinesStartingBy("xxx");
+		// a line without the prefix is skipped, the text before the prefix is ignored
+		assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")),
+				read(load, "xxxa,b\nskipped\nsome xxxc\n"));
+	}
+
+	@Test
+	public void testLargeFile() throws Exception {
+		LoadData load = new LoadData();
+		StringBuilder file = new StringBuilder();
+		for (int i = 0; i < 20000; i ++) {
+			file.append(i).append("\tvalue ").append(i).append('\n');
+		}
+		List<List<String>> lines = read(load, file.toString());
+		assertEquals(20000, lines.size());
+		assertEquals(Arrays.asList("19999", "value 19999"), lines.get(19999));
+	}
+
+	private List<List<String>> read(LoadData load, String file) throws Exception {
+		InfileReader reader = new InfileReader(new StringReader(file), load);
+		List<List<String>> lines = new ArrayList<List<String>>();
+		List<String> fields;
+		while ((fields = reader.next()) != null) {
+			lines.add(fields);
+		}
+		assertEquals(lines.size(), reader.getLines());
+		return lines;
+	}
+}
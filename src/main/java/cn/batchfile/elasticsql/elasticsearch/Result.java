@@ -1,5 +1,7 @@
 package cn.batchfile.elasticsql.elasticsearch;
 
+import java.util.ArrayList;
+
 import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
 
 public class Result {
@@ -7,4 +9,8 @@ public class Result {
     public long affectedRows = 0;
     public long lastInsertId = 0;
     public long warnings = 0;
+    // human readable message of an OK packet
+    public String info;
+    // encoded response, sent as it is when present
+    public ArrayList<byte[]> packets;
 }
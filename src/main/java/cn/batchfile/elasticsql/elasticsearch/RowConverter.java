@@ -0,0 +1,39 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.util.List;
+import java.util.Map;
+
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Convert a document or bucket to a protocol row, column by column
+ */
+public class RowConverter {
+
+	public static Row toRow(List<String> heads, Map<String, Object> map, int rowType) {
+		Row row = new Row();
+		row.type = rowType;
+		for (String head : heads) {
+			Object value = map == null ? null : map.get(head);
+			if (value == null) {
+				// NULL in both row types: 0xfb in a text row, the null bitmap in a binary one
+				row.data.add(null);
+			} else if (value instanceof String) {
+				row.addData((String)value);
+			} else if (value instanceof Integer) { 
+				row.addData(String.format("%d", value));
+			} else if (value instanceof Boolean) {
+				row.addData((Boolean)value);
+			} else if (value instanceof Float) {
+				row.addData(String.format("%f", value));
+			} else if (value instanceof Double) {
+				row.addData(String.format("%f", value));
+			} else if (value instanceof Long) {
+				row.addData((Long)value);
+			} else {
+				row.addData(value.toString());
+			}
+		}
+		return row;
+	}
+}
@@ -0,0 +1,183 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.ListenableActionFuture;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.metrics.Metrics;
+
+/**
+ * The statement a connection is running. Its elasticsearch requests are
+ * waited for through it, so a KILL from another connection ends the wait at
+ * once and a statement with a timeout does not wait past its deadline. The
+ * response of a request given up is dropped when it arrives, the scroll it
+ * opened is cleared then instead of holding its shards until it expires.
+ */
+public class RunningStatement {
+
+	private static final Logger logger = Logger.getLogger("RunningStatement");
+
+	private final Client client;
+	private final long started = System.currentTimeMillis();
+	private final long deadline;
+	private final Object lock = new Object();
+	private volatile boolean killed = false;
+
+	/**
+	 * @param timeout milliseconds the statement may run, 0 for no limit
+	 */
+	public RunningStatement(Client client, long timeout) {
+		this.client = client;
+		this.deadline = timeout > 0 ? started + timeout : Long.MAX_VALUE;
+	}
+
+	public long getStarted() {
+		return started;
+	}
+
+	/**
+	 * KILL QUERY, the request waited for is given up and the next one is not sent
+	 */
+	public void kill() {
+		killed = true;
+		wake();
+	}
+
+	/**
+	 * @throws ExecuteException if the statement was killed or timed out
+	 */
+	public void check() {
+		if (killed) {
+			throw new ExecuteException(1317, "70100", "Query execution was interrupted");
+		}
+		if (System.currentTimeMillis() >= deadline) {
+			throw new ExecuteException(3024, "HY000", "Query execution was interrupted, maximum statement execution time exceeded");
+		}
+	}
+
+	/**
+	 * The shards stop searching at the deadline of the statement
+	 */
+	public void timeout(SearchRequestBuilder request) {
+		if (deadline != Long.MAX_VALUE) {
+			request.setTimeout(TimeValue.timeValueMillis(Math.max(1, deadline - System.currentTimeMillis())));
+		}
+	}
+
+	public <Response extends ActionResponse> Response get(ActionRequestBuilder<?, Response, ?, ?> request) {
+		check();
+		return get(request.execute());
+	}
+
+	/**
+	 * The wait is recorded as the elasticsearch stage
+	 */
+	public <T> T get(ListenableActionFuture<T> future) {
+		long waited = System.nanoTime();
+		future.addListener(new ActionListener<T>() {
+			@Override
+			public void onResponse(T response) {
+				wake();
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				wake();
+			}
+		});
+
+		synchronized (lock) {
+			while (!future.isDone() && !killed) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					break;
+				}
+				try {
+					lock.wait(deadline == Long.MAX_VALUE ? 0 : wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					killed = true;
+				}
+			}
+		}
+		Metrics.getInstance().record(Metrics.Stage.ELASTICSEARCH, waited);
+
+		if (!future.isDone()) {
+			abandon(future);
+			check();
+		}
+		T response = future.actionGet();
+		if (response instanceof SearchResponse && ((SearchResponse)response).isTimedOut()) {
+			// the hits of the shards which timed out are missing
+			clear(((SearchResponse)response).getScrollId());
+			throw new ExecuteException(3024, "HY000", "Query execution was interrupted, maximum statement execution time exceeded");
+		}
+		return response;
+	}
+
+	/**
+	 * Wait as a throttle does, a KILL ends the wait
+	 */
+	public void sleep(long millis) {
+		long until = System.currentTimeMillis() + millis;
+		synchronized (lock) {
+			long wait;
+			while (!killed && (wait = until - System.currentTimeMillis()) > 0) {
+				try {
+					lock.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					killed = true;
+				}
+			}
+		}
+		check();
+	}
+
+	private void wake() {
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private <T> void abandon(ListenableActionFuture<T> future) {
+		future.addListener(new ActionListener<T>() {
+			@Override
+			public void onResponse(T response) {
+				if (response instanceof SearchResponse) {
+					clear(((SearchResponse)response).getScrollId());
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				logger.debug("request given up failed: " + e.getMessage());
+			}
+		});
+	}
+
+	private void clear(String scrollId) {
+		if (scrollId == null) {
+			return;
+		}
+		client.prepareClearScroll().addScrollId(scrollId).execute(new ActionListener<ClearScrollResponse>() {
+			@Override
+			public void onResponse(ClearScrollResponse response) {
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				// the scroll expires on its own after its keep alive
+				logger.warn("error when clear scroll: " + e.getMessage());
+			}
+		});
+	}
+}
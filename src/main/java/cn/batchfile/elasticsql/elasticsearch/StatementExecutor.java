@@ -1,34 +1,125 @@
 package cn.batchfile.elasticsql.elasticsearch;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.sf.json.JSONObject;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.log4j.Logger;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsRequestBuilder;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.deletebyquery.DeleteByQueryRequestBuilder;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.hppc.cursors.ObjectCursor;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
-import org.nlpcn.es4sql.SearchDao;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Delete;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.From;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.domain.LoadData;
+import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Query;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Update;
+import org.nlpcn.es4sql.domain.Where;
 import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.parse.InsertStreamParser;
+import org.nlpcn.es4sql.parse.StatementClassifier;
+import org.nlpcn.es4sql.query.AggregationQueryAction;
+import org.nlpcn.es4sql.query.DefaultQueryAction;
+import org.nlpcn.es4sql.query.DeleteQueryAction;
+import org.nlpcn.es4sql.query.InsertQueryAction;
+import org.nlpcn.es4sql.query.ESActionFactory;
+import org.nlpcn.es4sql.query.GetQueryAction;
+import org.nlpcn.es4sql.query.QueryAction;
+import org.nlpcn.es4sql.query.UpdateQueryAction;
+import org.nlpcn.es4sql.query.maker.FilterMaker;
 
+import com.github.mpjct.jmpjct.JMP;
 import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
 import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
 import com.github.mpjct.jmpjct.mysql.proto.Row;
 
+import cn.batchfile.elasticsql.cache.ResultCache;
+import cn.batchfile.elasticsql.cache.WindowCache;
 import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.metrics.Metrics;
+import cn.batchfile.elasticsql.schema.Catalog;
+import cn.batchfile.elasticsql.schema.SchemaManager;
+import cn.batchfile.elasticsql.schema.StatsCatalog;
+import cn.batchfile.elasticsql.schema.Table;
+import cn.batchfile.elasticsql.session.Session;
+import cn.batchfile.elasticsql.session.SystemVariables;
+import cn.batchfile.elasticsql.statement.BufferedCursor;
+import cn.batchfile.elasticsql.statement.Cursor;
+import cn.batchfile.elasticsql.statement.ScrollCursor;
 import cn.batchfile.elasticsql.util.Rest;
 
 public class StatementExecutor {
 	
 	private static final Logger logger = Logger.getLogger("StatementExecutor");
-	private SearchDao searchDao;
+	private static final Pattern CACHE_STATS = Pattern.compile(
+			"\\s*SELECT\\s+\\*\\s+FROM\\s+(`?elasticsql`?\\.)?`?" + ResultCache.STATS_TABLE + "`?\\s*;?\\s*", Pattern.CASE_INSENSITIVE);
+	private static final Pattern FLUSH_CACHE = Pattern.compile(
+			"\\s*(FLUSH|RESET)\\s+QUERY\\s+CACHE\\s*;?\\s*", Pattern.CASE_INSENSITIVE);
+	private static final Pattern FLUSH_TABLES = Pattern.compile(
+			"\\s*FLUSH\\s+(?:NO_WRITE_TO_BINLOG\\s+|LOCAL\\s+)?TABLES?(?:\\s+.*)?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern ANALYZE = Pattern.compile(
+			"\\s*ANALYZE\\s+(?:NO_WRITE_TO_BINLOG\\s+|LOCAL\\s+)?TABLES?\\s+(.+?)\\s*;?\\s*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	// optimizer hints of a select, /*+ MAX_EXECUTION_TIME(1000) SQL_NO_CACHE */
+	private static final Pattern HINT_MAX_EXECUTION_TIME = Pattern.compile(
+			"\\bMAX_EXECUTION_TIME\\s*\\(\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern HINT_NO_CACHE = Pattern.compile("\\bSQL_NO_CACHE\\b", Pattern.CASE_INSENSITIVE);
+	private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+	private Client client;
+	private Session session;
+	private WriteBehindBuffer.Owner writes = new WriteBehindBuffer.Owner();
+	private BulkLoadManager.Load bulkLoad;
+	private String defaultType = JMP.config == null ? "doc" : JMP.config.getProperty("insert.default_type", "doc").trim();
+	private long streamThreshold = JMP.config == null ? 1024 * 1024
+			: Long.parseLong(JMP.config.getProperty("insert.stream_threshold", "1").trim()) * 1024 * 1024;
+	private int insertScrollSize = JMP.config == null ? 1000 : Integer.parseInt(JMP.config.getProperty("insert.scroll_size", "1000").trim());
+	private int updateScrollSize = JMP.config == null ? 500 : Integer.parseInt(JMP.config.getProperty("update.scroll_size", "500").trim());
+	private long deleteScrollThreshold = JMP.config == null ? 10000 
+			: Long.parseLong(JMP.config.getProperty("delete.scroll_threshold", "10000").trim());
+	private int deleteScrollSize = JMP.config == null ? 1000 : Integer.parseInt(JMP.config.getProperty("delete.scroll_size", "1000").trim());
+	private long deleteRate = JMP.config == null ? 0 : Long.parseLong(JMP.config.getProperty("delete.rate", "5000").trim());
+	private int deleteConcurrency = JMP.config == null ? 1 : Integer.parseInt(JMP.config.getProperty("delete.concurrency", "1").trim());
+	private int maxPartitions = JMP.config == null ? 500 : Integer.parseInt(JMP.config.getProperty("partition.max_indices", "500").trim());
+	private volatile String progress;
+	private volatile RunningStatement running;
 
 	public void connect(String httpAddress, String transportAddress) {
 		String cluster_name = getClusterName(httpAddress.split(","));
@@ -48,65 +139,138 @@ public class StatementExecutor {
 			client.addTransportAddress(new InetSocketTransportAddress(ip, Integer.valueOf(port)));
 		}
 		
-		searchDao = new SearchDao(client);
+		this.client = client;
 	}
 	
 	public Result execute(String sql) {
+		return execute(null, sql);
+	}
+	
+	/**
+	 * Run a statement, a select is given max_execution_time milliseconds. The
+	 * optimizer hints of a select route it: MAX_EXECUTION_TIME(ms) overrides the
+	 * session variable, SQL_NO_CACHE reads elasticsearch instead of the result cache.
+	 */
+	public Result execute(String schema, String sql) {
+		StatementClassifier.Type type = StatementClassifier.classify(sql);
+		String hint = type == StatementClassifier.Type.SELECT ? StatementClassifier.hint(sql) : null;
+		running = new RunningStatement(client, type == StatementClassifier.Type.SELECT ? maxExecutionTime(hint) : 0);
+		try {
+			boolean cached = type == StatementClassifier.Type.SELECT && (hint == null || !HINT_NO_CACHE.matcher(hint).find());
+			return execute(schema, sql, type, cached);
+		} finally {
+			running = null;
+		}
+	}
+	
+	/**
+	 * @param cached true if the result may be read from and kept in the result cache
+	 */
+	private Result execute(String schema, String sql, StatementClassifier.Type type, boolean cached) {
 		Result ret = new Result();
 		logger.debug("-> " + sql);
+		Matcher matcher;
+		checkWrites();
 		
-		if (StringUtils.containsIgnoreCase(sql, "select @@version_comment")) {
-			ResultSet rs = new ResultSet();
-			
-			Column col = new Column("@@version_comment");
-			rs.addColumn(col);
-			
-			Row row = new Row();
-			row.addData("Source distribution");
-			rs.addRow(row); 
-			
-			ret.resultSet = rs;
+		if (type == StatementClassifier.Type.SELECT && CACHE_STATS.matcher(sql).matches()) {
+			ret.resultSet = ResultCache.getInstance().getStats();
+			WindowCache.getInstance().appendStats(ret.resultSet);
+		} else if (type == StatementClassifier.Type.FLUSH && FLUSH_CACHE.matcher(sql).matches()) {
+			ResultCache.getInstance().clear();
+			WindowCache.getInstance().clear();
+		} else if (type == StatementClassifier.Type.FLUSH && FLUSH_TABLES.matcher(sql).matches()) {
+			flushWrites();
+		} else if (type == StatementClassifier.Type.ANALYZE && (matcher = ANALYZE.matcher(sql)).matches()) {
+			ret.resultSet = analyze(matcher.group(1).split("\\s*,\\s*"));
+		} else if ((type == StatementClassifier.Type.INSERT || type == StatementClassifier.Type.REPLACE) && sql.length() >= streamThreshold
+				&& InsertStreamParser.accepts(sql)) {
+			// a large insert the stream parser can not read, ON DUPLICATE KEY UPDATE for one, goes to the sql parser
+			ret = streamInsert(sql);
 		} else {
+			ResultCache cache = ResultCache.getInstance();
+			String key = ResultCache.key(schema, sql);
+			// only a select is cached, a write would count as a miss
+			ResultSet hit = cached ? cache.get(key) : null;
+			if (hit != null) {
+				ret.resultSet = hit;
+				return ret;
+			}
+			
 			try {
-				SearchResponse response = explain(sql).get();
-				ResultHandler handler = ResultHandlerFactory.create(response);
+				QueryAction action = create(sql);
+				if (action.getQuery() instanceof LoadData) {
+					throw new ExecuteException(1148, "42000", "The used command is not allowed here, the file is sent by a MySQL client");
+				}
+				if (action instanceof InsertQueryAction) {
+					return insert((InsertQueryAction)action);
+				}
+				if (action instanceof UpdateQueryAction) {
+					return update((UpdateQueryAction)action);
+				}
+				if (action instanceof DeleteQueryAction) {
+					return delete((DeleteQueryAction)action);
+				}
 				
-				ResultSet rs = new ResultSet();
+				String[] tables = action.getQuery().getIndexArr();
+				long[] snapshot = cache.snapshot(tables);
+				ResultHandler handler;
+				WindowCache.Plan plan = null;
+				GetQueryAction get = lookup(action);
+				long flattened;
+				if (get != null) {
+					logger.debug(get);
+					MultiGetResponse response = running.get((MultiGetRequestBuilder)translate(get));
+					flattened = System.nanoTime();
+					handler = new GetResultHandler(get, response);
+				} else {
+					SearchRequestBuilder request = (SearchRequestBuilder)translate(action);
+					running.timeout(request);
+					
+					// read only the changed part of a moving time window
+					if (cached && action instanceof AggregationQueryAction) {
+						Select select = (Select)action.getQuery();
+						plan = WindowCache.getInstance().plan(key, select, System.currentTimeMillis());
+						if (plan != null && !plan.isFull()) {
+							BoolFilterBuilder filter = FilterBuilders.boolFilter();
+							if (select.getWhere() != null) {
+								filter.must(FilterMaker.explan(select.getWhere()));
+							}
+							request.setQuery(QueryBuilders.filteredQuery(null, plan.restrict(filter)));
+						}
+					}
+					logger.debug(request);
+					
+					SearchResponse response = running.get(request);
+					flattened = System.nanoTime();
+					handler = ResultHandlerFactory.create(response);
+				}
 				List<String> heads = handler.getHead();
+				List<Map<String, Object>> body = handler.getBody();
+				if (plan != null) {
+					body = WindowCache.getInstance().merge(plan, body);
+					heads = getHead(body);
+				}
+				
+				ResultSet rs = new ResultSet();
 				for (String head : heads) {
 					rs.addColumn(new Column(head));
 				}
 				
-				List<Map<String, Object>> body = handler.getBody();
 				for (Map<String, Object> map : body) {
-					Row row = new Row();
-					for (Entry<String, Object> entry : map.entrySet()) {
-						Object value = entry.getValue();
-						if (value == null) {
-							row.addData(StringUtils.EMPTY);
-						} else if (value instanceof String) {
-							row.addData((String)value);
-						} else if (value instanceof Integer) { 
-							row.addData(String.format("%d", value));
-						} else if (value instanceof Boolean) {
-							row.addData((Boolean)value);
-						} else if (value instanceof Float) {
-							row.addData(String.format("%f", value));
-						} else if (value instanceof Double) {
-							row.addData(String.format("%f", value));
-						} else if (value instanceof Long) {
-							row.addData((Long)value);
-						} else {
-							row.addData(value.toString());
-						}
-					}
-					rs.addRow(row);
+					rs.addRow(RowConverter.toRow(heads, map, Flags.ROW_TYPE_TEXT));
 				}
 				ret.resultSet = rs;
+				Metrics.getInstance().record(Metrics.Stage.FLATTEN, flattened);
+				
+				if (cached) {
+					cache.put(key, tables, snapshot, rs);
+				}
 			} catch (SQLFeatureNotSupportedException e) {
 				throw new ExecuteException(1011, StringUtils.EMPTY, e.getMessage(), e);
 			} catch (SqlParseException e) {
 				throw new ExecuteException(1012, StringUtils.EMPTY, e.getMessage(), e);
+			} catch (ExecuteException e) {
+				throw e;
 			} catch (Exception e) {
 				throw new ExecuteException(1050, StringUtils.EMPTY, e.getMessage(), e);
 			}
@@ -114,12 +278,1042 @@ public class StatementExecutor {
 		return ret;
 	}
 	
+	/**
+	 * Parse the statement, aggregations are tuned with the statistics of the table if it has been analyzed
+	 */
+	private QueryAction create(String sql) throws SQLFeatureNotSupportedException, SqlParseException {
+		QueryAction action = parse(sql);
+		resolve(action);
+		if (action instanceof AggregationQueryAction) {
+			((AggregationQueryAction)action).setStatistics(StatsCatalog.getInstance().get(action.getQuery().getIndexArr()));
+		}
+		return action;
+	}
+	
+	/**
+	 * The time to parse a statement and to build its request are recorded as
+	 * the parse and translate stages
+	 */
+	private QueryAction parse(String sql) throws SQLFeatureNotSupportedException, SqlParseException {
+		long started = System.nanoTime();
+		QueryAction action = ESActionFactory.create(client, sql);
+		Metrics.getInstance().record(Metrics.Stage.PARSE, started);
+		return action;
+	}
+	
+	private ActionRequestBuilder<?, ?, ?, ?> translate(QueryAction action) throws SqlParseException {
+		long started = System.nanoTime();
+		ActionRequestBuilder<?, ?, ?, ?> request = action.explain();
+		Metrics.getInstance().record(Metrics.Stage.TRANSLATE, started);
+		return request;
+	}
+	
+	/**
+	 * A select by _id is read with a multi get instead of a search of every shard.
+	 * A get ignores the filter of an alias and fails on an alias of several
+	 * indices, only concrete indices are read so. The pruned indices of a
+	 * partitioned table are read even when they are missing from the catalog,
+	 * the get ignores those not created as the search would.
+	 *
+	 * @return null if the action is not a select by _id of indices
+	 */
+	private GetQueryAction lookup(QueryAction action) {
+		if (!(action instanceof DefaultQueryAction)) {
+			return null;
+		}
+		Catalog catalog = SchemaManager.getInstance().getCatalog();
+		for (String index : action.getQuery().getIndexArr()) {
+			Table table = catalog.getIndex(index);
+			if (table == null ? !isPeriod(catalog, index, action) : !"BASE TABLE".equals(table.type) || table.partition != null) {
+				return null;
+			}
+		}
+		GetQueryAction get = GetQueryAction.create(client, (Select)action.getQuery(), action.getRoutingColumn());
+		if (get != null) {
+			get.setIndicesOptions(action.getIndicesOptions());
+		}
+		return get;
+	}
+	
+	/**
+	 * An index pruning named for a period of a partitioned table, it may not
+	 * be created yet or not be in the catalog since its last refresh
+	 */
+	private boolean isPeriod(Catalog catalog, String index, QueryAction action) {
+		if (action.getIndicesOptions() == null || !action.getIndicesOptions().ignoreUnavailable()) {
+			return false;
+		}
+		for (Table table : catalog.getIndices()) {
+			if (table.partition != null && table.partition.start(index) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Resolve the tables of the statement with the catalog. The requests are
+	 * routed by the routing column of the tables, and a time partitioned table
+	 * is replaced by the indices of the periods the where clause can match,
+	 * those not created yet are ignored. The table of an insert is resolved
+	 * row by row.
+	 */
+	private void resolve(QueryAction action) {
+		Query query = action.getQuery();
+		action.setRoutingColumn(routingColumn(query.getIndexArr()));
+		if (action instanceof InsertQueryAction) {
+			return;
+		}
+		
+		Catalog catalog = SchemaManager.getInstance().getCatalog();
+		if (query.getWhere() != null) {
+			exact(query.getWhere(), catalog, query.getIndexArr());
+		}
+		List<String> existing = new ArrayList<String>();
+		for (Table table : catalog.getIndices()) {
+			existing.add(table.name);
+		}
+		List<From> from = new ArrayList<From>();
+		boolean pruned = false;
+		for (From table : query.getFrom()) {
+			Table partitioned = catalog.getIndex(table.getIndex());
+			if (partitioned == null || partitioned.partition == null) {
+				from.add(table);
+				continue;
+			}
+			
+			String[] indices = partitioned.partition.indices(query.getWhere(), existing, System.currentTimeMillis(), maxPartitions);
+			for (String index : indices) {
+				From partition = new From(index);
+				partition.setType(table.getType());
+				from.add(partition);
+			}
+			logger.debug(String.format("table %s reads %d of its indices", table.getIndex(), indices.length));
+			pruned = true;
+		}
+		if (pruned) {
+			query.getFrom().clear();
+			query.getFrom().addAll(from);
+			action.setIndicesOptions(IndicesOptions.lenientExpandOpen());
+		}
+	}
+	
+	/**
+	 * Mark the conditions on a field every table of the statement matches on its
+	 * whole value, an IN list of strings on it is looked up as terms
+	 */
+	private void exact(Where where, Catalog catalog, String[] indices) {
+		if (where instanceof Condition) {
+			Condition condition = (Condition)where;
+			boolean exact = indices.length > 0;
+			for (String index : indices) {
+				Table table = catalog.getIndex(index);
+				cn.batchfile.elasticsql.schema.Column column = table == null ? null : table.getColumn(condition.getName());
+				exact &= column != null && column.isExact();
+			}
+			condition.setExact(exact);
+			return;
+		}
+		for (Where sub : where.getWheres()) {
+			exact(sub, catalog, indices);
+		}
+	}
+	
+	/**
+	 * Column the tables are routed by in the catalog
+	 *
+	 * @return null unless every table is routed by the same column
+	 */
+	private String routingColumn(String[] indices) {
+		Catalog catalog = SchemaManager.getInstance().getCatalog();
+		String column = null;
+		for (String index : indices) {
+			Table table = catalog.getIndex(index);
+			if (table == null || table.routing == null || (column != null && !column.equals(table.routing))) {
+				return null;
+			}
+			column = table.routing;
+		}
+		return column;
+	}
+	
+	/**
+	 * INSERT and REPLACE, the rows are written with bulk requests. The columns of
+	 * an insert without a column list are the fields of the table in the catalog.
+	 */
+	private Result insert(InsertQueryAction action) throws SqlParseException {
+		Insert insert = (Insert)action.getQuery();
+		if (insert.getSelect() != null) {
+			return insertSelect(action);
+		}
+		prepare(action);
+		if (insert.getValues().isEmpty()) {
+			return new Result();
+		}
+		
+		beginWrite(insert);
+		if (isWriteBehind(insert)) {
+			return insertBehind(action);
+		}
+		
+		BulkRequestBuilder request = action.explain();
+		BulkWriter.BulkResult written = BulkWriter.getInstance().write(client, request.request());
+		endWrite(written);
+		invalidate(insert.getIndexArr());
+		return result(written, insert.isReplace(), insert.isIgnore(), insert.getValues().size());
+	}
+	
+	/**
+	 * INSERT ... SELECT, the rows are copied inside the proxy. The documents of a
+	 * plain select are read with a scroll and written in bulk chunks while the
+	 * next page is read, so at most a page and bulk.concurrency + 1 chunks are
+	 * held whatever the size of the copy. The rows of an aggregation are read at once.
+	 */
+	private Result insertSelect(InsertQueryAction action) throws SqlParseException {
+		Insert insert = (Insert)action.getQuery();
+		Select select = insert.getSelect();
+		prepare(action);
+		if (!select.getFields().isEmpty() && select.getFields().size() != insert.getColumns().size()) {
+			throw new ExecuteException(1136, "21S01", "Column count doesn't match value count at row 1");
+		}
+		
+		beginWrite(insert);
+		BulkWriter.Stream stream = BulkWriter.getInstance().open(client);
+		HitScroll scroll = null;
+		long started = System.currentTimeMillis();
+		long rows = 0;
+		BulkWriter.BulkResult written = null;
+		try {
+			if (select.isAgg) {
+				AggregationQueryAction source = new AggregationQueryAction(client, select);
+				resolve(source);
+				source.setStatistics(StatsCatalog.getInstance().get(select.getIndexArr()));
+				SearchRequestBuilder request = source.explain();
+				logger.debug(request);
+				for (Map<String, Object> values : ResultHandlerFactory.create(running.get(request)).getBody()) {
+					stream.add(action.request(values, (int)++rows));
+				}
+			} else {
+				DefaultQueryAction source = new DefaultQueryAction(client, select);
+				resolve(source);
+				SearchRequestBuilder request = source.explain();
+				request.setFrom(0);
+				request.setSize(insertScrollSize);
+				request.setSearchType(select.getOrderBys().isEmpty() ? SearchType.SCAN : SearchType.QUERY_THEN_FETCH);
+				if (insert.getColumns().isEmpty()) {
+					request.setFetchSource(true);
+					request.addFields(Insert.ROUTING, Insert.PARENT);
+				}
+				logger.debug(request);
+				
+				long skip = select.getOffset();
+				long limit = select.isLimited() ? select.getRowCount() : -1;
+				scroll = new HitScroll(client, running, request, SCROLL_KEEP_ALIVE);
+				SearchHit[] hits;
+				while ((limit < 0 || rows < limit) && (hits = scroll.next()) != null) {
+					for (int i = 0; i < hits.length && (limit < 0 || rows < limit); i ++) {
+						if (skip > 0) {
+							skip --;
+							continue;
+						}
+						rows ++;
+						stream.add(insert.getColumns().isEmpty() ? action.copy(hits[i]) : action.request(hits[i], (int)rows));
+					}
+					double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+					progress = String.format("Copying: %d of %d rows, %.0f rows/s", rows, 
+							limit < 0 ? scroll.getTotal() : Math.min(limit, scroll.getTotal()), rows / seconds);
+				}
+			}
+		} finally {
+			if (scroll != null) {
+				scroll.close();
+			}
+			written = stream.close();
+			endWrite(written);
+			invalidate(insert.getIndexArr());
+			progress = null;
+			double seconds = Math.max(1, System.currentTimeMillis() - started) / 1000.0;
+			logger.info(String.format("insert into %s select from %s, %d rows in %.1f s, %.0f rows/s, %d failed", 
+					insert.getFrom().get(0).getIndex(), StringUtils.join(select.getIndexArr(), ","), rows, seconds, rows / seconds, written.failed));
+		}
+		
+		Result ret = result(written, insert.isReplace(), insert.isIgnore(), rows);
+		ret.info = String.format("Records: %d  Duplicates: %d  Warnings: %d", 
+				rows, insert.isReplace() ? written.replaced : written.conflicts, ret.warnings);
+		return ret;
+	}
+	
+	/**
+	 * The rows are acknowledged once they are buffered, unless the session asks
+	 * with write_behind_sync to wait until they are written
+	 */
+	private Result insertBehind(InsertQueryAction action) throws SqlParseException {
+		Insert insert = (Insert)action.getQuery();
+		List<IndexRequest> requests = new ArrayList<IndexRequest>();
+		for (int i = 0; i < insert.getValues().size(); i ++) {
+			requests.add(action.request(insert.getValues().get(i), i + 1));
+		}
+		
+		WriteBehindBuffer buffer = WriteBehindBuffer.getInstance();
+		long generation = buffer.add(requests, writes, insert.isIgnore());
+		if (bulkLoad != null) {
+			bulkLoad.add(requests.size());
+		}
+		if (isOn("write_behind_sync")) {
+			buffer.await(generation);
+			checkWrites();
+		}
+		
+		Result ret = new Result();
+		ret.affectedRows = requests.size();
+		return ret;
+	}
+	
+	/**
+	 * UPDATE, elasticsearch has no update by query: the matching documents are
+	 * read with a scroll, and the updates of a page are sent in bulk chunks while
+	 * the next page is read. A row is changed only if a value assigned differs.
+	 */
+	private Result update(UpdateQueryAction action) throws SqlParseException {
+		Update update = (Update)action.getQuery();
+		int limit = update.getRowCount();
+		if (limit == 0) {
+			return new Result();
+		}
+		SearchRequestBuilder request = action.explain();
+		request.setSize(limit > 0 ? Math.min(limit, updateScrollSize) : updateScrollSize);
+		logger.debug(request);
+		
+		beginWrite(update);
+		HitScroll scroll = new HitScroll(client, running, request, SCROLL_KEEP_ALIVE);
+		BulkWriter.Stream stream = BulkWriter.getInstance().open(client);
+		long matched = 0;
+		long changed = 0;
+		BulkWriter.BulkResult written = null;
+		try {
+			SearchHit[] hits;
+			while ((limit < 0 || matched < limit) && (hits = scroll.next()) != null) {
+				for (int i = 0; i < hits.length && (limit < 0 || matched < limit); i ++) {
+					matched ++;
+					UpdateRequest row = action.request(hits[i]);
+					if (row != null) {
+						changed ++;
+						stream.add(row);
+					}
+				}
+				long total = limit < 0 ? scroll.getTotal() : Math.min(limit, scroll.getTotal());
+				progress = String.format("Updating: %d of %d rows matched, %d changed", matched, total, changed);
+			}
+		} finally {
+			scroll.close();
+			written = stream.close();
+			endWrite(written);
+			invalidate(update.getIndexArr());
+			progress = null;
+		}
+		
+		if (written.failed > 0 && !update.isIgnore()) {
+			String message = String.format("%d of %d rows failed, %d updated: %s", 
+					written.failed, changed, changed - written.failed, StringUtils.join(written.errors, "; "));
+			if (written.conflicts > 0) {
+				message = String.format("%d rows were changed by another client during the update, ", written.conflicts) + message;
+			}
+			throw new ExecuteException(1105, "HY000", message);
+		}
+		
+		Result ret = new Result();
+		ret.affectedRows = changed - written.failed;
+		ret.warnings = written.failed;
+		ret.info = String.format("Rows matched: %d  Changed: %d  Warnings: %d", matched, ret.affectedRows, ret.warnings);
+		return ret;
+	}
+	
+	/**
+	 * DELETE. A delete by query holds the shards while it runs and stalls the
+	 * indexing of a busy table, it is used only when the count of matching
+	 * documents is at most delete.scroll_threshold. A larger delete reads the
+	 * documents with a scan and deletes them in bulk requests, at most
+	 * delete.concurrency in flight and delete.rate documents per second.
+	 */
+	private Result delete(DeleteQueryAction action) throws SqlParseException {
+		Delete delete = (Delete)action.getQuery();
+		long count = running.get(action.count()).getCount();
+		Result ret = new Result();
+		if (count == 0) {
+			return ret;
+		}
+		
+		if (count <= deleteScrollThreshold) {
+			DeleteByQueryRequestBuilder request = action.explain();
+			logger.debug(request);
+			running.get(request);
+			invalidate(delete.getIndexArr());
+			// a delete by query does not count its documents, they were counted just before
+			ret.affectedRows = count;
+			return ret;
+		}
+		
+		SearchRequestBuilder request = action.scan();
+		request.setSize(deleteRate > 0 ? (int)Math.min(deleteScrollSize, deleteRate) : deleteScrollSize);
+		logger.debug(request);
+		logger.info(String.format("delete %d documents of %s in bulk", count, StringUtils.join(delete.getIndexArr(), ",")));
+		
+		HitScroll scroll = new HitScroll(client, running, request, SCROLL_KEEP_ALIVE);
+		BulkWriter.Stream stream = BulkWriter.getInstance().open(client, deleteConcurrency);
+		long started = System.currentTimeMillis();
+		long matched = 0;
+		BulkWriter.BulkResult written = null;
+		try {
+			SearchHit[] hits;
+			while ((hits = scroll.next()) != null) {
+				for (SearchHit hit : hits) {
+					stream.add(action.request(hit));
+				}
+				matched += hits.length;
+				progress = String.format("Deleting: %d of %d rows", matched, scroll.getTotal());
+				throttle(started, matched, deleteRate);
+			}
+		} finally {
+			scroll.close();
+			written = stream.close();
+			invalidate(delete.getIndexArr());
+			progress = null;
+		}
+		
+		if (written.failed > 0) {
+			throw new ExecuteException(1105, "HY000", String.format("%d of %d rows failed, %d deleted: %s", 
+					written.failed, matched, written.deleted, StringUtils.join(written.errors, "; ")));
+		}
+		ret.affectedRows = written.deleted;
+		return ret;
+	}
+	
+	/**
+	 * Wait until the rows written so far are within the rate, in rows per second
+	 */
+	private void throttle(long started, long rows, long rate) {
+		if (rate <= 0) {
+			return;
+		}
+		long wait = rows * 1000 / rate - (System.currentTimeMillis() - started);
+		if (wait > 0) {
+			running.sleep(wait);
+		}
+	}
+	
+	/**
+	 * State of the statement running, null if it reports none
+	 */
+	public String getProgress() {
+		return progress;
+	}
+	
+	/**
+	 * KILL QUERY from another connection, the statement running stops
+	 * waiting for elasticsearch and its scrolls are cleared
+	 */
+	public void kill() {
+		RunningStatement statement = running;
+		if (statement != null) {
+			statement.kill();
+		}
+	}
+	
+	/**
+	 * The MAX_EXECUTION_TIME hint of the statement comes before the variable of the session
+	 *
+	 * @param hint optimizer hint of the statement, null if it has none
+	 * @return milliseconds a select may run, 0 for no limit
+	 */
+	private long maxExecutionTime(String hint) {
+		Matcher matcher;
+		if (hint != null && (matcher = HINT_MAX_EXECUTION_TIME.matcher(hint)).find()) {
+			return NumberUtils.toLong(matcher.group(1), 0);
+		}
+		String value = session == null ? SystemVariables.getDefaults().get("max_execution_time") : session.getVariable("max_execution_time");
+		return NumberUtils.toLong(StringUtils.trimToEmpty(value), 0);
+	}
+	
+	/**
+	 * In bulk load mode the indices are tuned for the load before they are written.
+	 * A time partitioned table is tuned by its pattern, the indices of its periods
+	 * which exist; a period index created by the load keeps its default settings.
+	 */
+	private void beginWrite(Query query) {
+		BulkLoadManager manager = BulkLoadManager.getInstance();
+		if (bulkLoad == null && isOn("bulk_load") && manager.isStarted()) {
+			bulkLoad = manager.open();
+		}
+		if (bulkLoad != null) {
+			Catalog catalog = SchemaManager.getInstance().getCatalog();
+			String[] indices = query.getIndexArr().clone();
+			for (int i = 0; i < indices.length; i ++) {
+				Table table = catalog.getIndex(indices[i]);
+				if (table != null && table.partition != null) {
+					indices[i] = table.partition.pattern();
+				}
+			}
+			bulkLoad.write(indices, session == null || !"OFF".equals(session.getVariable("bulk_load_replicas")));
+		}
+	}
+	
+	private void endWrite(BulkWriter.BulkResult written) {
+		if (bulkLoad != null) {
+			bulkLoad.add(written.created + written.replaced);
+		}
+	}
+	
+	/**
+	 * After SET, a bulk load ends when bulk_load is turned off: the buffered rows
+	 * are written, the indices restored, and the OK reports the throughput
+	 */
+	public void variablesChanged(Result result) {
+		if (bulkLoad != null && !isOn("bulk_load")) {
+			try {
+				flushWrites();
+			} finally {
+				result.info = bulkLoad.close();
+				bulkLoad = null;
+			}
+		}
+	}
+	
+	/**
+	 * The connection is closed, a bulk load in progress ends. The rows written
+	 * behind are written first, while the indices still have the load settings.
+	 */
+	public void close() {
+		if (bulkLoad != null) {
+			try {
+				WriteBehindBuffer buffer = WriteBehindBuffer.getInstance();
+				if (buffer.isStarted()) {
+					buffer.flush();
+				}
+				String failures = writes.take();
+				if (failures != null) {
+					logger.warn("rows written behind failed before the connection closed: " + failures);
+				}
+			} catch (RuntimeException e) {
+				logger.warn("can not write the rows buffered before the connection closed: " + e.getMessage());
+			} finally {
+				bulkLoad.close();
+				bulkLoad = null;
+			}
+		}
+	}
+	
+	/**
+	 * Inserts are written behind when the session turns write_behind on,
+	 * or the table is listed in write_behind.tables
+	 */
+	private boolean isWriteBehind(Insert insert) {
+		WriteBehindBuffer buffer = WriteBehindBuffer.getInstance();
+		return buffer.isStarted() && (isOn("write_behind") || buffer.isTable(insert.getFrom().get(0).getIndex()));
+	}
+	
+	private boolean isOn(String variable) {
+		return session != null && "ON".equals(session.getVariable(variable));
+	}
+	
+	/**
+	 * COMMIT and FLUSH TABLES, write the buffered rows and report the failures
+	 */
+	public void flushWrites() {
+		WriteBehindBuffer buffer = WriteBehindBuffer.getInstance();
+		if (buffer.isStarted()) {
+			buffer.flush();
+		}
+		checkWrites();
+	}
+	
+	/**
+	 * Rows written behind which failed since the last statement are an error of this one
+	 */
+	public void checkWrites() {
+		String failures = writes.take();
+		if (failures != null) {
+			throw new ExecuteException(1105, "HY000", failures);
+		}
+	}
+	
+	/**
+	 * A large INSERT ... VALUES is read row by row, the rows are encoded and sent
+	 * in bulk chunks while the rest of the statement is read. The rows sent before
+	 * a syntax error are written.
+	 */
+	private Result streamInsert(String sql) {
+		InsertStreamParser parser = new InsertStreamParser(sql);
+		BulkWriter.Stream stream = BulkWriter.getInstance().open(client);
+		Insert insert = null;
+		BulkWriter.BulkResult written;
+		SqlParseException error = null;
+		try {
+			insert = parser.parseHeader();
+			InsertQueryAction action = new InsertQueryAction(client, insert);
+			prepare(action);
+			beginWrite(insert);
+			
+			Object[] row;
+			while ((row = parser.next()) != null) {
+				stream.add(action.request(row, parser.getRows()));
+			}
+		} catch (SqlParseException e) {
+			error = e;
+		} finally {
+			// the chunks sent are waited for and counted whatever stopped the statement
+			written = stream.close();
+			endWrite(written);
+			if (insert != null) {
+				invalidate(insert.getIndexArr());
+			}
+		}
+		
+		if (error != null) {
+			throw new ExecuteException(1064, "42000", String.format("%s, %d rows written",
+					error.getMessage(), written.created + written.replaced), error);
+		}
+		return result(written, insert.isReplace(), insert.isIgnore(), parser.getRows());
+	}
+	
+	/**
+	 * LOAD DATA LOCAL, parse the statement and resolve its columns before the client is asked for the file
+	 */
+	public InsertQueryAction prepareLoad(String sql) {
+		try {
+			InsertQueryAction action = (InsertQueryAction)ESActionFactory.create(client, sql);
+			LoadData load = (LoadData)action.getQuery();
+			if (!load.isLocal()) {
+				throw new ExecuteException(1148, "42000", "The used command is not allowed with this MySQL version, use LOAD DATA LOCAL");
+			}
+			
+			Table table = SchemaManager.getInstance().getCatalog().getIndex(load.getFrom().get(0).getIndex());
+			if (load.getFields().isEmpty()) {
+				if (table == null) {
+					throw new ExecuteException(1146, "42S02", String.format("Table '%s' doesn't exist, a field list is required", 
+							load.getFrom().get(0).getIndex()));
+				}
+				for (cn.batchfile.elasticsql.schema.Column column : table.columns) {
+					if (column.type != cn.batchfile.elasticsql.schema.Column.Type.OBJECT) {
+						load.getFields().add(column.name);
+					}
+				}
+			}
+			for (String field : load.getFields()) {
+				if (!field.startsWith("@")) {
+					load.getColumns().add(field);
+				}
+			}
+			for (String column : load.getVariables().keySet()) {
+				if (!load.getColumns().contains(column)) {
+					load.getColumns().add(column);
+				}
+			}
+			for (String column : load.getConstants().keySet()) {
+				if (!load.getColumns().contains(column)) {
+					load.getColumns().add(column);
+				}
+			}
+			prepare(action);
+			return action;
+		} catch (SQLFeatureNotSupportedException e) {
+			throw new ExecuteException(1011, StringUtils.EMPTY, e.getMessage(), e);
+		} catch (SqlParseException e) {
+			throw new ExecuteException(1012, StringUtils.EMPTY, e.getMessage(), e);
+		} catch (ExecuteException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ExecuteException(1050, StringUtils.EMPTY, e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Read the lines of the file and write them in bulk chunks, at most
+	 * bulk.concurrency chunks are in flight and the file is not read meanwhile.
+	 * Fields are converted to the types of the table mapping, a line with
+	 * missing or extra fields is a warning.
+	 */
+	public Result load(InsertQueryAction action, InputStream file) throws IOException {
+		LoadData load = (LoadData)action.getQuery();
+		List<String> columns = load.getColumns();
+		Map<String, cn.batchfile.elasticsql.schema.Column.Type> types = new HashMap<String, cn.batchfile.elasticsql.schema.Column.Type>();
+		Table table = SchemaManager.getInstance().getCatalog().getIndex(load.getFrom().get(0).getIndex());
+		if (table != null) {
+			for (cn.batchfile.elasticsql.schema.Column column : table.columns) {
+				types.put(column.name, column.type);
+			}
+		}
+		
+		// where each field goes, a column or a variable
+		int[] targets = new int[load.getFields().size()];
+		for (int i = 0; i < targets.length; i ++) {
+			targets[i] = columns.indexOf(load.getFields().get(i));
+		}
+		Map<String, String> variables = new HashMap<String, String>();
+		
+		String charset = load.getCharset() != null ? load.getCharset() 
+				: session != null ? session.getVariable("character_set_database") : null;
+		InfileReader reader = new InfileReader(new InputStreamReader(file, charset(charset)), load);
+		for (long i = 0; i < load.getIgnoreLines() && reader.next() != null; i ++) {
+		}
+		
+		beginWrite(load);
+		BulkWriter.Stream stream = BulkWriter.getInstance().open(client);
+		long rows = 0;
+		long warnings = 0;
+		List<String> fields;
+		BulkWriter.BulkResult written = null;
+		try {
+			while ((fields = reader.next()) != null) {
+				if (fields.size() != targets.length) {
+					warnings ++;
+				}
+				Object[] row = new Object[columns.size()];
+				// a variable the line is too short for is NULL, not the value of the line before
+				variables.clear();
+				for (int i = 0; i < targets.length && i < fields.size(); i ++) {
+					if (targets[i] >= 0) {
+						row[targets[i]] = convert(fields.get(i), types.get(columns.get(targets[i])));
+					} else {
+						variables.put(load.getFields().get(i), fields.get(i));
+					}
+				}
+				for (Map.Entry<String, String> variable : load.getVariables().entrySet()) {
+					row[columns.indexOf(variable.getKey())] = convert(variables.get(variable.getValue()), types.get(variable.getKey()));
+				}
+				for (Map.Entry<String, Object> constant : load.getConstants().entrySet()) {
+					row[columns.indexOf(constant.getKey())] = constant.getValue();
+				}
+				
+				rows ++;
+				stream.add(action.request(row, (int)rows));
+			}
+		} catch (SqlParseException e) {
+			throw new ExecuteException(1105, "HY000", e.getMessage(), e);
+		} finally {
+			written = stream.close();
+			endWrite(written);
+			invalidate(load.getIndexArr());
+			logger.info(String.format("load data into %s, %d lines, %d rows written, %d failed", 
+					load.getFrom().get(0).getIndex(), reader.getLines(), written.created + written.replaced, written.failed));
+		}
+		
+		Result ret = result(written, load.isReplace(), load.isIgnore(), rows);
+		ret.warnings += warnings;
+		return ret;
+	}
+	
+	/**
+	 * Value of a field read from a file, as the type of the column in the mapping
+	 */
+	private Object convert(String value, cn.batchfile.elasticsql.schema.Column.Type type) {
+		if (value == null || type == null) {
+			return value;
+		}
+		try {
+			switch (type) {
+			case BYTE:
+			case SHORT:
+			case INTEGER:
+			case LONG:
+				return value.isEmpty() ? null : Long.valueOf(value.trim());
+			case FLOAT:
+			case DOUBLE:
+				return value.isEmpty() ? null : Double.valueOf(value.trim());
+			case BOOLEAN:
+				return "1".equals(value) || "true".equalsIgnoreCase(value);
+			default:
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// elasticsearch rejects the document, the row is counted as failed
+			return value;
+		}
+	}
+	
+	/**
+	 * Java charset of a MySQL character set name
+	 */
+	private Charset charset(String name) {
+		if (name == null || name.toLowerCase().startsWith("utf8")) {
+			return Charset.forName("UTF-8");
+		} else if ("latin1".equalsIgnoreCase(name)) {
+			return Charset.forName("windows-1252");
+		} else if ("binary".equalsIgnoreCase(name) || "ascii".equalsIgnoreCase(name)) {
+			return Charset.forName("ISO-8859-1");
+		}
+		try {
+			return Charset.forName(name);
+		} catch (IllegalArgumentException e) {
+			throw new ExecuteException(1115, "42000", String.format("Unknown character set: '%s'", name));
+		}
+	}
+	
+	/**
+	 * Type, routing column and partitions of the documents and, for an insert without a column list, the columns
+	 * from the catalog. The columns of INSERT ... SELECT without a column list are
+	 * the names of the fields selected, none for SELECT * which copies the documents.
+	 */
+	private void prepare(InsertQueryAction action) {
+		Insert insert = (Insert)action.getQuery();
+		Table table = SchemaManager.getInstance().getCatalog().getIndex(insert.getFrom().get(0).getIndex());
+		action.setRoutingColumn(table == null ? null : table.routing);
+		action.setPartition(table == null ? null : table.partition);
+		if (table != null && table.mappings.size() == 1) {
+			action.setDefaultType(table.mappings.get(0));
+		} else if (table == null || table.mappings.isEmpty()) {
+			action.setDefaultType(defaultType);
+		}
+		if (insert.getSelect() != null) {
+			if (insert.getColumns().isEmpty()) {
+				for (Field field : insert.getSelect().getFields()) {
+					insert.getColumns().add(field.getAlias() != null ? field.getAlias() : field.getName());
+				}
+			}
+		} else if (insert.getColumns().isEmpty() && table != null) {
+			for (cn.batchfile.elasticsql.schema.Column column : table.columns) {
+				if (column.type != cn.batchfile.elasticsql.schema.Column.Type.OBJECT) {
+					insert.getColumns().add(column.name);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Affected rows of a write, as MySQL counts them a replaced row is deleted and inserted.
+	 * A failed row is an error unless the statement ignores errors, it is a warning then.
+	 */
+	private Result result(BulkWriter.BulkResult written, boolean replace, boolean ignore, long rows) {
+		if (written.failed > 0 && !ignore) {
+			String message = String.format("%d of %d rows failed, %d written: %s",
+					written.failed, rows, written.created + written.replaced, StringUtils.join(written.errors, "; "));
+			if (written.conflicts == written.failed) {
+				throw new ExecuteException(1062, "23000", "Duplicate entry, " + message);
+			}
+			throw new ExecuteException(1105, "HY000", message);
+		}
+		
+		Result ret = new Result();
+		ret.affectedRows = written.created + (replace ? written.replaced * 2 : written.replaced);
+		ret.warnings = written.failed;
+		return ret;
+	}
+	
+	/**
+	 * ANALYZE TABLE, collect the statistics used to translate aggregations
+	 */
+	private ResultSet analyze(String[] tables) {
+		ResultSet rs = new ResultSet();
+		rs.addColumn(new Column("Table"));
+		rs.addColumn(new Column("Op"));
+		rs.addColumn(new Column("Msg_type"));
+		rs.addColumn(new Column("Msg_text"));
+		
+		Catalog catalog = SchemaManager.getInstance().getCatalog();
+		for (String name : tables) {
+			name = StringUtils.strip(name, "`");
+			if (name.contains(".") && catalog.getIndex(name) == null) {
+				name = StringUtils.strip(StringUtils.substringAfter(name, "."), "`");
+			}
+			
+			Row row = new Row(catalog.getSchema() + "." + name, "analyze");
+			Table table = catalog.getIndex(name);
+			if (table == null) {
+				row.addData("Error");
+				row.addData(String.format("Table '%s.%s' doesn't exist", catalog.getSchema(), name));
+			} else {
+				try {
+					StatsCatalog.getInstance().analyze(client, table);
+					row.addData("status");
+					row.addData("OK");
+				} catch (Exception e) {
+					logger.warn("can not analyze table " + name, e);
+					row.addData("Error");
+					row.addData(String.valueOf(e.getMessage()));
+				}
+			}
+			rs.addRow(row);
+		}
+		return rs;
+	}
+	
+	/**
+	 * Indices written by this proxy, results read from them are out of date
+	 */
+	public void invalidate(String[] indices) {
+		Catalog catalog = SchemaManager.getInstance().getCatalog();
+		for (String index : indices) {
+			ResultCache.getInstance().invalidate(index);
+			WindowCache.getInstance().invalidate(index);
+			
+			// the rows of a partitioned table were written to the indices of their periods
+			Table table = catalog.getIndex(index);
+			if (table != null && table.partition != null) {
+				ResultCache.getInstance().invalidate(table.partition.pattern());
+				WindowCache.getInstance().invalidate(table.partition.pattern());
+			}
+		}
+	}
+	
+	public Client getClient() {
+		return client;
+	}
+	
+	public void setSession(Session session) {
+		this.session = session;
+	}
+	
 	public SearchRequestBuilder explain(String sql) throws SQLFeatureNotSupportedException, SqlParseException {
-		SearchRequestBuilder select = (SearchRequestBuilder)searchDao.explain(sql);
+		SearchRequestBuilder select = (SearchRequestBuilder)create(sql).explain();
 		logger.debug(select);
 		return select;
 	}
 	
+	/**
+	 * Get column names of a select statement without executing it
+	 * @param sql select statement
+	 * @return column names, empty if the statement returns no result set
+	 */
+	public List<String> describe(String sql) throws SQLFeatureNotSupportedException, SqlParseException {
+		List<String> heads = new ArrayList<String>();
+		QueryAction action = ESActionFactory.create(client, sql);
+		if (!(action.getQuery() instanceof Select)) {
+			return heads;
+		}
+		
+		Select select = (Select)action.getQuery();
+		if (select.isAgg) {
+			for (Field field : select.getGroupBys()) {
+				heads.add(field instanceof MethodField ? field.getAlias() : field.getName());
+			}
+		}
+		for (Field field : select.getFields()) {
+			heads.add(field instanceof MethodField ? field.getAlias() : field.getName());
+		}
+		if (heads.isEmpty()) {
+			// the fields of a partitioned table are those of the indices of its periods
+			String[] indices = select.getIndexArr();
+			Catalog catalog = SchemaManager.getInstance().getCatalog();
+			for (int i = 0; i < indices.length; i ++) {
+				Table table = catalog.getIndex(indices[i]);
+				if (table != null && table.partition != null) {
+					indices[i] = table.partition.pattern();
+				}
+			}
+			heads.addAll(getMappingFields(indices, select.getTypeArr()));
+		}
+		return heads;
+	}
+	
+	/**
+	 * Execute a select statement and keep its result open for fetching.
+	 * Plain searches are read through a scroll, aggregations are buffered.
+	 * @param sql select statement
+	 * @param heads column names reported when the statement was prepared
+	 * @param scrollSize number of documents of each scroll page
+	 * @param keepAlive how long the scroll stays open between two fetches
+	 */
+	public Cursor openCursor(String sql, List<String> heads, int scrollSize, TimeValue keepAlive) {
+		running = new RunningStatement(client, maxExecutionTime(StatementClassifier.hint(sql)));
+		try {
+			QueryAction action = parse(sql);
+			resolve(action);
+			GetQueryAction get = lookup(action);
+			if (get != null) {
+				logger.debug(get);
+				ResultHandler handler = new GetResultHandler(get, running.get((MultiGetRequestBuilder)translate(get)));
+				return new BufferedCursor(heads.isEmpty() ? handler.getHead() : heads, handler.getBody());
+			} else if (action instanceof DefaultQueryAction) {
+				Select select = (Select)action.getQuery();
+				SearchRequestBuilder request = (SearchRequestBuilder)translate(action);
+				request.setFrom(0);
+				request.setSize(scrollSize);
+				request.setScroll(keepAlive);
+				running.timeout(request);
+				logger.debug(request);
+				
+				SearchResponse response = running.get(request);
+				long limit = select.isLimited() ? select.getRowCount() : -1;
+				return new ScrollCursor(client, response, heads, select.getOffset(), limit, keepAlive);
+			} else {
+				SearchRequestBuilder request = (SearchRequestBuilder)translate(action);
+				running.timeout(request);
+				logger.debug(request);
+				
+				ResultHandler handler = ResultHandlerFactory.create(running.get(request));
+				return new BufferedCursor(heads.isEmpty() ? handler.getHead() : heads, handler.getBody());
+			}
+		} catch (SQLFeatureNotSupportedException e) {
+			throw new ExecuteException(1011, StringUtils.EMPTY, e.getMessage(), e);
+		} catch (SqlParseException e) {
+			throw new ExecuteException(1012, StringUtils.EMPTY, e.getMessage(), e);
+		} catch (ExecuteException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ExecuteException(1050, StringUtils.EMPTY, e.getMessage(), e);
+		} finally {
+			running = null;
+		}
+	}
+	
+	/**
+	 * COM_STMT_FETCH, the next rows of a cursor. Each fetch is given the
+	 * max_execution_time of the statement and is stopped by KILL QUERY.
+	 * @param sql statement which opened the cursor
+	 */
+	public List<Row> fetch(String sql, Cursor cursor, int count) {
+		running = new RunningStatement(client, maxExecutionTime(StatementClassifier.hint(sql)));
+		try {
+			return cursor.fetch(running, count);
+		} catch (ExecuteException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ExecuteException(1050, StringUtils.EMPTY, e.getMessage(), e);
+		} finally {
+			running = null;
+		}
+	}
+	
+	private List<String> getHead(List<Map<String, Object>> body) {
+		List<String> heads = new ArrayList<String>();
+		for (Map<String, Object> map : body) {
+			for (String head : map.keySet()) {
+				if (!heads.contains(head)) {
+					heads.add(head);
+				}
+			}
+		}
+		return heads;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> getMappingFields(String[] indices, String[] types) {
+		List<String> fields = new ArrayList<String>();
+		GetMappingsRequestBuilder request = client.admin().indices().prepareGetMappings(indices);
+		if (types != null) {
+			request.setTypes(types);
+		}
+		
+		ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> mappings = request.get().getMappings();
+		for (ObjectCursor<ImmutableOpenMap<String, MappingMetaData>> index : mappings.values()) {
+			for (ObjectCursor<MappingMetaData> type : index.value.values()) {
+				try {
+					Map<String, Object> properties = (Map<String, Object>)type.value.sourceAsMap().get("properties");
+					if (properties == null) {
+						continue;
+					}
+					for (String field : properties.keySet()) {
+						if (!fields.contains(field)) {
+							fields.add(field);
+						}
+					}
+				} catch (IOException e) {
+					throw new ExecuteException(1050, StringUtils.EMPTY, e.getMessage(), e);
+				}
+			}
+		}
+		return fields;
+	}
+	
 	private String getClusterName(String[] addresses) {
 		String r = StringUtils.EMPTY;
 		for (String address : addresses) {
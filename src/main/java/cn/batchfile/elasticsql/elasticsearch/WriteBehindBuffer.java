@@ -0,0 +1,253 @@
+package cn.batchfile.elasticsql.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+
+import cn.batchfile.elasticsql.cache.ResultCache;
+import cn.batchfile.elasticsql.cache.WindowCache;
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Rows of small inserts acknowledged before they are written. The rows of all
+ * connections are buffered together and written in bulk requests when the
+ * buffer holds write_behind.buffer_size rows, every write_behind.interval
+ * seconds, or when a connection asks for it with COMMIT or FLUSH TABLES.
+ * A row which fails is reported to its connection on the next statement.
+ */
+public class WriteBehindBuffer implements Runnable {
+
+	private static final Logger logger = Logger.getLogger("WriteBehindBuffer");
+	private static final int MAX_ERRORS = 10;
+	private static WriteBehindBuffer instance;
+
+	private int capacity;
+	private long interval;
+	private Set<String> tables = new HashSet<String>();
+	private Client client;
+	private List<Entry> entries = new ArrayList<Entry>();
+	/** generation of the rows being buffered, rows taken by a flush are of an older one */
+	private long generation = 1;
+	/** last generation written */
+	private long flushed = 0;
+	private boolean flushing = false;
+
+	public static synchronized WriteBehindBuffer getInstance() {
+		if (instance == null) {
+			instance = new WriteBehindBuffer(JMP.config);
+		}
+		return instance;
+	}
+
+	public WriteBehindBuffer(Properties config) {
+		this.capacity = Integer.parseInt(config.getProperty("write_behind.buffer_size", "10000").trim());
+		this.interval = Long.parseLong(config.getProperty("write_behind.interval", "1").trim()) * 1000;
+		for (String table : config.getProperty("write_behind.tables", "").split(",")) {
+			if (StringUtils.isNotBlank(table)) {
+				tables.add(table.trim());
+			}
+		}
+	}
+
+	/**
+	 * Rows written behind by one connection, and their failures not reported yet
+	 */
+	public static class Owner {
+		private long failed;
+		private List<String> errors = new ArrayList<String>();
+
+		private synchronized void fail(String error) {
+			failed++;
+			if (errors.size() < MAX_ERRORS) {
+				errors.add(error);
+			}
+		}
+
+		/**
+		 * @return message of the failures since the last call, null if there is none
+		 */
+		public synchronized String take() {
+			if (failed == 0) {
+				return null;
+			}
+			String message = String.format("%d rows written behind failed: %s", failed, StringUtils.join(errors, "; "));
+			failed = 0;
+			errors.clear();
+			return message;
+		}
+	}
+
+	private static class Entry {
+		private IndexRequest request;
+		private Owner owner;
+		private boolean ignore;
+
+		private Entry(IndexRequest request, Owner owner, boolean ignore) {
+			this.request = request;
+			this.owner = owner;
+			this.ignore = ignore;
+		}
+	}
+
+	/**
+	 * Write the buffer with this client, every write_behind.interval seconds
+	 */
+	public void start(Client client) {
+		this.client = client;
+		Thread thread = new Thread(this, "write-behind");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public boolean isStarted() {
+		return client != null;
+	}
+
+	/**
+	 * @return true if the inserts of the table are always written behind
+	 */
+	public boolean isTable(String table) {
+		return tables.contains(table);
+	}
+
+	public void run() {
+		while (true) {
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			try {
+				flush();
+			} catch (Exception e) {
+				logger.warn("can not write buffered rows: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Buffer the rows of an insert. The connection which fills the buffer writes it.
+	 *
+	 * @param ignore failures of the rows are not reported
+	 * @return generation of the rows, to wait until they are written
+	 */
+	public long add(List<IndexRequest> requests, Owner owner, boolean ignore) {
+		long added;
+		boolean full;
+		synchronized (this) {
+			for (IndexRequest request : requests) {
+				entries.add(new Entry(request, owner, ignore));
+			}
+			added = generation;
+			full = entries.size() >= capacity;
+		}
+		if (full) {
+			await(added);
+		}
+		return added;
+	}
+
+	/**
+	 * Write the rows buffered so far, return when they are written
+	 */
+	public void flush() {
+		long target;
+		synchronized (this) {
+			target = entries.isEmpty() ? generation - 1 : generation;
+		}
+		await(target);
+	}
+
+	/**
+	 * Wait until the rows of a generation are written. If no flush is running
+	 * the caller writes the buffer itself, the rows buffered by other connections
+	 * while a flush runs are written together by the next one.
+	 */
+	public void await(long target) {
+		for (;;) {
+			List<Entry> batch;
+			long taken;
+			synchronized (this) {
+				while (flushed < target && flushing) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new ExecuteException(1317, "70100", "Query execution was interrupted");
+					}
+				}
+				if (flushed >= target) {
+					return;
+				}
+				batch = entries;
+				entries = new ArrayList<Entry>();
+				taken = generation++;
+				flushing = true;
+			}
+
+			try {
+				write(batch);
+			} finally {
+				synchronized (this) {
+					flushed = taken;
+					flushing = false;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private void write(List<Entry> batch) {
+		int actions = BulkWriter.getInstance().getActions();
+		Set<String> indices = new HashSet<String>();
+		for (int offset = 0; offset < batch.size(); offset += actions) {
+			List<Entry> chunk = batch.subList(offset, Math.min(batch.size(), offset + actions));
+			BulkRequest bulk = new BulkRequest();
+			for (Entry entry : chunk) {
+				bulk.add(entry.request);
+				indices.add(entry.request.index());
+			}
+
+			try {
+				BulkResponse response = client.bulk(bulk).actionGet();
+				for (BulkItemResponse item : response.getItems()) {
+					if (!item.isFailed()) {
+						continue;
+					}
+					Entry entry = chunk.get(item.getItemId());
+					if (!entry.ignore) {
+						entry.owner.fail(String.format("table %s: %s", item.getIndex(), item.getFailureMessage()));
+					}
+				}
+			} catch (Exception e) {
+				logger.warn(String.format("can not write %d buffered rows: %s", chunk.size(), e.getMessage()));
+				for (Entry entry : chunk) {
+					if (!entry.ignore) {
+						entry.owner.fail(String.valueOf(e.getMessage()));
+					}
+				}
+			}
+		}
+
+		for (String index : indices) {
+			ResultCache.getInstance().invalidate(index);
+			WindowCache.getInstance().invalidate(index);
+		}
+		if (!batch.isEmpty()) {
+			logger.debug(String.format("%d buffered rows written", batch.size()));
+		}
+	}
+}
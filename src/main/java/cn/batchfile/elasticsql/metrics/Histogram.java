@@ -0,0 +1,143 @@
+package cn.batchfile.elasticsql.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram in the manner of HdrHistogram: each power of two is split
+ * in 16 linear buckets, so a value from a microsecond to weeks is counted
+ * within 1/16 of itself in a few hundred counters. Recording is a few atomic
+ * increments without a lock, a reader takes a snapshot of the counters.
+ */
+public class Histogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB = 1 << SUB_BITS;
+	// values from 2^41 microseconds, about 25 days, are counted in the last bucket
+	private static final int MAX_MAGNITUDE = 40;
+	private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param micros a latency in microseconds
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(index(value));
+		sum.addAndGet(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+		}
+	}
+
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i ++) {
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+		return new Snapshot(copy, total, sum.get(), max.get());
+	}
+
+	static int index(long value) {
+		if (value < SUB) {
+			return (int)value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if (magnitude > MAX_MAGNITUDE) {
+			return BUCKETS - 1;
+		}
+		int sub = (int)(value >>> (magnitude - SUB_BITS)) & (SUB - 1);
+		return (magnitude - SUB_BITS + 1) * SUB + sub;
+	}
+
+	/**
+	 * @return smallest value counted in the bucket
+	 */
+	static long lowest(int index) {
+		if (index < SUB) {
+			return index;
+		}
+		int magnitude = index / SUB + SUB_BITS - 1;
+		return (long)(SUB + index % SUB) << (magnitude - SUB_BITS);
+	}
+
+	/**
+	 * @return largest value counted in the bucket
+	 */
+	static long highest(int index) {
+		return index == BUCKETS - 1 ? Long.MAX_VALUE : lowest(index + 1) - 1;
+	}
+
+	/**
+	 * Counters of a histogram at one time
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return total of the values, in microseconds
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public long getMean() {
+			return count == 0 ? 0 : sum / count;
+		}
+
+		/**
+		 * @param quantile from 0 to 1
+		 * @return the value under which the quantile of the values are, 0 if there is none
+		 */
+		public long percentile(double quantile) {
+			long rank = (long)Math.ceil(quantile * count);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i ++) {
+				seen += counts[i];
+				if (seen > 0 && seen >= rank) {
+					return Math.min(highest(i), max);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Only the buckets whose values are all at most micros are counted: the
+		 * values of the bucket holding micros are left out, even those below it,
+		 * so the count may be short by the values within 1/16 under micros.
+		 *
+		 * @return number of values at most micros, as far as the buckets tell
+		 */
+		public long countAtMost(long micros) {
+			long seen = 0;
+			for (int i = 0; i < counts.length && highest(i) <= micros; i ++) {
+				seen += counts[i];
+			}
+			return seen;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package cn.batchfile.elasticsql.metrics;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+	@Test
+	public void testIndex() {
+		assertEquals(0, Histogram.index(0));
+		assertEquals(15, Histogram.index(15));
+		assertEquals(16, Histogram.index(16));
+		assertEquals(31, Histogram.index(31));
+		// from 32 on a bucket holds two values, then four from 64
+		assertEquals(32, Histogram.index(33));
+		assertEquals(48, Histogram.index(64));
+		assertEquals(48, Histogram.index(67));
+		assertEquals(Histogram.index(Long.MAX_VALUE), Histogram.index(1L << 41));
+		for (long value : new long[] {0, 1, 15, 16, 31, 32, 100, 1000, 123456789L, 1L << 40}) {
+			int index = Histogram.index(value);
+			assertTrue(value + " from " + Histogram.lowest(index), Histogram.lowest(index) <= value);
+			assertTrue(value + " to " + Histogram.highest(index), Histogram.highest(index) >= value);
+		}
+	}
+
+	@Test
+	public void testEdges() {
+		for (int i = 0; Histogram.highest(i) != Long.MAX_VALUE; i ++) {
+			assertEquals(i, Histogram.index(Histogram.lowest(i)));
+			assertEquals(i, Histogram.index(Histogram.highest(i)));
+			assertEquals(Histogram.highest(i) + 1, Histogram.lowest(i + 1));
+			// a bucket is at most 1/16 of its values wide
+			assertTrue(Histogram.highest(i) - Histogram.lowest(i) <= Math.max(0, Histogram.lowest(i) / 16));
+		}
+	}
+
+	@Test
+	public void testPercentile() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.snapshot().percentile(0.5));
+		for (int i = 1; i <= 100; i ++) {
+			histogram.record(i);
+		}
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100, snapshot.getCount());
+		assertEquals(5050, snapshot.getSum());
+		assertEquals(100, snapshot.getMax());
+		assertEquals(1, snapshot.percentile(0.01));
+		assertEquals(Histogram.highest(Histogram.index(50)), snapshot.percentile(0.5));
+		assertEquals(100, snapshot.percentile(1));
+		assertTrue(Math.abs(snapshot.percentile(0.9) - 90) <= 90 / 16);
+	}
+
+	@Test
+	public void testCountAtMost() {
+		Histogram histogram = new Histogram();
+		histogram.record(99);
+		histogram.record(100);
+		histogram.record(101);
+		histogram.record(-5);
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1, snapshot.countAtMost(0));
+		assertEquals(2, snapshot.countAtMost(99));
+		// 100 and 101 are in the bucket from 100 to 103, it is counted from 103 on
+		assertEquals(2, snapshot.countAtMost(100));
+		assertEquals(4, snapshot.countAtMost(103));
+		assertEquals(4, snapshot.countAtMost(Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,145 @@
+package cn.batchfile.elasticsql.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.batchfile.elasticsql.session.ProcessList;
+
+/**
+ * Latency of the stages of a statement and counters of the proxy, shared by
+ * all connections. They are read with SHOW GLOBAL STATUS on the mysql port
+ * and in the text format of prometheus on /metrics of the http server.
+ */
+public class Metrics {
+
+	public static enum Stage {
+		// a command, from its packet read to its response ready to be written
+		STATEMENT,
+		// sql to the query objects
+		PARSE,
+		// query objects to the elasticsearch request
+		TRANSLATE,
+		// wait for a response of elasticsearch
+		ELASTICSEARCH,
+		// hits and buckets to rows
+		FLATTEN,
+		// rows to packets
+		ENCODE,
+		// packets to the socket
+		WRITE
+	};
+
+	// upper bounds of the buckets reported to prometheus, in microseconds. They
+	// are not edges of the histogram buckets, a count may miss the values just under its bound
+	private static final long[] BOUNDS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+		100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000, 30000000, 60000000};
+	private static final Metrics instance = new Metrics();
+
+	private final long started = System.currentTimeMillis();
+	private final Histogram[] stages = new Histogram[Stage.values().length];
+	private final AtomicLong questions = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong rowsSent = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	public Metrics() {
+		for (int i = 0; i < stages.length; i ++) {
+			stages[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * @param started System.nanoTime() when the stage started
+	 */
+	public void record(Stage stage, long started) {
+		stages[stage.ordinal()].record((System.nanoTime() - started) / 1000);
+	}
+
+	/**
+	 * A command of a client was answered
+	 */
+	public void question(boolean error) {
+		questions.incrementAndGet();
+		if (error) {
+			errors.incrementAndGet();
+		}
+	}
+
+	public void sent(long rows, long bytes) {
+		rowsSent.addAndGet(rows);
+		bytesSent.addAndGet(bytes);
+	}
+
+	/**
+	 * Variables of SHOW GLOBAL STATUS, latencies in microseconds
+	 */
+	public Map<String, String> getStatus() {
+		Map<String, String> status = new LinkedHashMap<String, String>();
+		status.put("Bytes_sent", String.valueOf(bytesSent.get()));
+		status.put("Errors", String.valueOf(errors.get()));
+		status.put("Questions", String.valueOf(questions.get()));
+		status.put("Rows_sent", String.valueOf(rowsSent.get()));
+		status.put("Threads_connected", String.valueOf(ProcessList.getInstance().size()));
+		status.put("Uptime", String.valueOf((System.currentTimeMillis() - started) / 1000));
+		for (Stage stage : Stage.values()) {
+			String prefix = "Latency_" + stage.name().toLowerCase(Locale.ENGLISH) + "_";
+			Histogram.Snapshot snapshot = stages[stage.ordinal()].snapshot();
+			status.put(prefix + "count", String.valueOf(snapshot.getCount()));
+			status.put(prefix + "avg_us", String.valueOf(snapshot.getMean()));
+			status.put(prefix + "p50_us", String.valueOf(snapshot.percentile(0.5)));
+			status.put(prefix + "p95_us", String.valueOf(snapshot.percentile(0.95)));
+			status.put(prefix + "p99_us", String.valueOf(snapshot.percentile(0.99)));
+			status.put(prefix + "p999_us", String.valueOf(snapshot.percentile(0.999)));
+			status.put(prefix + "max_us", String.valueOf(snapshot.getMax()));
+		}
+		return status;
+	}
+
+	/**
+	 * Text exposition format of prometheus, the stages as one histogram in seconds
+	 */
+	public String toPrometheus() {
+		StringBuilder text = new StringBuilder();
+		counter(text, "elasticsql_questions_total", "Commands answered", questions.get());
+		counter(text, "elasticsql_errors_total", "Commands answered with an error", errors.get());
+		counter(text, "elasticsql_rows_sent_total", "Rows sent to clients", rowsSent.get());
+		counter(text, "elasticsql_bytes_sent_total", "Bytes sent to clients", bytesSent.get());
+		text.append("# HELP elasticsql_connections Client connections open\n");
+		text.append("# TYPE elasticsql_connections gauge\n");
+		text.append("elasticsql_connections ").append(ProcessList.getInstance().size()).append('\n');
+		text.append("# HELP elasticsql_uptime_seconds Seconds since the proxy started\n");
+		text.append("# TYPE elasticsql_uptime_seconds gauge\n");
+		text.append("elasticsql_uptime_seconds ").append((System.currentTimeMillis() - started) / 1000).append('\n');
+
+		text.append("# HELP elasticsql_stage_seconds Time spent in each stage of the statements\n");
+		text.append("# TYPE elasticsql_stage_seconds histogram\n");
+		for (Stage stage : Stage.values()) {
+			String label = "stage=\"" + stage.name().toLowerCase(Locale.ENGLISH) + "\"";
+			Histogram.Snapshot snapshot = stages[stage.ordinal()].snapshot();
+			for (long bound : BOUNDS) {
+				text.append("elasticsql_stage_seconds_bucket{").append(label).append(",le=\"").append(seconds(bound)).append("\"} ")
+						.append(snapshot.countAtMost(bound)).append('\n');
+			}
+			text.append("elasticsql_stage_seconds_bucket{").append(label).append(",le=\"+Inf\"} ").append(snapshot.getCount()).append('\n');
+			text.append("elasticsql_stage_seconds_sum{").append(label).append("} ").append(seconds(snapshot.getSum())).append('\n');
+			text.append("elasticsql_stage_seconds_count{").append(label).append("} ").append(snapshot.getCount()).append('\n');
+		}
+		return text.toString();
+	}
+
+	private void counter(StringBuilder text, String name, String help, long value) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(" counter\n");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private String seconds(long micros) {
+		return String.valueOf(micros / 1000000d);
+	}
+}
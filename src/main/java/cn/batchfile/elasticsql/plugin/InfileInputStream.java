@@ -0,0 +1,76 @@
+package cn.batchfile.elasticsql.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.github.mpjct.jmpjct.mysql.proto.Packet;
+
+/**
+ * Content of the file a client sends for LOAD DATA LOCAL INFILE. The packets
+ * are read from the connection as the content is consumed, so a slow consumer
+ * slows down the client. The file ends with an empty packet.
+ */
+public class InfileInputStream extends InputStream {
+
+	private InputStream in;
+	private byte[] packet;
+	private int offset;
+	private boolean end = false;
+	private long sequenceId;
+
+	public InfileInputStream(InputStream in, long sequenceId) {
+		this.in = in;
+		this.sequenceId = sequenceId;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return packet[offset++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, packet.length - offset);
+		System.arraycopy(packet, offset, b, off, n);
+		offset += n;
+		return n;
+	}
+
+	/**
+	 * Read the rest of the file, the client waits for the response after the empty packet
+	 */
+	public void drain() throws IOException {
+		while (!end) {
+			packet = null;
+			fill();
+		}
+	}
+
+	/**
+	 * @return sequence id of the last packet read
+	 */
+	public long getSequenceId() {
+		return sequenceId;
+	}
+
+	private boolean fill() throws IOException {
+		while (!end && (packet == null || offset == packet.length)) {
+			packet = Packet.read_packet(in);
+			sequenceId = Packet.getSequenceId(packet);
+			offset = 4;
+			if (packet.length == 4) {
+				end = true;
+			}
+		}
+		return !end;
+	}
+}
@@ -0,0 +1,259 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Snapshot of the information_schema tables. The tables which do not depend
+ * on the cluster (CHARACTER_SETS, COLLATIONS, ENGINES ...) are seeded from
+ * sql/information_schema.sql, SCHEMATA, TABLES and COLUMNS get a row for the
+ * schema of the indices and for every index, alias and field.
+ */
+public class Catalog {
+
+	public static final String INFORMATION_SCHEMA = "information_schema";
+	private static final Logger logger = Logger.getLogger("Catalog");
+	private static final Pattern CREATE_TABLE = Pattern.compile("CREATE TABLE `?(\\w+)`? \\(");
+	private static final Pattern COLUMN = Pattern.compile("\\s+`?(\\w+)`? \\w+.*");
+	private static final Pattern INSERT = Pattern.compile("INSERT INTO `?(\\w+)`? \\((.+?)\\) VALUES\\((.*)\\);");
+	private static final Map<String, MemoryTable> SEED = load("/sql/information_schema.sql");
+
+	private String schema;
+	private Map<String, MemoryTable> tables = new LinkedHashMap<String, MemoryTable>();
+	private Map<String, Table> indices = new LinkedHashMap<String, Table>();
+
+	/**
+	 * @param schema name the indices are listed under
+	 * @param indices indices and aliases of the cluster
+	 */
+	public Catalog(String schema, List<Table> indices) {
+		this.schema = schema;
+		for (Map.Entry<String, MemoryTable> entry : SEED.entrySet()) {
+			tables.put(entry.getKey(), entry.getValue());
+		}
+		for (Table table : indices) {
+			this.indices.put(table.name, table);
+		}
+
+		MemoryTable schemata = copy("SCHEMATA");
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("CATALOG_NAME", "def");
+		row.put("SCHEMA_NAME", schema);
+		row.put("DEFAULT_CHARACTER_SET_NAME", "utf8");
+		row.put("DEFAULT_COLLATION_NAME", "utf8_general_ci");
+		schemata.addRow(row);
+
+		MemoryTable tableRows = copy("TABLES");
+		MemoryTable columnRows = copy("COLUMNS");
+		for (Table table : indices) {
+			row.clear();
+			row.put("TABLE_CATALOG", "def");
+			row.put("TABLE_SCHEMA", schema);
+			row.put("TABLE_NAME", table.name);
+			row.put("TABLE_TYPE", table.type);
+			row.put("ENGINE", "elasticsearch");
+			row.put("TABLE_ROWS", table.rows);
+			row.put("TABLE_COLLATION", "utf8_general_ci");
+			row.put("TABLE_COMMENT", "");
+			tableRows.addRow(row);
+
+			int position = 0;
+			for (Column column : table.columns) {
+				row.clear();
+				row.put("TABLE_CATALOG", "def");
+				row.put("TABLE_SCHEMA", schema);
+				row.put("TABLE_NAME", table.name);
+				row.put("COLUMN_NAME", column.name);
+				row.put("ORDINAL_POSITION", ++ position);
+				row.put("IS_NULLABLE", "YES");
+				row.put("DATA_TYPE", column.type.dataType);
+				row.put("COLUMN_TYPE", column.type.columnType);
+				row.put("COLUMN_KEY", "");
+				row.put("EXTRA", "");
+				row.put("PRIVILEGES", "select");
+				row.put("COLUMN_COMMENT", "");
+				switch (column.type) {
+				case STRING:
+				case BINARY:
+				case OBJECT:
+					row.put("CHARACTER_MAXIMUM_LENGTH", column.type.length);
+					row.put("CHARACTER_OCTET_LENGTH", column.type.length * 3);
+					row.put("CHARACTER_SET_NAME", "utf8");
+					row.put("COLLATION_NAME", "utf8_general_ci");
+					break;
+				case DATE:
+					break;
+				default:
+					row.put("NUMERIC_PRECISION", column.type.length - 1);
+					row.put("NUMERIC_SCALE", column.type == Column.Type.FLOAT || column.type == Column.Type.DOUBLE ? null : 0);
+					break;
+				}
+				columnRows.addRow(row);
+			}
+		}
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return table of information_schema, null if there is no such table
+	 */
+	public MemoryTable getTable(String name) {
+		return tables.get(name.toUpperCase());
+	}
+
+	public Map<String, MemoryTable> getTables() {
+		return Collections.unmodifiableMap(tables);
+	}
+
+	/**
+	 * @return index or alias, null if there is no such one
+	 */
+	public Table getIndex(String name) {
+		return indices.get(name);
+	}
+
+	public List<Table> getIndices() {
+		return new ArrayList<Table>(indices.values());
+	}
+
+	private MemoryTable copy(String name) {
+		MemoryTable table = tables.get(name).copy();
+		tables.put(name, table);
+		return table;
+	}
+
+	/**
+	 * Read the tables of information_schema from the dump. The dump was taken on
+	 * a mysql server, so only the rows describing information_schema itself and
+	 * the tables of the server settings are kept.
+	 */
+	private static Map<String, MemoryTable> load(String resource) {
+		Map<String, List<String>> ddl = new HashMap<String, List<String>>();
+		Map<String, List<Map<String, Object>>> rows = new HashMap<String, List<Map<String, Object>>>();
+		Map<String, String> names = new LinkedHashMap<String, String>();
+		List<String> settings = Arrays.asList(
+				"character_sets", "collations", "collation_character_set_applicability", "engines");
+
+		InputStream in = Catalog.class.getResourceAsStream(resource);
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+			List<String> columns = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher matcher;
+				if ((matcher = CREATE_TABLE.matcher(line)).matches()) {
+					columns = new ArrayList<String>();
+					ddl.put(matcher.group(1), columns);
+				} else if (line.startsWith(")")) {
+					columns = null;
+				} else if (columns != null && (matcher = COLUMN.matcher(line)).matches() && !line.trim().startsWith("KEY ")
+						&& !line.trim().startsWith("PRIMARY KEY") && !line.trim().startsWith("UNIQUE KEY")) {
+					columns.add(matcher.group(1));
+				} else if ((matcher = INSERT.matcher(line)).matches()) {
+					String table = matcher.group(1);
+					String[] into = matcher.group(2).replace("`", "").split(",\\s*");
+					Object[] values = parseValues(matcher.group(3));
+					Map<String, Object> row = new HashMap<String, Object>();
+					for (int i = 0; i < into.length && i < values.length; i ++) {
+						row.put(into[i].toUpperCase(), values[i]);
+					}
+
+					if ("tables".equals(table) && INFORMATION_SCHEMA.equals(row.get("TABLE_SCHEMA"))) {
+						names.put(((String)row.get("TABLE_NAME")).toLowerCase(), (String)row.get("TABLE_NAME"));
+					}
+					if (settings.contains(table) || INFORMATION_SCHEMA.equals(row.get("TABLE_SCHEMA"))
+							|| INFORMATION_SCHEMA.equals(row.get("SCHEMA_NAME"))) {
+						if (!rows.containsKey(table)) {
+							rows.put(table, new ArrayList<Map<String, Object>>());
+						}
+						rows.get(table).add(row);
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.error("can not load " + resource, e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+
+		Map<String, MemoryTable> tables = new LinkedHashMap<String, MemoryTable>();
+		for (Map.Entry<String, String> name : names.entrySet()) {
+			List<String> columns = ddl.get(name.getKey());
+			if (columns == null) {
+				continue;
+			}
+			for (int i = 0; i < columns.size(); i ++) {
+				columns.set(i, columns.get(i).toUpperCase());
+			}
+			MemoryTable table = new MemoryTable(name.getValue(), columns.toArray(new String[columns.size()]));
+			if (rows.containsKey(name.getKey())) {
+				for (Map<String, Object> row : rows.get(name.getKey())) {
+					table.addRow(row);
+				}
+			}
+			tables.put(name.getValue(), table);
+		}
+		logger.info(String.format("%d tables of information_schema loaded", tables.size()));
+		return tables;
+	}
+
+	/**
+	 * Values of an INSERT statement: quoted strings, numbers and NULL
+	 */
+	private static Object[] parseValues(String text) {
+		List<Object> values = new ArrayList<Object>();
+		int i = 0;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (c == ' ' || c == ',') {
+				i ++;
+			} else if (c == '\'') {
+				StringBuilder value = new StringBuilder();
+				for (i ++; i < text.length(); i ++) {
+					c = text.charAt(i);
+					if (c == '\\' && i + 1 < text.length()) {
+						value.append(text.charAt(++ i));
+					} else if (c == '\'' && i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+						value.append(c);
+						i ++;
+					} else if (c == '\'') {
+						break;
+					} else {
+						value.append(c);
+					}
+				}
+				values.add(value.toString());
+				i ++;
+			} else {
+				int end = text.indexOf(',', i);
+				String value = (end < 0 ? text.substring(i) : text.substring(i, end)).trim();
+				if ("NULL".equals(value)) {
+					values.add(null);
+				} else if (value.matches("-?\\d{1,18}")) {
+					values.add(Long.parseLong(value));
+				} else {
+					values.add(value);
+				}
+				i = end < 0 ? text.length() : end;
+			}
+		}
+		return values.toArray();
+	}
+}
@@ -0,0 +1,272 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.SQLExpr;
+import org.durid.sql.ast.expr.SQLIdentifierExpr;
+import org.durid.sql.ast.expr.SQLPropertyExpr;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.durid.sql.ast.statement.SQLExprTableSource;
+import org.durid.sql.ast.statement.SQLSelectQuery;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+
+import cn.batchfile.elasticsql.elasticsearch.Result;
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.metrics.Metrics;
+import cn.batchfile.elasticsql.session.ProcessList;
+import cn.batchfile.elasticsql.session.Session;
+
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.EOF;
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Answer metadata statements (SELECT ... FROM information_schema.*, SHOW DATABASES,
+ * SHOW TABLES, SHOW COLUMNS, DESCRIBE and COM_FIELD_LIST) from the catalog
+ * kept by the SchemaManager, without going to elasticsearch.
+ */
+public class CatalogStatementHandler {
+
+	private static final Pattern SHOW_DATABASES = Pattern.compile(
+			"SHOW\\s+(?:DATABASES|SCHEMAS)(?:\\s+LIKE\\s+'([^']*)')?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SHOW_TABLES = Pattern.compile(
+			"SHOW\\s+(FULL\\s+)?TABLES(?:\\s+(?:FROM|IN)\\s+`?([\\w\\-]+)`?)?(?:\\s+LIKE\\s+'([^']*)')?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SHOW_COLUMNS = Pattern.compile(
+			"SHOW\\s+(FULL\\s+)?(?:COLUMNS|FIELDS)\\s+(?:FROM|IN)\\s+`?([\\w\\-.]+?)`?(?:\\s+(?:FROM|IN)\\s+`?([\\w\\-]+)`?)?(?:\\s+LIKE\\s+'([^']*)')?",
+			Pattern.CASE_INSENSITIVE);
+	// EXPLAIN SELECT ... is the plan of a statement, not the columns of a table
+	private static final Pattern DESCRIBE = Pattern.compile(
+			"(?:DESCRIBE|DESC|EXPLAIN)\\s+(?!(?:SELECT|INSERT|REPLACE|UPDATE|DELETE|EXTENDED|PARTITIONS|FORMAT)\\b)`?([\\w\\-.]+?)`?(?:\\s+'?`?([\\w%\\-.]+)`?'?)?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SHOW_INDEX = Pattern.compile(
+			"SHOW\\s+(?:INDEX|INDEXES|KEYS)\\s+(?:FROM|IN)\\s+.+", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SELECT = Pattern.compile("SELECT\\s.+", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private SchemaManager schemaManager;
+
+	public CatalogStatementHandler(SchemaManager schemaManager) {
+		this.schemaManager = schemaManager;
+	}
+
+	/**
+	 * @param session session of the connection, it tells which connections PROCESSLIST lists
+	 * @param schema current schema of the session
+	 * @return result of the statement, null if it is not a metadata statement
+	 */
+	public Result execute(Session session, String schema, String sql) {
+		String statement = StringUtils.removeEnd(sql.trim(), ";").trim();
+		Catalog catalog = schemaManager.getCatalog();
+
+		Matcher matcher;
+		ResultSet rs;
+		if ((matcher = SHOW_DATABASES.matcher(statement)).matches()) {
+			rs = showDatabases(catalog, matcher.group(1));
+		} else if ((matcher = SHOW_TABLES.matcher(statement)).matches()) {
+			if (matcher.group(2) != null && !Catalog.INFORMATION_SCHEMA.equalsIgnoreCase(matcher.group(2))
+					&& !matcher.group(2).equalsIgnoreCase(catalog.getSchema())) {
+				throw new ExecuteException(1049, "42000", String.format("Unknown database '%s'", matcher.group(2)));
+			}
+			rs = showTables(catalog, matcher.group(1) != null, matcher.group(2) != null ? matcher.group(2) : schema, matcher.group(3));
+		} else if ((matcher = SHOW_COLUMNS.matcher(statement)).matches()) {
+			rs = showColumns(catalog, matcher.group(1) != null, matcher.group(2), matcher.group(3), matcher.group(4));
+		} else if ((matcher = DESCRIBE.matcher(statement)).matches()) {
+			String column = matcher.group(2);
+			rs = showColumns(catalog, false, matcher.group(1), null, column == null || column.contains("%") ? column : column.replace("_", "\\_"));
+		} else if (SHOW_INDEX.matcher(statement).matches()) {
+			rs = new ResultSet();
+			for (String head : new String[] {"Table", "Non_unique", "Key_name", "Seq_in_index", "Column_name", "Collation",
+					"Cardinality", "Sub_part", "Packed", "Null", "Index_type", "Comment", "Index_comment"}) {
+				rs.addColumn(new Column(head));
+			}
+		} else if (SELECT.matcher(statement).matches() && (StringUtils.containsIgnoreCase(statement, Catalog.INFORMATION_SCHEMA)
+				|| Catalog.INFORMATION_SCHEMA.equalsIgnoreCase(schema))) {
+			rs = select(catalog, session, schema, statement);
+		} else {
+			rs = null;
+		}
+
+		if (rs == null) {
+			return null;
+		}
+		Result result = new Result();
+		result.resultSet = rs;
+		return result;
+	}
+
+	/**
+	 * COM_FIELD_LIST, the column definitions of a table followed by EOF
+	 */
+	public ArrayList<byte[]> fieldList(String table, String wildcard) {
+		Table index = getIndex(schemaManager.getCatalog(), table);
+		Pattern like = StringUtils.isEmpty(wildcard) ? null : MemoryTableQuery.like(wildcard);
+
+		ArrayList<byte[]> packets = new ArrayList<byte[]>();
+		long sequenceId = 1;
+		for (cn.batchfile.elasticsql.schema.Column column : index.columns) {
+			if (like != null && !like.matcher(column.name).matches()) {
+				continue;
+			}
+			Column packet = new Column(column.name);
+			packet.schema = schemaManager.getCatalog().getSchema();
+			packet.table = index.name;
+			packet.org_table = index.name;
+			packet.org_name = column.name;
+			packet.type = column.type.mysqlType;
+			packet.columnLength = column.type.length;
+			packet.sequenceId = sequenceId ++;
+			packets.add(packet.toPacket());
+		}
+		EOF eof = new EOF();
+		eof.sequenceId = sequenceId;
+		eof.statusFlags = Flags.SERVER_STATUS_AUTOCOMMIT;
+		packets.add(eof.toPacket());
+		return packets;
+	}
+
+	private ResultSet showDatabases(Catalog catalog, String like) {
+		ResultSet rs = new ResultSet();
+		rs.addColumn(new Column("Database"));
+		for (String name : new String[] {Catalog.INFORMATION_SCHEMA, catalog.getSchema()}) {
+			if (like == null || MemoryTableQuery.like(like).matcher(name).matches()) {
+				rs.addRow(new Row(name));
+			}
+		}
+		return rs;
+	}
+
+	private ResultSet showTables(Catalog catalog, boolean full, String schema, String like) {
+		boolean information = Catalog.INFORMATION_SCHEMA.equalsIgnoreCase(schema);
+		ResultSet rs = new ResultSet();
+		rs.addColumn(new Column("Tables_in_" + (information ? Catalog.INFORMATION_SCHEMA : catalog.getSchema())));
+		if (full) {
+			rs.addColumn(new Column("Table_type"));
+		}
+
+		Pattern pattern = like == null ? null : MemoryTableQuery.like(like);
+		if (information) {
+			for (String name : catalog.getTables().keySet()) {
+				if (pattern == null || pattern.matcher(name).matches()) {
+					rs.addRow(full ? new Row(name, "SYSTEM VIEW") : new Row(name));
+				}
+			}
+		} else {
+			for (Table table : catalog.getIndices()) {
+				if (pattern == null || pattern.matcher(table.name).matches()) {
+					rs.addRow(full ? new Row(table.name, table.type) : new Row(table.name));
+				}
+			}
+		}
+		return rs;
+	}
+
+	private ResultSet showColumns(Catalog catalog, boolean full, String table, String schema, String like) {
+		ResultSet rs = new ResultSet();
+		String[] heads = full ? new String[] {"Field", "Type", "Collation", "Null", "Key", "Default", "Extra", "Privileges", "Comment"}
+				: new String[] {"Field", "Type", "Null", "Key", "Default", "Extra"};
+		for (String head : heads) {
+			rs.addColumn(new Column(head));
+		}
+
+		if (schema == null && table.contains(".") && catalog.getIndex(table) == null) {
+			schema = StringUtils.substringBefore(table, ".");
+			table = StringUtils.substringAfter(table, ".");
+		}
+		Pattern pattern = like == null ? null : MemoryTableQuery.like(like);
+		if (Catalog.INFORMATION_SCHEMA.equalsIgnoreCase(schema)) {
+			MemoryTable memoryTable = catalog.getTable(table);
+			if (memoryTable == null) {
+				throw new ExecuteException(1146, "42S02", String.format("Table '%s.%s' doesn't exist", schema, table));
+			}
+			for (String column : memoryTable.getColumns()) {
+				if (pattern == null || pattern.matcher(column).matches()) {
+					rs.addRow(columnRow(full, column, "varchar(64)", "utf8_general_ci"));
+				}
+			}
+			return rs;
+		}
+
+		for (cn.batchfile.elasticsql.schema.Column column : getIndex(catalog, table).columns) {
+			if (pattern == null || pattern.matcher(column.name).matches()) {
+				rs.addRow(columnRow(full, column.name, column.type.columnType,
+						column.type.mysqlType == Flags.MYSQL_TYPE_VAR_STRING ? "utf8_general_ci" : null));
+			}
+		}
+		return rs;
+	}
+
+	private Row columnRow(boolean full, String name, String type, String collation) {
+		Row row = new Row(name, type);
+		if (full) {
+			row.data.add(collation);
+		}
+		row.addData("YES");
+		row.addData("");
+		row.data.add(null);
+		row.addData("");
+		if (full) {
+			row.addData("select");
+			row.addData("");
+		}
+		return row;
+	}
+
+	private Table getIndex(Catalog catalog, String name) {
+		Table table = catalog.getIndex(MemoryTableQuery.unquote(name));
+		if (table == null) {
+			throw new ExecuteException(1146, "42S02", String.format("Table '%s.%s' doesn't exist", catalog.getSchema(), name));
+		}
+		return table;
+	}
+
+	/**
+	 * SELECT from one table of information_schema
+	 * @return null if the statement reads something else
+	 */
+	private ResultSet select(Catalog catalog, Session session, String schema, String sql) {
+		SQLSelectQuery query;
+		try {
+			query = ((SQLQueryExpr)SQLUtils.toMySqlExpr(sql)).getSubQuery().getQuery();
+		} catch (Exception e) {
+			return null;
+		}
+		if (!(query instanceof MySqlSelectQueryBlock) || !(((MySqlSelectQueryBlock)query).getFrom() instanceof SQLExprTableSource)) {
+			return null;
+		}
+
+		SQLExpr from = ((SQLExprTableSource)((MySqlSelectQueryBlock)query).getFrom()).getExpr();
+		String owner = schema;
+		String name;
+		if (from instanceof SQLPropertyExpr) {
+			owner = MemoryTableQuery.unquote(((SQLPropertyExpr)from).getOwner().toString());
+			name = ((SQLPropertyExpr)from).getName();
+		} else if (from instanceof SQLIdentifierExpr) {
+			name = ((SQLIdentifierExpr)from).getName();
+		} else {
+			return null;
+		}
+		if (!Catalog.INFORMATION_SCHEMA.equalsIgnoreCase(owner)) {
+			return null;
+		}
+
+		MemoryTable table = catalog.getTable(MemoryTableQuery.unquote(name));
+		if (table != null && "PROCESSLIST".equals(table.getName())) {
+			// the connections change all the time, they are listed when the table is read
+			table = ProcessList.getInstance().table(session);
+		} else if (table != null && ("GLOBAL_STATUS".equals(table.getName()) || "SESSION_STATUS".equals(table.getName()))) {
+			table = new MemoryTable(table);
+			for (Map.Entry<String, String> status : Metrics.getInstance().getStatus().entrySet()) {
+				table.addRow(status.getKey().toUpperCase(), status.getValue());
+			}
+		}
+		if (table == null) {
+			throw new ExecuteException(1109, "42S02", String.format("Unknown table '%s' in information_schema", name));
+		}
+		return new MemoryTableQuery(table, schema).select((MySqlSelectQueryBlock)query);
+	}
+}
@@ -1,5 +1,7 @@
 package cn.batchfile.elasticsql.schema;
 
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
+
 public class Column {
 
 	public String name;
@@ -19,17 +21,63 @@ public class Column {
 		no
 	}
 
+	/**
+	 * @return true if a term matches the whole value, the field is a string not
+	 * analyzed, a number, a date or a boolean
+	 */
+	public boolean isExact() {
+		switch (type) {
+		case STRING:
+			return index == Index.not_analyzed;
+		case OBJECT:
+		case BINARY:
+			return false;
+		default:
+			return index != Index.no;
+		}
+	}
+
+	/**
+	 * Elasticsearch field types, with the mysql types they are reported as
+	 */
 	public enum Type {
-		STRING,
-		FLOAT,
-		DOUBLE,
-		BYTE,
-		SHORT,
-		INTEGER,
-		LONG,
-		DATE,
-		BOOLEAN,
-		BINARY,
-		OBJECT
+		STRING("varchar", "varchar(255)", Flags.MYSQL_TYPE_VAR_STRING, 255),
+		FLOAT("float", "float", Flags.MYSQL_TYPE_FLOAT, 12),
+		DOUBLE("double", "double", Flags.MYSQL_TYPE_DOUBLE, 22),
+		BYTE("tinyint", "tinyint(4)", Flags.MYSQL_TYPE_TINY, 4),
+		SHORT("smallint", "smallint(6)", Flags.MYSQL_TYPE_SHORT, 6),
+		INTEGER("int", "int(11)", Flags.MYSQL_TYPE_LONG, 11),
+		LONG("bigint", "bigint(20)", Flags.MYSQL_TYPE_LONGLONG, 20),
+		DATE("datetime", "datetime", Flags.MYSQL_TYPE_DATETIME, 19),
+		BOOLEAN("tinyint", "tinyint(1)", Flags.MYSQL_TYPE_TINY, 1),
+		BINARY("blob", "blob", Flags.MYSQL_TYPE_BLOB, 65535),
+		OBJECT("text", "text", Flags.MYSQL_TYPE_BLOB, 65535);
+
+		public final String dataType;
+		public final String columnType;
+		public final int mysqlType;
+		public final int length;
+
+		private Type(String dataType, String columnType, int mysqlType, int length) {
+			this.dataType = dataType;
+			this.columnType = columnType;
+			this.mysqlType = mysqlType;
+			this.length = length;
+		}
+
+		/**
+		 * @param type the type of a field in the mapping
+		 */
+		public static Type fromMapping(String type) {
+			if (type == null) {
+				return OBJECT;
+			}
+			for (Type value : values()) {
+				if (value.name().equalsIgnoreCase(type)) {
+					return value;
+				}
+			}
+			return "nested".equals(type) ? OBJECT : STRING;
+		}
 	}
 }
@@ -0,0 +1,21 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics of a field, collected from a sample of the documents
+ */
+public class ColumnStats {
+
+	public String name;
+	public Column.Type type;
+	/** documents of the sample with a value */
+	public long count;
+	/** estimated distinct values in the whole index */
+	public long cardinality;
+	public Double min;
+	public Double max;
+	/** most frequent values of the sample, with their document counts */
+	public Map<String, Long> topValues = new LinkedHashMap<String, Long>();
+}
@@ -0,0 +1,99 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Table kept in memory column by column, one array of values per column
+ */
+public class MemoryTable {
+
+	private String name;
+	private String[] columns;
+	private Object[][] data;
+	private int rows;
+
+	public MemoryTable(String name, String... columns) {
+		this.name = name;
+		this.columns = columns;
+		this.data = new Object[columns.length][16];
+	}
+
+	/**
+	 * Empty table with the columns of another one
+	 */
+	public MemoryTable(MemoryTable table) {
+		this(table.name, table.columns);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String[] getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return position of the column, -1 if there is no such column
+	 */
+	public int getColumnIndex(String column) {
+		for (int i = 0; i < columns.length; i ++) {
+			if (columns[i].equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Values of a column, only the first getRowCount() are set
+	 */
+	public Object[] getColumn(int column) {
+		return data[column];
+	}
+
+	public Object get(int column, int row) {
+		return data[column][row];
+	}
+
+	public void addRow(Object... values) {
+		if (rows == data[0].length) {
+			for (int i = 0; i < data.length; i ++) {
+				data[i] = Arrays.copyOf(data[i], rows * 2);
+			}
+		}
+		for (int i = 0; i < columns.length; i ++) {
+			data[i][rows] = i < values.length ? values[i] : null;
+		}
+		rows ++;
+	}
+
+	/**
+	 * Add a row by column name, the columns not in the map are null
+	 */
+	public void addRow(Map<String, Object> values) {
+		Object[] row = new Object[columns.length];
+		for (int i = 0; i < columns.length; i ++) {
+			row[i] = values.get(columns[i]);
+		}
+		addRow(row);
+	}
+
+	/**
+	 * Copy of this table, rows can be added to the copy without changing this one
+	 */
+	public MemoryTable copy() {
+		MemoryTable copy = new MemoryTable(this);
+		copy.data = new Object[columns.length][];
+		for (int i = 0; i < columns.length; i ++) {
+			copy.data[i] = Arrays.copyOf(data[i], Math.max(rows, 16));
+		}
+		copy.rows = rows;
+		return copy;
+	}
+}
@@ -0,0 +1,412 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.SQLExpr;
+import org.durid.sql.ast.SQLOrderingSpecification;
+import org.durid.sql.ast.SQLSetQuantifier;
+import org.durid.sql.ast.expr.SQLAggregateExpr;
+import org.durid.sql.ast.expr.SQLAllColumnExpr;
+import org.durid.sql.ast.expr.SQLBinaryOpExpr;
+import org.durid.sql.ast.expr.SQLBinaryOperator;
+import org.durid.sql.ast.expr.SQLIdentifierExpr;
+import org.durid.sql.ast.expr.SQLInListExpr;
+import org.durid.sql.ast.expr.SQLIntegerExpr;
+import org.durid.sql.ast.expr.SQLMethodInvokeExpr;
+import org.durid.sql.ast.expr.SQLNotExpr;
+import org.durid.sql.ast.expr.SQLNullExpr;
+import org.durid.sql.ast.expr.SQLNumericLiteralExpr;
+import org.durid.sql.ast.expr.SQLPropertyExpr;
+import org.durid.sql.ast.expr.SQLTextLiteralExpr;
+import org.durid.sql.ast.statement.SQLSelectItem;
+import org.durid.sql.ast.statement.SQLSelectOrderByItem;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Run a single table SELECT against a MemoryTable. Every condition of the
+ * WHERE clause is evaluated over a whole column into a bit set of the rows,
+ * AND, OR and NOT combine the bit sets.
+ */
+public class MemoryTableQuery {
+
+	private MemoryTable table;
+	private String schema;
+
+	/**
+	 * @param schema current schema of the session, returned by DATABASE()
+	 */
+	public MemoryTableQuery(MemoryTable table, String schema) {
+		this.table = table;
+		this.schema = schema;
+	}
+
+	public ResultSet select(MySqlSelectQueryBlock query) {
+		if (query.getGroupBy() != null) {
+			throw new ExecuteException(1235, "42000", "GROUP BY on information_schema is not supported");
+		}
+
+		BitSet matched = filter(query.getWhere());
+		List<Integer> rows = new ArrayList<Integer>(matched.cardinality());
+		for (int row = matched.nextSetBit(0); row >= 0; row = matched.nextSetBit(row + 1)) {
+			rows.add(row);
+		}
+
+		// projection, an item is the index of a column, or a constant
+		List<String> heads = new ArrayList<String>();
+		List<Object> items = new ArrayList<Object>();
+		boolean count = false;
+		for (SQLSelectItem item : query.getSelectList()) {
+			SQLExpr expr = item.getExpr();
+			if (expr instanceof SQLAllColumnExpr || expr instanceof SQLPropertyExpr && "*".equals(((SQLPropertyExpr)expr).getName())) {
+				for (int i = 0; i < table.getColumns().length; i ++) {
+					heads.add(table.getColumns()[i]);
+					items.add(i);
+				}
+				continue;
+			}
+
+			String head = item.getAlias() != null ? unquote(item.getAlias()) : null;
+			if (expr instanceof SQLAggregateExpr && "COUNT".equalsIgnoreCase(((SQLAggregateExpr)expr).getMethodName())) {
+				count = true;
+				SQLExpr argument = ((SQLAggregateExpr)expr).getArguments().get(0);
+				items.add(argument instanceof SQLAllColumnExpr || argument instanceof SQLNumericLiteralExpr
+						? new Count(-1) : new Count(column(argument)));
+				heads.add(head != null ? head : SQLUtils.toMySqlString(expr));
+			} else if (expr instanceof SQLIdentifierExpr || expr instanceof SQLPropertyExpr) {
+				int column = column(expr);
+				items.add(column);
+				heads.add(head != null ? head : unquote(name(expr)));
+			} else {
+				items.add(value(expr));
+				heads.add(head != null ? head : SQLUtils.toMySqlString(expr));
+			}
+		}
+
+		ResultSet rs = new ResultSet();
+		for (String head : heads) {
+			rs.addColumn(new Column(head));
+		}
+
+		if (count) {
+			rs.addRow(toRow(items, rows, -1));
+			return rs;
+		}
+
+		sort(rows, query, items);
+
+		int offset = 0;
+		int limit = Integer.MAX_VALUE;
+		if (query.getLimit() != null) {
+			limit = number(query.getLimit().getRowCount());
+			if (query.getLimit().getOffset() != null) {
+				offset = number(query.getLimit().getOffset());
+			}
+		}
+
+		boolean distinct = query.getDistionOption() == SQLSetQuantifier.DISTINCT;
+		Set<List<Object>> seen = new HashSet<List<Object>>();
+		for (int row : rows) {
+			Row r = toRow(items, null, row);
+			if (distinct && !seen.add(r.data)) {
+				continue;
+			}
+			if (offset > 0) {
+				offset --;
+				continue;
+			}
+			if (rs.rows.size() >= limit) {
+				break;
+			}
+			rs.addRow(r);
+		}
+		return rs;
+	}
+
+	private Row toRow(List<Object> items, List<Integer> rows, int row) {
+		Row r = new Row();
+		for (Object item : items) {
+			Object value;
+			if (item instanceof Count) {
+				int column = ((Count)item).column;
+				long n = 0;
+				for (int i : rows) {
+					if (column < 0 || table.get(column, i) != null) {
+						n ++;
+					}
+				}
+				value = n;
+			} else if (item instanceof Integer) {
+				value = row < 0 ? null : table.get((Integer)item, row);
+			} else {
+				value = item;
+			}
+			r.data.add(value == null ? null : value.toString());
+		}
+		return r;
+	}
+
+	private void sort(List<Integer> rows, MySqlSelectQueryBlock query, List<Object> items) {
+		if (query.getOrderBy() == null || query.getOrderBy().getItems().isEmpty()) {
+			return;
+		}
+
+		final List<SQLSelectOrderByItem> orderBy = query.getOrderBy().getItems();
+		final int[] columns = new int[orderBy.size()];
+		for (int i = 0; i < columns.length; i ++) {
+			SQLExpr expr = orderBy.get(i).getExpr();
+			if (expr instanceof SQLIntegerExpr) {
+				// position in the select list
+				Object item = items.get(number(expr) - 1);
+				if (!(item instanceof Integer)) {
+					throw new ExecuteException(1235, "42000", "can not order by " + SQLUtils.toMySqlString(expr));
+				}
+				columns[i] = (Integer)item;
+			} else {
+				columns[i] = column(expr);
+			}
+		}
+
+		Collections.sort(rows, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				for (int i = 0; i < columns.length; i ++) {
+					Object x = table.get(columns[i], a);
+					Object y = table.get(columns[i], b);
+					int c = x == null ? (y == null ? 0 : -1) : (y == null ? 1 : MemoryTableQuery.compare(x, y));
+					if (c != 0) {
+						return orderBy.get(i).getType() == SQLOrderingSpecification.DESC ? -c : c;
+					}
+				}
+				return 0;
+			}
+		});
+	}
+
+	private BitSet filter(SQLExpr where) {
+		int rows = table.getRowCount();
+		BitSet bits = new BitSet(rows);
+		if (where == null) {
+			bits.set(0, rows);
+			return bits;
+		}
+
+		if (where instanceof SQLNotExpr) {
+			bits = filter(((SQLNotExpr)where).getExpr());
+			bits.flip(0, rows);
+			return bits;
+		}
+
+		if (where instanceof SQLInListExpr) {
+			SQLInListExpr in = (SQLInListExpr)where;
+			Object[] values = table.getColumn(column(in.getExpr()));
+			List<Object> targets = new ArrayList<Object>();
+			for (SQLExpr target : in.getTargetList()) {
+				targets.add(value(target));
+			}
+			for (int row = 0; row < rows; row ++) {
+				if (values[row] == null) {
+					continue;
+				}
+				boolean found = false;
+				for (Object target : targets) {
+					if (target != null && compare(values[row], target) == 0) {
+						found = true;
+						break;
+					}
+				}
+				if (found != in.isNot()) {
+					bits.set(row);
+				}
+			}
+			return bits;
+		}
+
+		if (!(where instanceof SQLBinaryOpExpr)) {
+			throw new ExecuteException(1235, "42000", "unsupported condition on information_schema: " + SQLUtils.toMySqlString(where));
+		}
+
+		SQLBinaryOpExpr expr = (SQLBinaryOpExpr)where;
+		SQLBinaryOperator operator = expr.getOperator();
+		if (operator == SQLBinaryOperator.BooleanAnd) {
+			bits = filter(expr.getLeft());
+			bits.and(filter(expr.getRight()));
+			return bits;
+		} else if (operator == SQLBinaryOperator.BooleanOr) {
+			bits = filter(expr.getLeft());
+			bits.or(filter(expr.getRight()));
+			return bits;
+		}
+
+		SQLExpr left = expr.getLeft();
+		SQLExpr right = expr.getRight();
+		if (!isColumn(left) && isColumn(right)) {
+			left = expr.getRight();
+			right = expr.getLeft();
+			operator = mirror(operator);
+		}
+		Object[] values = table.getColumn(column(left));
+		Object value = value(right);
+
+		if (operator == SQLBinaryOperator.Is || operator == SQLBinaryOperator.IsNot) {
+			for (int row = 0; row < rows; row ++) {
+				if ((values[row] == null) == (operator == SQLBinaryOperator.Is)) {
+					bits.set(row);
+				}
+			}
+			return bits;
+		}
+		if (value == null) {
+			return bits;
+		}
+
+		Pattern like = null;
+		if (operator == SQLBinaryOperator.Like || operator == SQLBinaryOperator.NotLike) {
+			like = like(value.toString());
+		}
+		for (int row = 0; row < rows; row ++) {
+			if (values[row] != null && test(operator, values[row], value, like)) {
+				bits.set(row);
+			}
+		}
+		return bits;
+	}
+
+	private boolean test(SQLBinaryOperator operator, Object cell, Object value, Pattern like) {
+		switch (operator) {
+		case Equality:
+			return compare(cell, value) == 0;
+		case NotEqual:
+		case LessThanOrGreater:
+			return compare(cell, value) != 0;
+		case GreaterThan:
+			return compare(cell, value) > 0;
+		case GreaterThanOrEqual:
+			return compare(cell, value) >= 0;
+		case LessThan:
+			return compare(cell, value) < 0;
+		case LessThanOrEqual:
+			return compare(cell, value) <= 0;
+		case Like:
+			return like.matcher(cell.toString()).matches();
+		case NotLike:
+			return !like.matcher(cell.toString()).matches();
+		default:
+			throw new ExecuteException(1235, "42000", "unsupported operator on information_schema: " + operator.name);
+		}
+	}
+
+	private SQLBinaryOperator mirror(SQLBinaryOperator operator) {
+		switch (operator) {
+		case GreaterThan:
+			return SQLBinaryOperator.LessThan;
+		case GreaterThanOrEqual:
+			return SQLBinaryOperator.LessThanOrEqual;
+		case LessThan:
+			return SQLBinaryOperator.GreaterThan;
+		case LessThanOrEqual:
+			return SQLBinaryOperator.GreaterThanOrEqual;
+		default:
+			return operator;
+		}
+	}
+
+	/**
+	 * Numbers are compared by value, strings as utf8_general_ci does, ignoring case
+	 */
+	static int compare(Object a, Object b) {
+		if (a instanceof Number || b instanceof Number) {
+			try {
+				return Double.compare(Double.parseDouble(a.toString()), Double.parseDouble(b.toString()));
+			} catch (NumberFormatException e) {
+				// compare as strings
+			}
+		}
+		return a.toString().compareToIgnoreCase(b.toString());
+	}
+
+	/**
+	 * LIKE pattern as a regular expression, % and _ are the wildcards and \ escapes them
+	 */
+	public static Pattern like(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < pattern.length(); i ++) {
+			char c = pattern.charAt(i);
+			if (c == '\\' && i + 1 < pattern.length()) {
+				regex.append(Pattern.quote(String.valueOf(pattern.charAt(++ i))));
+			} else if (c == '%') {
+				regex.append(".*");
+			} else if (c == '_') {
+				regex.append('.');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	}
+
+	private boolean isColumn(SQLExpr expr) {
+		return expr instanceof SQLIdentifierExpr || expr instanceof SQLPropertyExpr;
+	}
+
+	private int column(SQLExpr expr) {
+		String name = isColumn(expr) ? unquote(name(expr)) : SQLUtils.toMySqlString(expr);
+		int column = table.getColumnIndex(name);
+		if (column < 0) {
+			throw new ExecuteException(1054, "42S22", String.format("Unknown column '%s'", name));
+		}
+		return column;
+	}
+
+	private String name(SQLExpr expr) {
+		return expr instanceof SQLPropertyExpr ? ((SQLPropertyExpr)expr).getName() : ((SQLIdentifierExpr)expr).getName();
+	}
+
+	private Object value(SQLExpr expr) {
+		if (expr instanceof SQLTextLiteralExpr) {
+			return ((SQLTextLiteralExpr)expr).getText();
+		} else if (expr instanceof SQLNumericLiteralExpr) {
+			return ((SQLNumericLiteralExpr)expr).getNumber();
+		} else if (expr instanceof SQLNullExpr) {
+			return null;
+		} else if (expr instanceof SQLMethodInvokeExpr) {
+			String method = ((SQLMethodInvokeExpr)expr).getMethodName();
+			if ("DATABASE".equalsIgnoreCase(method) || "SCHEMA".equalsIgnoreCase(method)) {
+				return schema;
+			}
+		}
+		throw new ExecuteException(1235, "42000", "unsupported expression on information_schema: " + SQLUtils.toMySqlString(expr));
+	}
+
+	private int number(SQLExpr expr) {
+		if (!(expr instanceof SQLNumericLiteralExpr)) {
+			throw new ExecuteException(1235, "42000", "not a number: " + SQLUtils.toMySqlString(expr));
+		}
+		return ((SQLNumericLiteralExpr)expr).getNumber().intValue();
+	}
+
+	static String unquote(String name) {
+		return StringUtils.strip(name, "`'\"");
+	}
+
+	private static class Count {
+		private int column;
+
+		private Count(int column) {
+			this.column = column;
+		}
+	}
+}
@@ -1,109 +1,259 @@
 package cn.batchfile.elasticsql.schema;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.elasticsearch.action.admin.indices.stats.IndexStats;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.hppc.cursors.ObjectCursor;
+import org.elasticsearch.index.mapper.MapperService;
+import org.nlpcn.es4sql.domain.Partition;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Keep the catalog of indices, aliases and fields in memory, it is rebuilt
+ * from the cluster state every catalog.refresh_interval seconds, so that
+ * information_schema and SHOW statements never go to elasticsearch. The
+ * routing column of a table is the _routing path of its mapping, or the
+ * column given for it in routing.columns. The time partitioned tables of
+ * partition.tables, given as table:column:daily|weekly|monthly, are listed
+ * besides the indices of their periods.
+ */
+public class SchemaManager implements Runnable {
+
+	private static final Logger logger = Logger.getLogger("SchemaManager");
+	private static SchemaManager instance;
+	private String schema;
+	private long interval;
+	private Client client;
+	/** routing columns of routing.columns, for the indices whose mapping has no _routing path */
+	private Map<String, String> routings = new HashMap<String, String>();
+	/** time partitioned tables of partition.tables */
+	private Map<String, Partition> partitions = new LinkedHashMap<String, Partition>();
+	private volatile Catalog catalog;
+
+	public static synchronized SchemaManager getInstance() {
+		if (instance == null) {
+			instance = new SchemaManager(JMP.config);
+		}
+		return instance;
+	}
+
+	public SchemaManager(Properties config) {
+		this.schema = config.getProperty("catalog.schema", "elasticsearch").trim();
+		this.interval = Long.parseLong(config.getProperty("catalog.refresh_interval", "30").trim()) * 1000;
+		for (String routing : config.getProperty("routing.columns", "").split(",")) {
+			if (routing.contains(":")) {
+				routings.put(StringUtils.substringBefore(routing, ":").trim(), StringUtils.substringAfter(routing, ":").trim());
+			}
+		}
+		for (String partition : config.getProperty("partition.tables", "").split(",")) {
+			String[] parts = partition.trim().split(":");
+			if (parts.length != 3) {
+				continue;
+			}
+			try {
+				Partition.Period period = Partition.Period.valueOf(parts[2].trim().toUpperCase());
+				partitions.put(parts[0].trim(), new Partition(parts[0].trim(), parts[1].trim(), period));
+			} catch (IllegalArgumentException e) {
+				logger.warn(String.format("unknown period of partitioned table %s: %s", parts[0], parts[2]));
+			}
+		}
+		this.catalog = new Catalog(schema, partitioned(new ArrayList<Table>()));
+	}
+
+	public Catalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Load the catalog and keep refreshing it in the background
+	 */
+	public void start(Client client) {
+		this.client = client;
+		try {
+			refresh();
+		} catch (Exception e) {
+			logger.warn("can not load catalog: " + e.getMessage());
+		}
+
+		Thread thread = new Thread(this, "schema-manager");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void run() {
+		while (true) {
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			try {
+				refresh();
+			} catch (Exception e) {
+				logger.warn("can not refresh catalog: " + e.getMessage());
+			}
+		}
+	}
+
+	public void refresh() throws IOException {
+		Map<String, IndexStats> stats = client.admin().indices().prepareStats().clear().setDocs(true).get().getIndices();
+		Map<String, Table> indices = new TreeMap<String, Table>();
+		Map<String, Table> aliases = new TreeMap<String, Table>();
+		for (ObjectCursor<IndexMetaData> cursor : client.admin().cluster().prepareState().clear().setMetaData(true)
+				.get().getState().getMetaData().getIndices().values()) {
+			IndexMetaData metaData = cursor.value;
+			Table table = new Table();
+			table.name = metaData.getIndex();
+			IndexStats indexStats = stats.get(table.name);
+			table.rows = indexStats == null ? 0 : indexStats.getPrimaries().getDocs().getCount();
+
+			Map<String, Column> columns = new LinkedHashMap<String, Column>();
+			for (ObjectCursor<MappingMetaData> mapping : metaData.getMappings().values()) {
+				if (MapperService.DEFAULT_MAPPING.equals(mapping.value.type())) {
+					continue;
+				}
+				table.mappings.add(mapping.value.type());
+				addColumns(columns, null, mapping.value.sourceAsMap());
+				if (mapping.value.routing().hasPath()) {
+					table.routing = mapping.value.routing().path();
+				}
+			}
+			if (routings.containsKey(table.name)) {
+				table.routing = routings.get(table.name);
+			}
+			table.columns.addAll(columns.values());
+			indices.put(table.name, table);
+
+			// an alias is a view over the union of its indices, routed if they all are by the same column
+			for (ObjectCursor<String> name : metaData.getAliases().keys()) {
+				Table alias = aliases.get(name.value);
+				if (alias == null) {
+					alias = new Table();
+					alias.name = name.value;
+					alias.type = "VIEW";
+					alias.routing = table.routing;
+					aliases.put(alias.name, alias);
+				} else if (alias.routing != null && !alias.routing.equals(table.routing)) {
+					alias.routing = null;
+				}
+				alias.rows += table.rows;
+				for (Column column : table.columns) {
+					if (!contains(alias.columns, column.name)) {
+						alias.columns.add(column);
+					}
+				}
+			}
+		}
+
+		for (Table alias : aliases.values()) {
+			if (routings.containsKey(alias.name)) {
+				alias.routing = routings.get(alias.name);
+			}
+		}
+
+		List<Table> tables = new ArrayList<Table>(indices.values());
+		tables.addAll(aliases.values());
+		for (Table table : partitioned(indices.values())) {
+			if (!indices.containsKey(table.name) && !aliases.containsKey(table.name)) {
+				tables.add(table);
+			}
+		}
+		catalog = new Catalog(schema, tables);
+		logger.debug(String.format("catalog refreshed, %d tables", tables.size()));
+	}
+
+	/**
+	 * A time partitioned table is listed over the union of the indices of its
+	 * periods, it is listed with no index too so that the first row can be written
+	 */
+	private List<Table> partitioned(Collection<Table> indices) {
+		List<Table> tables = new ArrayList<Table>();
+		for (Partition partition : partitions.values()) {
+			Table table = new Table();
+			table.name = partition.getTable();
+			table.partition = partition;
+			boolean first = true;
+			for (Table index : indices) {
+				if (partition.start(index.name) == null) {
+					continue;
+				}
+				table.rows += index.rows;
+				if (first) {
+					table.routing = index.routing;
+					first = false;
+				} else if (table.routing != null && !table.routing.equals(index.routing)) {
+					table.routing = null;
+				}
+				for (String mapping : index.mappings) {
+					if (!table.mappings.contains(mapping)) {
+						table.mappings.add(mapping);
+					}
+				}
+				for (Column column : index.columns) {
+					if (!contains(table.columns, column.name)) {
+						table.columns.add(column);
+					}
+				}
+			}
+			if (routings.containsKey(table.name)) {
+				table.routing = routings.get(table.name);
+			}
+			tables.add(table);
+		}
+		return tables;
+	}
+
+	/**
+	 * Fields of objects are flattened to dotted names, the object itself is kept as a column too
+	 */
+	@SuppressWarnings("unchecked")
+	private void addColumns(Map<String, Column> columns, String prefix, Map<String, Object> mapping) {
+		Object properties = mapping.get("properties");
+		if (!(properties instanceof Map)) {
+			return;
+		}
+
+		for (Map.Entry<String, Object> entry : ((Map<String, Object>)properties).entrySet()) {
+			if (!(entry.getValue() instanceof Map)) {
+				continue;
+			}
+			Map<String, Object> field = (Map<String, Object>)entry.getValue();
+			String name = prefix == null ? entry.getKey() : prefix + "." + entry.getKey();
+			if (!columns.containsKey(name)) {
+				Column column = new Column();
+				column.name = name;
+				column.type = Column.Type.fromMapping(field.containsKey("properties") && !field.containsKey("type")
+						? "object" : (String)field.get("type"));
+				if ("not_analyzed".equals(field.get("index")) || "no".equals(field.get("index"))) {
+					column.index = Column.Index.valueOf((String)field.get("index"));
+				}
+				columns.put(name, column);
+			}
+			addColumns(columns, name, field);
+		}
+	}
 
-import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
-import com.github.mpjct.jmpjct.mysql.proto.Row;
-
-public class SchemaManager {
-//	private static final Logger logger = Logger.getLogger("SchemaManager");
-//	private List<String> hosts = new ArrayList<String>();
-//	private DataSource ds;
-//	
-//	public void connect(String url, String username, String password) {
-//		BasicDataSource bds = new BasicDataSource();
-//		bds.setDriverClassName("com.mysql.jdbc.Driver");
-//		bds.setUrl(url);
-//		bds.setUsername(username);
-//		bds.setPassword(password);
-//		bds.setMaxActive(200);
-//		bds.setValidationQuery("SELECT 1");
-//		bds.setTestWhileIdle(true);
-//		bds.setTimeBetweenEvictionRunsMillis(3600000);
-//		bds.setMinEvictableIdleTimeMillis(1800000);
-//		bds.setTestOnBorrow(true);
-//		ds = bds;
-//	}
-//	
-//	public void setHosts(List<String> hosts) {
-//		this.hosts = hosts;
-//	}
-//
-//	public List<Schema> get_databases() {
-//		return null;
-//	}
-//	
-//	public List<Table> get_tables(String schema) {
-//		return null;
-//	}
-//	
-//	public List<Column> get_columns(String schema, String table) {
-//		return null;
-//	}
-//	
-//	public void create_database(Schema schema) {
-//	}
-//	
-//	public void drop_database(String schema) {
-//	}
-//	
-//	public void create_table(String schema, Table table, List<Column> columns) {
-//	}
-//	
-//	public void drop_table(String schema, String table) {
-//	}
-//	
-//	public void add_column(String schema, String table, Column column) {
-//	}
-//	
-//	public void drop_column(String schema, String table, String column) {
-//	}
-//	
-//	public ResultSet query(String sql) throws SQLException {
-//		Connection conn = ds.getConnection();
-//		PreparedStatement stat = conn.prepareStatement(sql);
-//		java.sql.ResultSet rs = stat.executeQuery();
-//		ResultSetMetaData meta = rs.getMetaData();
-//		
-//		ResultSet result = new ResultSet();
-//		for (int i = 0; i < meta.getColumnCount(); i ++) {
-//			String label = meta.getColumnLabel(i + 1);
-//			result.addColumn(new com.github.mpjct.jmpjct.mysql.proto.Column(label));
-//		}
-//		
-//		while (rs.next()) {
-//			Row row = new Row();
-//			for (int i = 0; i < meta.getColumnCount(); i ++) {
-//				String value = rs.getString(i + 1);
-//				if (value == null) {
-//					row.addData(StringUtils.EMPTY);
-//				} else {
-//					row.addData(value);
-//				}
-//			}
-//			result.addRow(row);
-//		}
-//		
-//		rs.close();
-//		conn.close();
-//		return result;
-//		/*
-//        ResultSet rs = new ResultSet();
-//        
-//        Column col = new Column("Fake Data");
-//        rs.addColumn(col);
-//        
-//        rs.addRow(new Row("1")); 
-//        return rs;*/
-//	}
+	private boolean contains(List<Column> columns, String name) {
+		for (Column column : columns) {
+			if (column.name.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
@@ -0,0 +1,123 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Statistics of the tables collected by ANALYZE TABLE, kept until the table is analyzed again
+ */
+public class StatsCatalog {
+
+	private static final Logger logger = Logger.getLogger("StatsCatalog");
+	private static final int TOP_VALUES = 10;
+	private static StatsCatalog instance;
+
+	private int sampleSize;
+	private Map<String, TableStats> tables = new ConcurrentHashMap<String, TableStats>();
+
+	public static synchronized StatsCatalog getInstance() {
+		if (instance == null) {
+			instance = new StatsCatalog(JMP.config);
+		}
+		return instance;
+	}
+
+	public StatsCatalog(Properties config) {
+		this.sampleSize = Integer.parseInt(config.getProperty("analyze.sample_size", "100000").trim());
+	}
+
+	/**
+	 * @return statistics of the table a query reads, null if it reads several tables or the table was never analyzed
+	 */
+	public TableStats get(String[] indices) {
+		if (indices == null || indices.length != 1) {
+			return null;
+		}
+		return tables.get(indices[0]);
+	}
+
+	/**
+	 * Collect the statistics of a table. Every shard reads at most analyze.sample_size
+	 * documents, the distinct values of a field which is nearly unique in the
+	 * sample are scaled up to the whole index. Analyzed strings get no statistics.
+	 */
+	public TableStats analyze(Client client, Table table) {
+		TableStats stats = new TableStats();
+		stats.name = table.name;
+		stats.analyzed = System.currentTimeMillis();
+		stats.docCount = client.prepareCount(table.name).get().getCount();
+
+		SearchRequestBuilder request = client.prepareSearch(table.name).setSize(0).setTerminateAfter(sampleSize);
+		for (Column column : table.columns) {
+			if (!column.isExact()) {
+				// an analyzed string would load the field data of the whole index, and its terms are tokens
+				continue;
+			}
+			request.addAggregation(AggregationBuilders.cardinality("cardinality:" + column.name).field(column.name).precisionThreshold(40000));
+			request.addAggregation(AggregationBuilders.terms("terms:" + column.name).field(column.name).size(TOP_VALUES));
+			if (isNumeric(column.type)) {
+				request.addAggregation(AggregationBuilders.stats("stats:" + column.name).field(column.name));
+			} else {
+				request.addAggregation(AggregationBuilders.count("count:" + column.name).field(column.name));
+			}
+		}
+		logger.debug(request);
+
+		SearchResponse response = request.get();
+		stats.sampledDocs = response.getHits().getTotalHits();
+		Aggregations aggregations = response.getAggregations();
+		for (Column column : table.columns) {
+			if (aggregations == null || aggregations.get("cardinality:" + column.name) == null) {
+				continue;
+			}
+
+			ColumnStats columnStats = new ColumnStats();
+			columnStats.name = column.name;
+			columnStats.type = column.type;
+			if (isNumeric(column.type)) {
+				Stats values = aggregations.get("stats:" + column.name);
+				columnStats.count = values.getCount();
+				if (values.getCount() > 0) {
+					columnStats.min = values.getMin();
+					columnStats.max = values.getMax();
+				}
+			} else {
+				columnStats.count = ((ValueCount) aggregations.get("count:" + column.name)).getValue();
+			}
+
+			long cardinality = ((Cardinality) aggregations.get("cardinality:" + column.name)).getValue();
+			if (stats.sampledDocs < stats.docCount && cardinality * 2 > stats.sampledDocs) {
+				cardinality = Math.min(stats.docCount, cardinality * stats.docCount / Math.max(1, stats.sampledDocs));
+			}
+			columnStats.cardinality = cardinality;
+
+			for (Terms.Bucket bucket : ((Terms) aggregations.get("terms:" + column.name)).getBuckets()) {
+				columnStats.topValues.put(bucket.getKey(), bucket.getDocCount());
+			}
+			stats.columns.put(column.name, columnStats);
+		}
+
+		tables.put(table.name, stats);
+		logger.info(String.format("table %s analyzed, %d documents, %d sampled, %d fields",
+				table.name, stats.docCount, stats.sampledDocs, stats.columns.size()));
+		return stats;
+	}
+
+	private boolean isNumeric(Column.Type type) {
+		return type != Column.Type.STRING && type != Column.Type.BOOLEAN;
+	}
+}
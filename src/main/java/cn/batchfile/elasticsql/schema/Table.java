@@ -1,6 +1,32 @@
 package cn.batchfile.elasticsql.schema;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nlpcn.es4sql.domain.Partition;
+
 public class Table {
 
 	public String name;
+	public String type = "BASE TABLE";
+	public long rows;
+	/** document types of the index */
+	public List<String> mappings = new ArrayList<String>();
+	public List<Column> columns = new ArrayList<Column>();
+	/** column the documents are routed by, null if they are routed by _id */
+	public String routing;
+	/** how the rows are spread over indices by time, null if the table is one index or alias */
+	public Partition partition;
+
+	/**
+	 * @return null if the table has no such column
+	 */
+	public Column getColumn(String name) {
+		for (Column column : columns) {
+			if (column.name.equals(name)) {
+				return column;
+			}
+		}
+		return null;
+	}
 }
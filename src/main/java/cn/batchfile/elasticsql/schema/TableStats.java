@@ -0,0 +1,182 @@
+package cn.batchfile.elasticsql.schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.Joda;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.query.maker.Statistics;
+
+/**
+ * Statistics of an index collected by ANALYZE TABLE. The selectivity of a
+ * where clause is estimated from the value distribution of its fields, the
+ * fields which were not analyzed get the usual guesses (1/10 for equality,
+ * 1/3 for a range).
+ */
+public class TableStats implements Statistics {
+
+	private static final double DEFAULT_EQUALITY = 0.1;
+	private static final double DEFAULT_RANGE = 1.0 / 3;
+	private static final double DEFAULT_LIKE = 0.1;
+	private static final DateMathParser DATE_PARSER = new DateMathParser(
+			Joda.forPattern("dateOptionalTime||yyyy-MM-dd HH:mm:ss"), TimeUnit.MILLISECONDS);
+
+	public String name;
+	public long docCount;
+	/** documents read to collect the value distributions */
+	public long sampledDocs;
+	public long analyzed;
+	public Map<String, ColumnStats> columns = new LinkedHashMap<String, ColumnStats>();
+
+	public long getDocCount() {
+		return docCount;
+	}
+
+	public long getCardinality(String field) {
+		ColumnStats column = columns.get(field);
+		return column == null ? -1 : column.cardinality;
+	}
+
+	public double getSelectivity(Where where) {
+		if (where == null) {
+			return 1;
+		}
+		if (where instanceof Condition) {
+			return selectivity((Condition) where);
+		}
+
+		double selectivity = 1;
+		boolean first = true;
+		for (Where sub : where.getWheres()) {
+			double s = getSelectivity(sub);
+			if (first) {
+				selectivity = s;
+				first = false;
+			} else if (sub.getConn() == Where.CONN.AND) {
+				selectivity *= s;
+			} else {
+				selectivity = selectivity + s - selectivity * s;
+			}
+		}
+		return selectivity;
+	}
+
+	private double selectivity(Condition condition) {
+		ColumnStats column = columns.get(condition.getName());
+		Object value = condition.getValue();
+		switch (condition.getOpear()) {
+		case EQ:
+			return equality(column, value);
+		case N:
+			return 1 - equality(column, value);
+		case IN:
+			return in(column, value);
+		case NIN:
+			return 1 - in(column, value);
+		case IS:
+			return 1 - present(column);
+		case ISN:
+			return present(column);
+		case GT:
+		case GTE:
+			return range(column, value, null);
+		case LT:
+		case LTE:
+			return range(column, null, value);
+		case BETWEEN:
+			return range(column, ((Object[]) value)[0], ((Object[]) value)[1]);
+		case NBETWEEN:
+			return 1 - range(column, ((Object[]) value)[0], ((Object[]) value)[1]);
+		case LIKE:
+			return DEFAULT_LIKE;
+		case NLIKE:
+			return 1 - DEFAULT_LIKE;
+		default:
+			return DEFAULT_RANGE;
+		}
+	}
+
+	/**
+	 * Fraction of the documents with a value for the field
+	 */
+	private double present(ColumnStats column) {
+		if (column == null || sampledDocs <= 0) {
+			return 1 - DEFAULT_EQUALITY;
+		}
+		return Math.min(1, (double) column.count / sampledDocs);
+	}
+
+	/**
+	 * A frequent value has its own count, the other values share what is left evenly
+	 */
+	private double equality(ColumnStats column, Object value) {
+		if (column == null || column.cardinality <= 0 || sampledDocs <= 0) {
+			return DEFAULT_EQUALITY;
+		}
+
+		String key = StringUtils.strip(String.valueOf(value), "'\"");
+		Long count = column.topValues.get(key);
+		if (count != null) {
+			return (double) count / sampledDocs;
+		}
+
+		long frequent = 0;
+		for (long n : column.topValues.values()) {
+			frequent += n;
+		}
+		long others = Math.max(1, column.cardinality - column.topValues.size());
+		return Math.max(0, (double) (column.count - frequent) / sampledDocs / others);
+	}
+
+	private double in(ColumnStats column, Object value) {
+		if (!(value instanceof Object[])) {
+			return equality(column, value);
+		}
+		double selectivity = 0;
+		for (Object v : (Object[]) value) {
+			selectivity += equality(column, v);
+		}
+		return Math.min(1, selectivity);
+	}
+
+	/**
+	 * Values are assumed to be spread evenly between min and max
+	 */
+	private double range(ColumnStats column, Object from, Object to) {
+		if (column == null || column.min == null || column.max == null) {
+			return DEFAULT_RANGE;
+		}
+
+		double lower = from == null ? column.min : toNumber(from, column.min);
+		double upper = to == null ? column.max : toNumber(to, column.max);
+		if (column.max <= column.min) {
+			return lower <= column.min && upper >= column.max ? present(column) : 0;
+		}
+		lower = Math.max(lower, column.min);
+		upper = Math.min(upper, column.max);
+		if (upper < lower) {
+			return 0;
+		}
+		return present(column) * (upper - lower) / (column.max - column.min);
+	}
+
+	private double toNumber(Object value, double fallback) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		String text = StringUtils.strip(String.valueOf(value), "'\"");
+		try {
+			return Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			try {
+				return DATE_PARSER.parse(text, System.currentTimeMillis());
+			} catch (Exception ex) {
+				return fallback;
+			}
+		}
+	}
+}
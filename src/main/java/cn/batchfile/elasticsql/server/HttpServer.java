@@ -36,6 +36,9 @@ public class HttpServer {
 		Servlet explainServlet = new ExplainServlet();
 		context.addServlet(new ServletHolder(explainServlet), "/explain");
 		
+		Servlet metricsServlet = new MetricsServlet();
+		context.addServlet(new ServletHolder(metricsServlet), "/metrics");
+		
 		server.setHandler(context);
 		server.start();
 
@@ -0,0 +1,38 @@
+package cn.batchfile.elasticsql.server;
+
+import java.io.IOException;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import cn.batchfile.elasticsql.metrics.Metrics;
+
+/**
+ * Latencies and counters of the proxy for prometheus to scrape
+ */
+public class MetricsServlet implements Servlet {
+
+	public void init(ServletConfig config) throws ServletException {
+	}
+
+	public ServletConfig getServletConfig() {
+		return null;
+	}
+
+	public void service(ServletRequest request, ServletResponse response)
+			throws ServletException, IOException {
+		response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+		response.getWriter().print(Metrics.getInstance().toPrometheus());
+	}
+
+	public String getServletInfo() {
+		return null;
+	}
+
+	public void destroy() {
+	}
+
+}
@@ -0,0 +1,215 @@
+package cn.batchfile.elasticsql.session;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+import cn.batchfile.elasticsql.elasticsearch.Result;
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.schema.MemoryTable;
+
+import com.github.mpjct.jmpjct.JMP;
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * The connections of the proxy by connection id, shared by all connections
+ * so KILL and COM_PROCESS_KILL can reach a connection from another one, and
+ * SHOW PROCESSLIST and information_schema.PROCESSLIST can tell what each one
+ * is doing. The list is read without a lock, a connection may come or go
+ * while it is read. A user sees and kills its own connections only, the
+ * users of process.admin_users see and kill every connection.
+ */
+public class ProcessList {
+
+	private static final Logger logger = Logger.getLogger("ProcessList");
+	private static final Pattern KILL = Pattern.compile(
+			"\\s*KILL\\s+(?:(QUERY|CONNECTION)\\s+)?(\\d+)\\s*;?\\s*", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SHOW_PROCESSLIST = Pattern.compile(
+			"\\s*SHOW\\s+(FULL\\s+)?PROCESSLIST\\s*;?\\s*", Pattern.CASE_INSENSITIVE);
+	private static final String[] COLUMNS = {
+		"ID", "USER", "HOST", "DB", "COMMAND", "TIME", "STATE", "INFO", "TIME_MS", "ROWS_SENT", "BYTES_SENT"};
+	private static final String[] HEADS = {
+		"Id", "User", "Host", "db", "Command", "Time", "State", "Info", "Rows_sent", "Bytes_sent"};
+	// SHOW PROCESSLIST without FULL cuts the statements
+	private static final int INFO_LENGTH = 100;
+	private static ProcessList instance;
+
+	/**
+	 * A connection as KILL and SHOW PROCESSLIST see it
+	 */
+	public interface Connection {
+
+		Session getSession();
+
+		/**
+		 * @return state of the statement running, null if it reports none
+		 */
+		String getState();
+
+		/**
+		 * Abort the statement running, the connection stays open
+		 */
+		void killQuery();
+
+		/**
+		 * Abort the statement running and close the connection
+		 */
+		void killConnection();
+
+		/**
+		 * Close the connection once its statement is done, without answering it,
+		 * as KILL CONNECTION of its own id does
+		 */
+		void quit();
+	}
+
+	private final ConcurrentMap<Long, Connection> connections = new ConcurrentHashMap<Long, Connection>();
+	/** users of process.admin_users */
+	private final Set<String> admins = new HashSet<String>();
+
+	public static synchronized ProcessList getInstance() {
+		if (instance == null) {
+			instance = new ProcessList(JMP.config == null ? new Properties() : JMP.config);
+		}
+		return instance;
+	}
+
+	public ProcessList(Properties config) {
+		for (String user : config.getProperty("process.admin_users", "").split(",")) {
+			if (StringUtils.isNotBlank(user)) {
+				admins.add(user.trim());
+			}
+		}
+	}
+
+	public void add(Connection connection) {
+		connections.put((long)connection.getSession().getConnectionId(), connection);
+	}
+
+	public void remove(long connectionId) {
+		connections.remove(connectionId);
+	}
+
+	/**
+	 * @return number of connections open
+	 */
+	public int size() {
+		return connections.size();
+	}
+
+	/**
+	 * KILL [QUERY | CONNECTION] id and SHOW [FULL] PROCESSLIST
+	 *
+	 * @param caller session of the connection running the statement
+	 * @return null if the statement is neither
+	 */
+	public Result execute(Session caller, String sql) {
+		Matcher matcher;
+		Result result = new Result();
+		if ((matcher = KILL.matcher(sql)).matches()) {
+			kill(caller, Long.parseLong(matcher.group(2)), !"QUERY".equalsIgnoreCase(matcher.group(1)));
+		} else if ((matcher = SHOW_PROCESSLIST.matcher(sql)).matches()) {
+			result.resultSet = show(caller, matcher.group(1) != null);
+		} else {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Rows of information_schema.PROCESSLIST, the columns of mysql followed by
+	 * the time in milliseconds and the rows and bytes the command has sent
+	 *
+	 * @param caller session of the connection reading the list
+	 */
+	public MemoryTable table(Session caller) {
+		MemoryTable table = new MemoryTable("PROCESSLIST", COLUMNS);
+		long now = System.currentTimeMillis();
+		Map<String, Object> row = new HashMap<String, Object>();
+		for (Connection connection : new TreeMap<Long, Connection>(connections).values()) {
+			Session session = connection.getSession();
+			if (!isVisible(caller, session)) {
+				continue;
+			}
+			long millis = Math.max(0, now - session.getSince());
+			row.put("ID", (long)session.getConnectionId());
+			row.put("USER", session.getUser());
+			row.put("HOST", StringUtils.defaultString(session.getHost()));
+			row.put("DB", StringUtils.isEmpty(session.getSchema()) ? null : session.getSchema());
+			row.put("COMMAND", session.getCommand());
+			row.put("TIME", millis / 1000);
+			row.put("STATE", connection.getState());
+			row.put("INFO", session.getInfo());
+			row.put("TIME_MS", millis);
+			row.put("ROWS_SENT", session.getRowsSent());
+			row.put("BYTES_SENT", session.getBytesSent());
+			table.addRow(row);
+		}
+		return table;
+	}
+
+	private ResultSet show(Session caller, boolean full) {
+		ResultSet rs = new ResultSet();
+		for (String head : HEADS) {
+			rs.addColumn(new Column(head));
+		}
+
+		MemoryTable table = table(caller);
+		for (int i = 0; i < table.getRowCount(); i ++) {
+			Row row = new Row();
+			for (String head : HEADS) {
+				Object value = table.get(table.getColumnIndex(head), i);
+				if (!full && "Info".equals(head) && value != null) {
+					value = StringUtils.left((String)value, INFO_LENGTH);
+				}
+				row.data.add(value == null ? null : value.toString());
+			}
+			rs.addRow(row);
+		}
+		return rs;
+	}
+
+	/**
+	 * @param caller session of the connection asking for the kill
+	 * @param connection true to close the connection, false to abort its statement only
+	 */
+	public void kill(Session caller, long connectionId, boolean connection) {
+		Connection target = connections.get(connectionId);
+		if (target == null) {
+			throw new ExecuteException(1094, "HY000", String.format("Unknown thread id: %d", connectionId));
+		}
+		if (!isVisible(caller, target.getSession())) {
+			throw new ExecuteException(1095, "HY000", String.format("You are not owner of thread %d", connectionId));
+		}
+		logger.info(String.format("%s kill %s %d", caller.getUser(), connection ? "connection" : "query", connectionId));
+		if (target.getSession() == caller) {
+			// the statement running is this KILL, there is nothing else to abort
+			if (connection) {
+				target.quit();
+			}
+		} else if (connection) {
+			target.killConnection();
+		} else {
+			target.killQuery();
+		}
+	}
+
+	/**
+	 * @return true if the caller may see and kill the connection of a session
+	 */
+	private boolean isVisible(Session caller, Session session) {
+		return admins.contains(caller.getUser()) || StringUtils.equals(caller.getUser(), session.getUser());
+	}
+}
@@ -0,0 +1,125 @@
+package cn.batchfile.elasticsql.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.schema.Catalog;
+import cn.batchfile.elasticsql.schema.MemoryTable;
+import cn.batchfile.elasticsql.schema.Table;
+
+public class ProcessListTest {
+	private ProcessList processes;
+	private FakeConnection alice;
+	private FakeConnection bob;
+	private FakeConnection root;
+
+	@Before
+	public void setUp() {
+		Properties config = new Properties();
+		config.setProperty("process.admin_users", "root, admin");
+		processes = new ProcessList(config);
+		processes.add(alice = new FakeConnection(1, "alice"));
+		processes.add(bob = new FakeConnection(2, "bob"));
+		processes.add(root = new FakeConnection(3, "root"));
+	}
+
+	@Test
+	public void testKillOwnUser() {
+		FakeConnection other = new FakeConnection(4, "alice");
+		processes.add(other);
+		processes.execute(alice.session, "KILL QUERY 4");
+		assertEquals("query", other.killed);
+		processes.execute(alice.session, "kill 4");
+		assertEquals("connection", other.killed);
+	}
+
+	@Test
+	public void testKillOtherUser() {
+		try {
+			processes.execute(alice.session, "KILL 2");
+			fail();
+		} catch (ExecuteException e) {
+			assertEquals(1095, e.getCode());
+		}
+		assertNull(bob.killed);
+		processes.kill(root.session, 2, false);
+		assertEquals("query", bob.killed);
+	}
+
+	@Test
+	public void testKillItself() {
+		processes.execute(alice.session, "KILL QUERY 1");
+		assertNull(alice.killed);
+		processes.execute(alice.session, "KILL CONNECTION 1");
+		assertEquals("quit", alice.killed);
+	}
+
+	@Test
+	public void testVisible() {
+		MemoryTable table = processes.table(alice.session);
+		assertEquals(1, table.getRowCount());
+		assertEquals("alice", table.get(table.getColumnIndex("USER"), 0));
+		assertEquals(3, processes.table(root.session).getRowCount());
+		assertEquals(1, processes.execute(bob.session, "SHOW FULL PROCESSLIST").resultSet.rows.size());
+	}
+
+	@Test
+	public void testColumnsDeclared() {
+		// information_schema.COLUMNS lists the columns the table has
+		Catalog catalog = new Catalog("elasticsearch", new ArrayList<Table>());
+		List<String> declared = new ArrayList<String>();
+		MemoryTable columns = catalog.getTable("COLUMNS");
+		for (int i = 0; i < columns.getRowCount(); i ++) {
+			if ("PROCESSLIST".equals(columns.get(columns.getColumnIndex("TABLE_NAME"), i))) {
+				declared.add((String)columns.get(columns.getColumnIndex("COLUMN_NAME"), i));
+			}
+		}
+		assertEquals(Arrays.asList(processes.table(root.session).getColumns()), declared);
+		assertEquals(declared, Arrays.asList(catalog.getTable("PROCESSLIST").getColumns()));
+	}
+
+	@Test
+	public void testUnknown() {
+		try {
+			processes.kill(root.session, 9, true);
+			fail();
+		} catch (ExecuteException e) {
+			assertEquals(1094, e.getCode());
+		}
+	}
+
+	private static class FakeConnection implements ProcessList.Connection {
+		private final Session session;
+		private String killed;
+
+		FakeConnection(int id, String user) {
+			session = new Session(id, user);
+		}
+
+		public Session getSession() {
+			return session;
+		}
+
+		public String getState() {
+			return null;
+		}
+
+		public void killQuery() {
+			killed = "query";
+		}
+
+		public void killConnection() {
+			killed = "connection";
+		}
+
+		public void quit() {
+			killed = "quit";
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package cn.batchfile.elasticsql.session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * State of one client connection: current schema, session variables
+ * and the encoded responses of housekeeping statements. What the connection
+ * is doing is read by SHOW PROCESSLIST from other connections without a lock,
+ * only the thread of the connection changes it.
+ */
+public class Session {
+	
+	private int connectionId;
+	private String user;
+	private volatile String schema;
+	private volatile String host;
+	private volatile String command = "Sleep";
+	private volatile String info;
+	private volatile long since = System.currentTimeMillis();
+	private volatile long rowsSent;
+	private volatile long bytesSent;
+	private Map<String, String> variables = new LinkedHashMap<String, String>(SystemVariables.getDefaults());
+	private Map<String, String> userVariables = new HashMap<String, String>();
+	private Map<String, ArrayList<byte[]>> responses = new HashMap<String, ArrayList<byte[]>>();
+	
+	public Session(int connectionId, String user) {
+		this.connectionId = connectionId;
+		this.user = user;
+	}
+	
+	public int getConnectionId() {
+		return connectionId;
+	}
+	
+	public String getUser() {
+		return user;
+	}
+	
+	public String getSchema() {
+		return schema;
+	}
+	
+	public void setSchema(String schema) {
+		if (!StringUtils.equals(this.schema, schema)) {
+			this.schema = schema;
+			responses.clear();
+		}
+	}
+	
+	public String getHost() {
+		return host;
+	}
+	
+	public void setHost(String host) {
+		this.host = host;
+	}
+	
+	/**
+	 * @return command of the protocol the connection runs, Sleep while it waits for the client
+	 */
+	public String getCommand() {
+		return command;
+	}
+	
+	/**
+	 * @return statement running, null if there is none
+	 */
+	public String getInfo() {
+		return info;
+	}
+	
+	public void setInfo(String info) {
+		this.info = info;
+	}
+	
+	/**
+	 * @return time the current command started
+	 */
+	public long getSince() {
+		return since;
+	}
+	
+	public long getRowsSent() {
+		return rowsSent;
+	}
+	
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	
+	/**
+	 * A command of the client starts, the rows and bytes sent count from 0
+	 */
+	public void begin(String command, String info) {
+		this.rowsSent = 0;
+		this.bytesSent = 0;
+		this.info = info;
+		this.command = command;
+		this.since = System.currentTimeMillis();
+	}
+	
+	/**
+	 * The response was sent, the connection waits for the next command
+	 */
+	public void sleep() {
+		this.info = null;
+		this.command = "Sleep";
+		this.since = System.currentTimeMillis();
+	}
+	
+	public void sent(long rows, long bytes) {
+		rowsSent += rows;
+		bytesSent += bytes;
+	}
+	
+	public Map<String, String> getVariables() {
+		return variables;
+	}
+	
+	/**
+	 * @param name variable name in lower case
+	 * @return value, null if the variable is unknown
+	 */
+	public String getVariable(String name) {
+		return variables.get(name);
+	}
+	
+	public void setVariable(String name, String value) {
+		variables.put(name, value);
+		responses.clear();
+	}
+	
+	public String getUserVariable(String name) {
+		return userVariables.get(name);
+	}
+	
+	public void setUserVariable(String name, String value) {
+		userVariables.put(name, value);
+		responses.clear();
+	}
+	
+	/**
+	 * Encoded response of a statement, valid until a variable changes
+	 */
+	public ArrayList<byte[]> getResponse(String sql) {
+		return responses.get(sql);
+	}
+	
+	public void putResponse(String sql, ArrayList<byte[]> packets) {
+		if (responses.size() > 64) {
+			responses.clear();
+		}
+		responses.put(sql, packets);
+	}
+}
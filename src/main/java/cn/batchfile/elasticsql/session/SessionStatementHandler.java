@@ -0,0 +1,362 @@
+package cn.batchfile.elasticsql.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import cn.batchfile.elasticsql.elasticsearch.Result;
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+import cn.batchfile.elasticsql.metrics.Metrics;
+
+import com.github.mpjct.jmpjct.mysql.proto.Column;
+import com.github.mpjct.jmpjct.mysql.proto.ResultSet;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+/**
+ * Answer the statements drivers and tools send to set up a connection
+ * (SET, SHOW VARIABLES, SELECT @@var, SELECT DATABASE() ...) from the
+ * session, without parsing them or going to elasticsearch.
+ */
+public class SessionStatementHandler {
+
+	private static final Pattern SET = Pattern.compile("SET\\s+(.+)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SET_NAMES = Pattern.compile("NAMES\\s+'?(\\w+)'?(?:\\s+COLLATE\\s+'?(\\w+)'?)?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SET_CHARSET = Pattern.compile("(?:CHARACTER\\s+SET|CHARSET)\\s+'?(\\w+)'?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SET_TRANSACTION = Pattern.compile("(?:(?:GLOBAL|SESSION)\\s+)?TRANSACTION\\s+(.+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SET_PASSWORD = Pattern.compile("PASSWORD(?:\\s+FOR\\s+.+?)?\\s*=.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern ASSIGNMENT = Pattern.compile(
+			"(?:(GLOBAL|SESSION|LOCAL)\\s+|@@(?:(global|session|local)\\.)?|(@))?`?(\\w+)`?\\s*:?=\\s*(.*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SHOW_VARIABLES = Pattern.compile(
+			"SHOW\\s+(?:GLOBAL\\s+|SESSION\\s+|LOCAL\\s+)?VARIABLES(?:\\s+LIKE\\s+'([^']*)'|\\s+WHERE\\s+(.+))?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SHOW_STATUS = Pattern.compile(
+			"SHOW\\s+(?:GLOBAL\\s+|SESSION\\s+|LOCAL\\s+)?STATUS(?:\\s+LIKE\\s+'([^']*)'|\\s+WHERE\\s+(.+))?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SHOW_WARNINGS = Pattern.compile("SHOW\\s+(?:WARNINGS|ERRORS)(?:\\s+LIMIT\\s+.+)?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SHOW_COLLATION = Pattern.compile("SHOW\\s+COLLATION(?:\\s+.+)?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SHOW_CHARSET = Pattern.compile("SHOW\\s+(?:CHARACTER\\s+SET|CHARSET)(?:\\s+.+)?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern USE = Pattern.compile("USE\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern TRANSACTION = Pattern.compile(
+			"(?:BEGIN(?:\\s+WORK)?|START\\s+TRANSACTION.*|COMMIT(?:\\s+WORK)?|ROLLBACK(?:\\s+WORK)?)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SELECT = Pattern.compile("SELECT\\s+(.+?)(?:\\s+LIMIT\\s+\\d+)?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern FROM = Pattern.compile("\\sFROM\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SELECT_ITEM = Pattern.compile("(.+?)(?:\\s+(?:AS\\s+)?(`[^`]+`|'[^']+'|\\w+))?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern SYSTEM_VARIABLE = Pattern.compile("@@(?:(?:global|session|local)\\.)?`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern USER_VARIABLE = Pattern.compile("@`?(\\w+)`?");
+	private static final Pattern FUNCTION = Pattern.compile("(\\w+)\\s*\\(\\s*\\)");
+	private static final Pattern LITERAL = Pattern.compile("-?\\d+|'[^']*'");
+
+	/**
+	 * @return result of the statement, null if it is not a session statement
+	 */
+	public Result execute(Session session, String sql) {
+		String statement = strip(sql);
+		ArrayList<byte[]> packets = session.getResponse(statement);
+		if (packets != null) {
+			Result result = new Result();
+			result.packets = packets;
+			return result;
+		}
+
+		Matcher matcher;
+		if ((matcher = SET.matcher(statement)).matches()) {
+			return set(session, matcher.group(1));
+		} else if ((matcher = SHOW_VARIABLES.matcher(statement)).matches()) {
+			return cache(session, statement, show(session.getVariables(), matcher.group(1), matcher.group(2)));
+		} else if ((matcher = SHOW_STATUS.matcher(statement)).matches()) {
+			// the counters change all the time, the response is not kept
+			Result result = new Result();
+			result.resultSet = show(Metrics.getInstance().getStatus(), matcher.group(1), matcher.group(2));
+			return result;
+		} else if ((matcher = SELECT.matcher(statement)).matches()) {
+			ResultSet rs = select(session, matcher.group(1));
+			return rs == null ? null : cache(session, statement, rs);
+		} else if ((matcher = USE.matcher(statement)).matches()) {
+			session.setSchema(matcher.group(1));
+			return new Result();
+		} else if (TRANSACTION.matcher(statement).matches()) {
+			// there is no transaction in elasticsearch
+			return new Result();
+		} else if (SHOW_WARNINGS.matcher(statement).matches()) {
+			ResultSet rs = new ResultSet();
+			rs.addColumn(new Column("Level"));
+			rs.addColumn(new Column("Code"));
+			rs.addColumn(new Column("Message"));
+			return cache(session, statement, rs);
+		} else if (SHOW_COLLATION.matcher(statement).matches()) {
+			return cache(session, statement, showCollation());
+		} else if (SHOW_CHARSET.matcher(statement).matches()) {
+			return cache(session, statement, showCharset());
+		}
+		return null;
+	}
+
+	private Result cache(Session session, String statement, ResultSet rs) {
+		Result result = new Result();
+		result.packets = rs.toPackets();
+		session.putResponse(statement, result.packets);
+		return result;
+	}
+
+	private Result set(Session session, String assignments) {
+		Matcher matcher;
+		if ((matcher = SET_NAMES.matcher(assignments)).matches()) {
+			String charset = matcher.group(1).toLowerCase();
+			session.setVariable("character_set_client", charset);
+			session.setVariable("character_set_connection", charset);
+			session.setVariable("character_set_results", charset);
+			if (matcher.group(2) != null) {
+				session.setVariable("collation_connection", matcher.group(2).toLowerCase());
+			}
+			return new Result();
+		} else if ((matcher = SET_CHARSET.matcher(assignments)).matches()) {
+			String charset = matcher.group(1).toLowerCase();
+			session.setVariable("character_set_client", charset);
+			session.setVariable("character_set_results", charset);
+			return new Result();
+		} else if ((matcher = SET_TRANSACTION.matcher(assignments)).matches()) {
+			String level = StringUtils.substringAfter(matcher.group(1).toUpperCase(), "ISOLATION LEVEL").trim();
+			if (level.length() > 0) {
+				session.setVariable("tx_isolation", level.split("\\s*,")[0].replaceAll("\\s+", "-"));
+			}
+			return new Result();
+		} else if (SET_PASSWORD.matcher(assignments).matches()) {
+			// not a variable, the users are configured on the proxy
+			throw new ExecuteException(1235, "42000", "This version of MySQL doesn't yet support 'SET PASSWORD'");
+		}
+
+		for (String assignment : split(assignments)) {
+			matcher = ASSIGNMENT.matcher(assignment.trim());
+			if (!matcher.matches()) {
+				return null;
+			}
+
+			String name = matcher.group(4).toLowerCase();
+			String value = value(session, name, matcher.group(5).trim());
+			if (matcher.group(3) != null) {
+				session.setUserVariable(name, value);
+			} else {
+				session.setVariable(name, value);
+			}
+		}
+		return new Result();
+	}
+
+	/**
+	 * SHOW VARIABLES and SHOW STATUS
+	 */
+	private ResultSet show(Map<String, String> values, String like, String where) {
+		ResultSet rs = new ResultSet();
+		rs.addColumn(new Column("Variable_name"));
+		rs.addColumn(new Column("Value"));
+
+		List<String> names = null;
+		if (where != null) {
+			// WHERE Variable_name = 'a' OR Variable_name = 'b' ...
+			names = new ArrayList<String>();
+			Matcher matcher = Pattern.compile("'([^']*)'").matcher(where);
+			while (matcher.find()) {
+				names.add(matcher.group(1).toLowerCase());
+			}
+		}
+
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			String name = entry.getKey();
+			if (like != null && !like(name, like)) {
+				continue;
+			}
+			if (names != null && !names.contains(name.toLowerCase())) {
+				continue;
+			}
+			rs.addRow(new Row(name, entry.getValue()));
+		}
+		return rs;
+	}
+
+	/**
+	 * Select list made of system variables, user variables,
+	 * session functions and literals only
+	 */
+	private ResultSet select(Session session, String items) {
+		if (FROM.matcher(items).find()) {
+			return null;
+		}
+
+		ResultSet rs = new ResultSet();
+		Row row = new Row();
+		for (String item : split(items)) {
+			Matcher matcher = SELECT_ITEM.matcher(item.trim());
+			if (!matcher.matches()) {
+				return null;
+			}
+
+			String expression = matcher.group(1).trim();
+			String alias = matcher.group(2);
+			Matcher m;
+			Object value;
+			if ((m = SYSTEM_VARIABLE.matcher(expression)).matches()) {
+				value = session.getVariable(m.group(1).toLowerCase());
+				if (value == null) {
+					return null;
+				}
+			} else if ((m = USER_VARIABLE.matcher(expression)).matches()) {
+				value = session.getUserVariable(m.group(1).toLowerCase());
+			} else if ((m = FUNCTION.matcher(expression)).matches()) {
+				String function = m.group(1).toUpperCase();
+				if ("DATABASE".equals(function) || "SCHEMA".equals(function)) {
+					value = StringUtils.isEmpty(session.getSchema()) ? null : session.getSchema();
+				} else if ("USER".equals(function) || "CURRENT_USER".equals(function)
+						|| "SESSION_USER".equals(function) || "SYSTEM_USER".equals(function)) {
+					value = session.getUser() + "@%";
+				} else if ("VERSION".equals(function)) {
+					value = SystemVariables.VERSION;
+				} else if ("CONNECTION_ID".equals(function)) {
+					value = String.valueOf(session.getConnectionId());
+				} else if ("LAST_INSERT_ID".equals(function)) {
+					value = "0";
+				} else {
+					return null;
+				}
+			} else if (LITERAL.matcher(expression).matches()) {
+				value = StringUtils.strip(expression, "'");
+			} else {
+				return null;
+			}
+
+			rs.addColumn(new Column(alias == null ? expression : StringUtils.strip(alias, "`'")));
+			row.data.add(value);
+		}
+		rs.addRow(row);
+		return rs;
+	}
+
+	private ResultSet showCollation() {
+		ResultSet rs = new ResultSet();
+		for (String name : new String[] {"Collation", "Charset", "Id", "Default", "Compiled", "Sortlen"}) {
+			rs.addColumn(new Column(name));
+		}
+		String[][] collations = {
+				{"latin1_swedish_ci", "latin1", "8", "Yes", "Yes", "1"},
+				{"utf8_general_ci", "utf8", "33", "Yes", "Yes", "1"},
+				{"utf8mb4_general_ci", "utf8mb4", "45", "Yes", "Yes", "1"},
+				{"binary", "binary", "63", "Yes", "Yes", "1"}};
+		for (String[] collation : collations) {
+			Row row = new Row();
+			for (String value : collation) {
+				row.addData(value);
+			}
+			rs.addRow(row);
+		}
+		return rs;
+	}
+
+	private ResultSet showCharset() {
+		ResultSet rs = new ResultSet();
+		for (String name : new String[] {"Charset", "Description", "Default collation", "Maxlen"}) {
+			rs.addColumn(new Column(name));
+		}
+		String[][] charsets = {
+				{"latin1", "cp1252 West European", "latin1_swedish_ci", "1"},
+				{"utf8", "UTF-8 Unicode", "utf8_general_ci", "3"},
+				{"utf8mb4", "UTF-8 Unicode", "utf8mb4_general_ci", "4"},
+				{"binary", "Binary pseudo charset", "binary", "1"}};
+		for (String[] charset : charsets) {
+			Row row = new Row();
+			for (String value : charset) {
+				row.addData(value);
+			}
+			rs.addRow(row);
+		}
+		return rs;
+	}
+
+	private String value(Session session, String name, String expression) {
+		if (expression.startsWith("'") || expression.startsWith("\"")) {
+			return expression.substring(1, Math.max(1, expression.length() - 1));
+		}
+		if (StringUtils.equalsIgnoreCase(expression, "NULL")) {
+			return null;
+		}
+		if (StringUtils.equalsIgnoreCase(expression, "DEFAULT")) {
+			return SystemVariables.getDefaults().get(name);
+		}
+
+		Matcher matcher = SYSTEM_VARIABLE.matcher(expression);
+		if (matcher.matches()) {
+			return session.getVariable(matcher.group(1).toLowerCase());
+		}
+		
+		// switches are shown as ON and OFF
+		String current = SystemVariables.getDefaults().get(name);
+		if ("ON".equals(current) || "OFF".equals(current)) {
+			if ("1".equals(expression) || "TRUE".equalsIgnoreCase(expression)) {
+				return "ON";
+			} else if ("0".equals(expression) || "FALSE".equalsIgnoreCase(expression)) {
+				return "OFF";
+			}
+		}
+		return expression;
+	}
+
+	/**
+	 * SQL LIKE, case insensitive
+	 */
+	private boolean like(String value, String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (char c : pattern.toCharArray()) {
+			if (c == '%') {
+				regex.append(".*");
+			} else if (c == '_') {
+				regex.append('.');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value).matches();
+	}
+
+	/**
+	 * Split on commas which are not quoted or inside parentheses
+	 */
+	private List<String> split(String text) {
+		List<String> parts = new ArrayList<String>();
+		int depth = 0;
+		char quote = 0;
+		int start = 0;
+		for (int i = 0; i < text.length(); i ++) {
+			char c = text.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth ++;
+			} else if (c == ')') {
+				depth --;
+			} else if (c == ',' && depth == 0) {
+				parts.add(text.substring(start, i));
+				start = i + 1;
+			}
+		}
+		parts.add(text.substring(start));
+		return parts;
+	}
+
+	/**
+	 * Remove leading comments (connection pools put one before their ping) and trailing semicolons
+	 */
+	private String strip(String sql) {
+		String statement = sql.trim();
+		while (statement.startsWith("/*") && statement.contains("*/")) {
+			statement = StringUtils.substringAfter(statement, "*/").trim();
+		}
+		while (statement.endsWith(";")) {
+			statement = statement.substring(0, statement.length() - 1).trim();
+		}
+		return statement;
+	}
+}
@@ -0,0 +1,65 @@
+package cn.batchfile.elasticsql.session;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.mpjct.jmpjct.JMP;
+
+/**
+ * Server variables reported to clients, drivers read them when they connect
+ */
+public class SystemVariables {
+	
+	public static final String VERSION = "5.5.28";
+	public static final String VERSION_COMMENT = "Source distribution";
+	
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<String, String>();
+	
+	static {
+		DEFAULTS.put("auto_increment_increment", "1");
+		DEFAULTS.put("auto_increment_offset", "1");
+		DEFAULTS.put("autocommit", "ON");
+		DEFAULTS.put("bulk_load", "OFF");
+		DEFAULTS.put("bulk_load_replicas", "ON");
+		DEFAULTS.put("character_set_client", "utf8");
+		DEFAULTS.put("character_set_connection", "utf8");
+		DEFAULTS.put("character_set_database", "utf8");
+		DEFAULTS.put("character_set_results", "utf8");
+		DEFAULTS.put("character_set_server", "utf8");
+		DEFAULTS.put("character_set_system", "utf8");
+		DEFAULTS.put("collation_connection", "utf8_general_ci");
+		DEFAULTS.put("collation_database", "utf8_general_ci");
+		DEFAULTS.put("collation_server", "utf8_general_ci");
+		DEFAULTS.put("have_query_cache", "YES");
+		DEFAULTS.put("init_connect", "");
+		DEFAULTS.put("interactive_timeout", "28800");
+		DEFAULTS.put("language", "/usr/share/mysql/english/");
+		DEFAULTS.put("license", "GPL");
+		DEFAULTS.put("lower_case_table_names", "0");
+		DEFAULTS.put("max_allowed_packet", "16777216");
+		// milliseconds a select may run, query.max_execution_time is the default of the sessions
+		DEFAULTS.put("max_execution_time", JMP.config == null ? "0" : JMP.config.getProperty("query.max_execution_time", "0").trim());
+		DEFAULTS.put("net_buffer_length", "16384");
+		DEFAULTS.put("net_write_timeout", "60");
+		DEFAULTS.put("performance_schema", "OFF");
+		DEFAULTS.put("query_cache_size", "0");
+		DEFAULTS.put("query_cache_type", "OFF");
+		DEFAULTS.put("sql_auto_is_null", "OFF");
+		DEFAULTS.put("sql_mode", "");
+		DEFAULTS.put("sql_select_limit", "18446744073709551615");
+		DEFAULTS.put("system_time_zone", "UTC");
+		DEFAULTS.put("time_zone", "SYSTEM");
+		DEFAULTS.put("tx_isolation", "REPEATABLE-READ");
+		DEFAULTS.put("tx_read_only", "OFF");
+		DEFAULTS.put("version", VERSION);
+		DEFAULTS.put("version_comment", VERSION_COMMENT);
+		DEFAULTS.put("wait_timeout", "28800");
+		DEFAULTS.put("write_behind", "OFF");
+		DEFAULTS.put("write_behind_sync", "OFF");
+	}
+	
+	public static Map<String, String> getDefaults() {
+		return Collections.unmodifiableMap(DEFAULTS);
+	}
+}
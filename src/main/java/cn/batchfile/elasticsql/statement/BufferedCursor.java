@@ -0,0 +1,54 @@
+package cn.batchfile.elasticsql.statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+import cn.batchfile.elasticsql.elasticsearch.RowConverter;
+import cn.batchfile.elasticsql.elasticsearch.RunningStatement;
+
+/**
+ * Cursor over a result that is already in memory, such as the flattened
+ * buckets of an aggregation
+ */
+public class BufferedCursor implements Cursor {
+	
+	private List<String> head;
+	private List<Map<String, Object>> body;
+	private int position = 0;
+	private long lastAccessTime = System.currentTimeMillis();
+
+	public BufferedCursor(List<String> head, List<Map<String, Object>> body) {
+		this.head = head;
+		this.body = body;
+	}
+
+	public List<String> getHead() {
+		return head;
+	}
+
+	public List<Row> fetch(RunningStatement running, int count) {
+		lastAccessTime = System.currentTimeMillis();
+		List<Row> rows = new ArrayList<Row>();
+		while (rows.size() < count && position < body.size()) {
+			rows.add(RowConverter.toRow(head, body.get(position ++), Flags.ROW_TYPE_BINARY));
+		}
+		return rows;
+	}
+
+	public boolean isLast() {
+		return position >= body.size();
+	}
+
+	public long getLastAccessTime() {
+		return lastAccessTime;
+	}
+
+	public void close() {
+		body = new ArrayList<Map<String, Object>>();
+		position = 0;
+	}
+}
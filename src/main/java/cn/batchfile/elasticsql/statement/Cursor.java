@@ -0,0 +1,29 @@
+package cn.batchfile.elasticsql.statement;
+
+import java.util.List;
+
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+import cn.batchfile.elasticsql.elasticsearch.RunningStatement;
+
+/**
+ * Read only cursor opened by COM_STMT_EXECUTE and consumed by COM_STMT_FETCH
+ */
+public interface Cursor {
+
+	List<String> getHead();
+	
+	/**
+	 * Read the next rows of the cursor, in binary row format
+	 * @param running the fetch, its requests are stopped by KILL QUERY and max_execution_time
+	 * @param count max number of rows
+	 * @return rows, empty when the cursor is exhausted
+	 */
+	List<Row> fetch(RunningStatement running, int count);
+	
+	boolean isLast();
+	
+	long getLastAccessTime();
+	
+	void close();
+}
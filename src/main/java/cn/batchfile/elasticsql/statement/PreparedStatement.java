@@ -0,0 +1,246 @@
+package cn.batchfile.elasticsql.statement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.github.mpjct.jmpjct.mysql.proto.Com_Stmt_Execute;
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
+import com.github.mpjct.jmpjct.mysql.proto.Proto;
+
+/**
+ * Statement created by COM_STMT_PREPARE. Parameters sent in the binary
+ * protocol are bound back into the sql text before it is executed.
+ */
+public class PreparedStatement {
+	
+	private long id;
+	private String sql;
+	private List<Integer> placeholders;
+	private List<String> head = new ArrayList<String>();
+	private int[] paramTypes;
+	private Map<Integer, StringBuilder> longData = new HashMap<Integer, StringBuilder>();
+	private Cursor cursor;
+
+	public PreparedStatement(long id, String sql) {
+		this.id = id;
+		this.sql = sql;
+		this.placeholders = findPlaceholders(sql);
+		this.paramTypes = new int[placeholders.size()];
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public String getSql() {
+		return sql;
+	}
+	
+	public int getParamCount() {
+		return placeholders.size();
+	}
+	
+	public List<String> getHead() {
+		return head;
+	}
+	
+	public void setHead(List<String> head) {
+		this.head = head;
+	}
+	
+	public Cursor getCursor() {
+		return cursor;
+	}
+	
+	public void setCursor(Cursor cursor) {
+		this.cursor = cursor;
+	}
+	
+	public void appendLongData(int paramId, String data) {
+		if (!longData.containsKey(paramId)) {
+			longData.put(paramId, new StringBuilder());
+		}
+		longData.get(paramId).append(data);
+	}
+	
+	public void reset() {
+		longData.clear();
+	}
+	
+	/**
+	 * Bind every parameter with the same value, used to parse the
+	 * statement before any parameter is known
+	 */
+	public String bind(Object value) {
+		Object[] values = new Object[placeholders.size()];
+		for (int i = 0; i < values.length; i ++) {
+			values[i] = value;
+		}
+		return bind(values);
+	}
+
+	/**
+	 * Read parameters of COM_STMT_EXECUTE and bind them into sql
+	 */
+	public String bind(Com_Stmt_Execute execute) {
+		int count = placeholders.size();
+		Object[] values = new Object[count];
+		if (count == 0) {
+			return sql;
+		}
+		
+		// command(1), statement_id(4), flags(1), iteration_count(4)
+		Proto proto = new Proto(execute.data, 10);
+		byte[] nullBitmap = new byte[(count + 7) / 8];
+		for (int i = 0; i < nullBitmap.length; i ++) {
+			nullBitmap[i] = (byte)proto.get_fixed_int(1);
+		}
+		
+		// types are sent again only when the client rebinds them
+		if (proto.get_fixed_int(1) == 1) {
+			for (int i = 0; i < count; i ++) {
+				paramTypes[i] = (int)proto.get_fixed_int(2);
+			}
+		}
+		
+		for (int i = 0; i < count; i ++) {
+			if (longData.containsKey(i)) {
+				values[i] = longData.get(i).toString();
+			} else if ((nullBitmap[i / 8] & (1 << (i % 8))) != 0) {
+				values[i] = null;
+			} else {
+				values[i] = readValue(proto, paramTypes[i]);
+			}
+		}
+		longData.clear();
+		return bind(values);
+	}
+	
+	private String bind(Object[] values) {
+		StringBuilder s = new StringBuilder();
+		int last = 0;
+		for (int i = 0; i < placeholders.size(); i ++) {
+			int position = placeholders.get(i);
+			s.append(sql, last, position);
+			s.append(toLiteral(values[i]));
+			last = position + 1;
+		}
+		s.append(sql.substring(last));
+		return s.toString();
+	}
+	
+	private Object readValue(Proto proto, int type) {
+		boolean unsigned = (type & 0x8000) != 0;
+		switch (type & 0xff) {
+		case Flags.MYSQL_TYPE_TINY:
+			long tiny = proto.get_fixed_int(1);
+			return unsigned ? tiny : (long)(byte)tiny;
+		case Flags.MYSQL_TYPE_SHORT:
+		case Flags.MYSQL_TYPE_YEAR:
+			long shortValue = proto.get_fixed_int(2);
+			return unsigned ? shortValue : (long)(short)shortValue;
+		case Flags.MYSQL_TYPE_LONG:
+		case Flags.MYSQL_TYPE_INT24:
+			long longValue = proto.get_fixed_int(4);
+			return unsigned ? longValue : (long)(int)longValue;
+		case Flags.MYSQL_TYPE_LONGLONG:
+			return proto.get_fixed_int(8);
+		case Flags.MYSQL_TYPE_FLOAT:
+			return Float.intBitsToFloat((int)proto.get_fixed_int(4));
+		case Flags.MYSQL_TYPE_DOUBLE:
+			return Double.longBitsToDouble(proto.get_fixed_int(8));
+		case Flags.MYSQL_TYPE_DATE:
+		case Flags.MYSQL_TYPE_DATETIME:
+		case Flags.MYSQL_TYPE_TIMESTAMP:
+			return readDateTime(proto);
+		case Flags.MYSQL_TYPE_TIME:
+			return readTime(proto);
+		case Flags.MYSQL_TYPE_NULL:
+			return null;
+		default:
+			return proto.get_lenenc_str();
+		}
+	}
+	
+	private String readDateTime(Proto proto) {
+		int length = (int)proto.get_fixed_int(1);
+		long year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0, micro = 0;
+		if (length >= 4) {
+			year = proto.get_fixed_int(2);
+			month = proto.get_fixed_int(1);
+			day = proto.get_fixed_int(1);
+		}
+		if (length >= 7) {
+			hour = proto.get_fixed_int(1);
+			minute = proto.get_fixed_int(1);
+			second = proto.get_fixed_int(1);
+		}
+		if (length >= 11) {
+			micro = proto.get_fixed_int(4);
+		}
+		
+		String s = String.format("%04d-%02d-%02d %02d:%02d:%02d", year, month, day, hour, minute, second);
+		return micro > 0 ? s + String.format(".%06d", micro) : s;
+	}
+	
+	private String readTime(Proto proto) {
+		int length = (int)proto.get_fixed_int(1);
+		long negative = 0, days = 0, hour = 0, minute = 0, second = 0;
+		if (length >= 8) {
+			negative = proto.get_fixed_int(1);
+			days = proto.get_fixed_int(4);
+			hour = proto.get_fixed_int(1);
+			minute = proto.get_fixed_int(1);
+			second = proto.get_fixed_int(1);
+		}
+		if (length >= 12) {
+			proto.get_filler(4);
+		}
+		return String.format("%s%02d:%02d:%02d", negative == 1 ? "-" : StringUtils.EMPTY, days * 24 + hour, minute, second);
+	}
+	
+	private String toLiteral(Object value) {
+		if (value == null) {
+			return "NULL";
+		} else if (value instanceof Number) {
+			return value.toString();
+		} else {
+			String s = value.toString().replace("\\", "\\\\").replace("'", "\\'");
+			return "'" + s + "'";
+		}
+	}
+	
+	/**
+	 * Find the positions of '?' outside of quotes and comments
+	 */
+	private List<Integer> findPlaceholders(String sql) {
+		List<Integer> positions = new ArrayList<Integer>();
+		int length = sql.length();
+		for (int i = 0; i < length; i ++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"' || c == '`') {
+				i ++;
+				while (i < length && sql.charAt(i) != c) {
+					if (sql.charAt(i) == '\\' && c != '`') {
+						i ++;
+					}
+					i ++;
+				}
+			} else if (c == '#' || (c == '-' && sql.startsWith("-- ", i))) {
+				while (i < length && sql.charAt(i) != '\n') {
+					i ++;
+				}
+			} else if (c == '/' && sql.startsWith("/*", i)) {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 1;
+			} else if (c == '?') {
+				positions.add(i);
+			}
+		}
+		return positions;
+	}
+}
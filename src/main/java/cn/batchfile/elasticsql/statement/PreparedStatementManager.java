@@ -0,0 +1,125 @@
+package cn.batchfile.elasticsql.statement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import cn.batchfile.elasticsql.exceptions.ExecuteException;
+
+/**
+ * Prepared statements and open cursors of one connection. A KILL QUERY closes
+ * the cursors from another connection, the methods are synchronized for it.
+ */
+public class PreparedStatementManager {
+	
+	private static final Logger logger = Logger.getLogger("PreparedStatementManager");
+	private Map<Long, PreparedStatement> statements = new HashMap<Long, PreparedStatement>();
+	private long lastId = 0;
+	private int maxOpenCursors;
+	private long idleTimeout;
+	
+	/**
+	 * @param maxOpenCursors max number of open cursors of the connection
+	 * @param idleTimeout milliseconds a cursor stays open without fetch
+	 */
+	public PreparedStatementManager(int maxOpenCursors, long idleTimeout) {
+		this.maxOpenCursors = maxOpenCursors;
+		this.idleTimeout = idleTimeout;
+	}
+	
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	public synchronized PreparedStatement prepare(String sql) {
+		PreparedStatement statement = new PreparedStatement(++ lastId, sql);
+		statements.put(statement.getId(), statement);
+		return statement;
+	}
+	
+	public synchronized PreparedStatement get(long id) {
+		PreparedStatement statement = statements.get(id);
+		if (statement == null) {
+			throw new ExecuteException(1243, "HY000", String.format("Unknown prepared statement handler (%d)", id));
+		}
+		return statement;
+	}
+	
+	public synchronized void close(long id) {
+		PreparedStatement statement = statements.remove(id);
+		if (statement != null) {
+			closeCursor(statement);
+		}
+	}
+	
+	public synchronized void openCursor(PreparedStatement statement, Cursor cursor) {
+		closeCursor(statement);
+		if (getOpenCursorCount() >= maxOpenCursors) {
+			cursor.close();
+			throw new ExecuteException(1105, "HY000", 
+					String.format("Too many open cursors, max_per_connection is %d", maxOpenCursors));
+		}
+		statement.setCursor(cursor);
+	}
+	
+	public synchronized void closeCursor(PreparedStatement statement) {
+		Cursor cursor = statement.getCursor();
+		if (cursor != null) {
+			cursor.close();
+			statement.setCursor(null);
+		}
+	}
+	
+	/**
+	 * Close cursors which are not fetched in idleTimeout
+	 * @return number of closed cursors
+	 */
+	public synchronized int expire() {
+		long now = System.currentTimeMillis();
+		int count = 0;
+		for (PreparedStatement statement : statements.values()) {
+			Cursor cursor = statement.getCursor();
+			if (cursor != null && now - cursor.getLastAccessTime() > idleTimeout) {
+				logger.info(String.format("close idle cursor of statement %d", statement.getId()));
+				closeCursor(statement);
+				count ++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * KILL QUERY, the statements stay prepared
+	 * @return number of closed cursors
+	 */
+	public synchronized int closeCursors() {
+		int count = 0;
+		for (PreparedStatement statement : statements.values()) {
+			if (statement.getCursor() != null) {
+				closeCursor(statement);
+				count ++;
+			}
+		}
+		return count;
+	}
+	
+	public synchronized void closeAll() {
+		List<Long> ids = new ArrayList<Long>(statements.keySet());
+		for (Long id : ids) {
+			close(id);
+		}
+	}
+	
+	private int getOpenCursorCount() {
+		int count = 0;
+		for (PreparedStatement statement : statements.values()) {
+			if (statement.getCursor() != null) {
+				count ++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,140 @@
+package cn.batchfile.elasticsql.statement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import com.github.mpjct.jmpjct.mysql.proto.Flags;
+import com.github.mpjct.jmpjct.mysql.proto.Row;
+
+import cn.batchfile.elasticsql.elasticsearch.RowConverter;
+import cn.batchfile.elasticsql.elasticsearch.RunningStatement;
+
+/**
+ * Cursor backed by an Elasticsearch scroll. Only one scroll page is held
+ * in memory, the next page is pulled when a fetch needs more rows. A fetch
+ * killed or timed out closes the cursor, the rows it skipped are lost.
+ */
+public class ScrollCursor implements Cursor {
+	
+	private static final Logger logger = Logger.getLogger("ScrollCursor");
+	private Client client;
+	private TimeValue keepAlive;
+	private String scrollId;
+	private List<String> head;
+	private LinkedList<Map<String, Object>> pending = new LinkedList<Map<String, Object>>();
+	private long skip;
+	private long remaining;
+	private boolean exhausted = false;
+	private long lastAccessTime = System.currentTimeMillis();
+
+	/**
+	 * @param client elasticsearch client
+	 * @param response response of the search request that opened the scroll
+	 * @param head column names, taken from the first page when empty
+	 * @param offset number of documents to skip
+	 * @param limit max number of documents to return, -1 for all
+	 * @param keepAlive how long the scroll stays open between two fetches
+	 */
+	public ScrollCursor(Client client, SearchResponse response, List<String> head, long offset, long limit, TimeValue keepAlive) {
+		this.client = client;
+		this.keepAlive = keepAlive;
+		this.skip = offset;
+		this.remaining = limit < 0 ? Long.MAX_VALUE : limit;
+		
+		this.scrollId = response.getScrollId();
+		append(response);
+		
+		this.head = head == null ? new ArrayList<String>() : head;
+		if (this.head.isEmpty()) {
+			for (Map<String, Object> source : pending) {
+				for (String key : source.keySet()) {
+					if (!this.head.contains(key)) {
+						this.head.add(key);
+					}
+				}
+			}
+		}
+	}
+
+	public List<String> getHead() {
+		return head;
+	}
+
+	public synchronized List<Row> fetch(RunningStatement running, int count) {
+		lastAccessTime = System.currentTimeMillis();
+		while (pending.size() < count && !exhausted && remaining > 0) {
+			SearchResponse response;
+			try {
+				response = running.get(client.prepareSearchScroll(scrollId).setScroll(keepAlive));
+			} catch (RuntimeException e) {
+				close();
+				throw e;
+			}
+			scrollId = response.getScrollId();
+			append(response);
+		}
+		
+		List<Row> rows = new ArrayList<Row>();
+		while (rows.size() < count && !pending.isEmpty() && remaining > 0) {
+			rows.add(RowConverter.toRow(head, pending.poll(), Flags.ROW_TYPE_BINARY));
+			remaining --;
+		}
+		
+		if (isLast()) {
+			close();
+		}
+		return rows;
+	}
+
+	public boolean isLast() {
+		return remaining <= 0 || (exhausted && pending.isEmpty());
+	}
+
+	public long getLastAccessTime() {
+		return lastAccessTime;
+	}
+
+	/**
+	 * A KILL QUERY closes the cursor from another connection, after the fetch
+	 * running has given up its request
+	 */
+	public synchronized void close() {
+		pending.clear();
+		exhausted = true;
+		if (scrollId != null) {
+			try {
+				client.prepareClearScroll().addScrollId(scrollId).get();
+			} catch (Exception e) {
+				// the scroll expires on its own after keepAlive
+				logger.warn("error when clear scroll: " + e.getMessage());
+			}
+			scrollId = null;
+		}
+	}
+	
+	private void append(SearchResponse response) {
+		SearchHit[] hits = response.getHits().getHits();
+		if (hits.length == 0) {
+			exhausted = true;
+			return;
+		}
+		
+		for (SearchHit hit : hits) {
+			if (skip > 0) {
+				skip --;
+				continue;
+			}
+			Map<String, Object> source = hit.getSource();
+			pending.add(source == null ? Collections.<String, Object>emptyMap() : source);
+		}
+	}
+}
@@ -5,6 +5,9 @@ import org.apache.log4j.Logger;
 
 public class Com_Stmt_Execute extends Packet {
     public byte[] data;
+    public long statementId = 0;
+    public long flags = 0;
+    public long iterationCount = 0;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -24,6 +27,11 @@ public class Com_Stmt_Execute extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.flags = proto.get_fixed_int(1);
+        obj.iterationCount = proto.get_fixed_int(4);
 
         return obj;
     }
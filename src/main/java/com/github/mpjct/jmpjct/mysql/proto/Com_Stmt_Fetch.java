@@ -0,0 +1,31 @@
+package com.github.mpjct.jmpjct.mysql.proto;
+
+import java.util.ArrayList;
+import org.apache.log4j.Logger;
+
+public class Com_Stmt_Fetch extends Packet {
+    public long statementId = 0;
+    public long numRows = 0;
+    
+    public ArrayList<byte[]> getPayload() {
+        ArrayList<byte[]> payload = new ArrayList<byte[]>();
+        
+        payload.add(Proto.build_byte(Flags.COM_STMT_FETCH));
+        payload.add(Proto.build_fixed_int(4, this.statementId));
+        payload.add(Proto.build_fixed_int(4, this.numRows));
+        
+        return payload;
+    }
+    
+    public static Com_Stmt_Fetch loadFromPacket(byte[] packet) {
+        Com_Stmt_Fetch obj = new Com_Stmt_Fetch();
+        Proto proto = new Proto(packet, 3);
+        
+        obj.sequenceId = proto.get_fixed_int(1);
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.numRows = proto.get_fixed_int(4);
+        
+        return obj;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.mpjct.jmpjct.mysql.proto;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class Com_Stmt_FetchTest {
+    @Test
+    public void test1() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "09 00 00 00 1c 01 00 00    00 e8 03 00 00"
+        );
+
+        Com_Stmt_Fetch pkt = Com_Stmt_Fetch.loadFromPacket(packet);
+        assertArrayEquals(packet, pkt.toPacket());
+        assertEquals(pkt.statementId, 1);
+        assertEquals(pkt.numRows, 1000);
+    }
+}
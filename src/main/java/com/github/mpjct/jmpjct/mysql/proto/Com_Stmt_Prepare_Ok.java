@@ -4,11 +4,21 @@ import java.util.ArrayList;
 import org.apache.log4j.Logger;
 
 public class Com_Stmt_Prepare_Ok extends Packet {
-    public String query="";
+    public long statementId = 0;
+    public long numColumns = 0;
+    public long numParams = 0;
+    public long warnings = 0;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
         
+        payload.add(Proto.build_byte(Flags.OK));
+        payload.add(Proto.build_fixed_int(4, this.statementId));
+        payload.add(Proto.build_fixed_int(2, this.numColumns));
+        payload.add(Proto.build_fixed_int(2, this.numParams));
+        payload.add(Proto.build_filler(1));
+        payload.add(Proto.build_fixed_int(2, this.warnings));
+        
         return payload;
     }
     
@@ -17,6 +27,12 @@ public class Com_Stmt_Prepare_Ok extends Packet {
         Proto proto = new Proto(packet, 3);
         
         obj.sequenceId = proto.get_fixed_int(1);
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.numColumns = proto.get_fixed_int(2);
+        obj.numParams = proto.get_fixed_int(2);
+        proto.get_filler(1);
+        obj.warnings = proto.get_fixed_int(2);
 
         return obj;
     }
@@ -0,0 +1,20 @@
+package com.github.mpjct.jmpjct.mysql.proto;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class Com_Stmt_Prepare_OkTest {
+    @Test
+    public void test1() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "0c 00 00 01 00 01 00 00    00 01 00 02 00 00 00 00"
+        );
+
+        Com_Stmt_Prepare_Ok pkt = Com_Stmt_Prepare_Ok.loadFromPacket(packet);
+        assertArrayEquals(packet, pkt.toPacket());
+        assertEquals(pkt.statementId, 1);
+        assertEquals(pkt.numColumns, 1);
+        assertEquals(pkt.numParams, 2);
+        assertEquals(pkt.warnings, 0);
+    }
+}
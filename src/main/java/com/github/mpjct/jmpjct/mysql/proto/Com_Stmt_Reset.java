@@ -5,6 +5,7 @@ import org.apache.log4j.Logger;
 
 public class Com_Stmt_Reset extends Packet {
     public byte[] data;
+    public long statementId = 0;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -24,6 +25,9 @@ public class Com_Stmt_Reset extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
 
         return obj;
     }
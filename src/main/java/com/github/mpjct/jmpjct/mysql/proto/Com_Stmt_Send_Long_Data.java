@@ -5,6 +5,8 @@ import org.apache.log4j.Logger;
 
 public class Com_Stmt_Send_Long_Data extends Packet {
     public byte[] data;
+    public long statementId = 0;
+    public long paramId = 0;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -24,6 +26,10 @@ public class Com_Stmt_Send_Long_Data extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.paramId = proto.get_fixed_int(2);
 
         return obj;
     }
@@ -8,6 +8,7 @@ public class OK extends Packet {
     public long lastInsertId = 0;
     public long statusFlags = 0;
     public long warnings = 0;
+    public String info = "";
     
     public void setStatusFlag(long flag) {
         this.statusFlags |= flag;
@@ -33,6 +34,7 @@ public class OK extends Packet {
         payload.add(Proto.build_lenenc_int(this.lastInsertId));
         payload.add(Proto.build_fixed_int(2, this.statusFlags));
         payload.add(Proto.build_fixed_int(2, this.warnings));
+        payload.add(Proto.build_eop_str(this.info));
         
         return payload;
     }
@@ -47,6 +49,7 @@ public class OK extends Packet {
         obj.lastInsertId = proto.get_lenenc_int();
         obj.statusFlags = proto.get_fixed_int(2);
         obj.warnings = proto.get_fixed_int(2);
+        obj.info = proto.get_eop_str();
         
         return obj;
     }
@@ -18,4 +18,19 @@ public class OKTest {
         assertEquals(ok.hasStatusFlag(Flags.SERVER_STATUS_IN_TRANS_READONLY), false);
         assertEquals(ok.warnings, 0);
     }
+    
+    @Test
+    public void test2() {
+        OK ok = new OK();
+        ok.sequenceId = 1;
+        ok.affectedRows = 3;
+        ok.statusFlags = Flags.SERVER_STATUS_AUTOCOMMIT;
+        ok.info = "Records: 3";
+        
+        OK read = OK.loadFromPacket(ok.toPacket());
+        assertEquals(read.affectedRows, 3);
+        assertEquals(read.warnings, 0);
+        assertEquals(read.info, "Records: 3");
+        assertArrayEquals(ok.toPacket(), read.toPacket());
+    }
 }
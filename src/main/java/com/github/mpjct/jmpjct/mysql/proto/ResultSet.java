@@ -11,6 +11,16 @@ public class ResultSet {
     public ArrayList<Row> rows = new ArrayList<Row>();
     
     public ArrayList<byte[]> toPackets() {
+        ArrayList<byte[]> packets = this.toColumnPackets(0);
+        packets.addAll(this.toRowPackets(0));
+        return packets;
+    }
+    
+    /*
+     * Column count, column definitions and the EOF closing them. Used on its
+     * own when a cursor is opened and the rows follow in COM_STMT_FETCH.
+     */
+    public ArrayList<byte[]> toColumnPackets(long statusFlags) {
         ArrayList<byte[]> packets = new ArrayList<byte[]>();
         
         long maxRowSize = 0;
@@ -38,17 +48,28 @@ public class ResultSet {
         
         EOF eof = new EOF();
         eof.sequenceId = this.sequenceId;
+        eof.statusFlags = statusFlags;
         this.sequenceId++;
         packets.add(eof.toPacket());
         
+        return packets;
+    }
+    
+    /*
+     * Rows and the terminating EOF.
+     */
+    public ArrayList<byte[]> toRowPackets(long statusFlags) {
+        ArrayList<byte[]> packets = new ArrayList<byte[]>();
+        
         for (Row row: this.rows) {
             row.sequenceId = this.sequenceId;
             this.sequenceId++;
             packets.add(row.toPacket());
         }
         
-        eof = new EOF();
+        EOF eof = new EOF();
         eof.sequenceId = this.sequenceId;
+        eof.statusFlags = statusFlags;
         this.sequenceId++;
         packets.add(eof.toPacket());
         
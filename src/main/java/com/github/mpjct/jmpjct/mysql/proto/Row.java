@@ -66,12 +66,33 @@ public class Row extends Packet {
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
         
+        // Binary rows carry a header and a NULL bitmap (offset 2) ahead of
+        // the values. Every column is declared as VAR_STRING, so the
+        // non-NULL values are written as length encoded strings.
+        if (this.type == Flags.ROW_TYPE_BINARY) {
+            byte[] nullBitmap = new byte[(this.data.size() + 7 + 2) / 8];
+            for (int i = 0; i < this.data.size(); i++) {
+                if (this.data.get(i) == null)
+                    nullBitmap[(i + 2) / 8] |= (byte) (1 << ((i + 2) % 8));
+            }
+            
+            payload.add(Proto.build_byte(Flags.OK));
+            payload.add(nullBitmap);
+            for (Object obj: this.data) {
+                if (obj != null)
+                    payload.add(Proto.build_lenenc_str(obj.toString()));
+            }
+            return payload;
+        }
+        
         for (Object obj: this.data) {
             switch (this.type) {
                 case Flags.ROW_TYPE_TEXT: 
-                    if (obj instanceof String)
+                    if (obj == null)
+                        payload.add(Proto.build_byte((byte)0xfb));
+                    else if (obj instanceof String)
                         payload.add(Proto.build_lenenc_str((String)obj));
-                    else if (obj instanceof Integer || obj == null)
+                    else if (obj instanceof Integer)
                         payload.add(Proto.build_lenenc_int((Integer)obj));
                     else {
                         // trigger error
@@ -0,0 +1,33 @@
+package com.github.mpjct.jmpjct.mysql.proto;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RowTest {
+    @Test
+    public void test_binary_row() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "04 00 00 05 00 08 01 61"
+        );
+
+        Row row = new Row();
+        row.type = Flags.ROW_TYPE_BINARY;
+        row.sequenceId = 5;
+        row.addData("a");
+        row.addData((String) null);
+        assertArrayEquals(packet, row.toPacket());
+    }
+    
+    @Test
+    public void test_text_row_null() {
+        byte[] packet = Proto.packet_string_to_bytes(""
+            + "03 00 00 02 01 61 fb"
+        );
+
+        Row row = new Row();
+        row.sequenceId = 2;
+        row.addData("a");
+        row.addData((String) null);
+        assertArrayEquals(packet, row.toPacket());
+    }
+}
@@ -30,6 +30,13 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
     private SQLExpr           expr;
     private List<SQLExpr>     targetList       = new ArrayList<SQLExpr>();
 
+    /*
+     * a list made only of integer or only of string literals is kept in one of these arrays, the SQLExpr of the
+     * values are created the first time the target list is asked for
+     */
+    private long[]            longValues;
+    private String[]          charValues;
+
     public SQLInListExpr(){
 
     }
@@ -62,11 +69,63 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
     }
 
     public List<SQLExpr> getTargetList() {
+        if (longValues != null && targetList.isEmpty()) {
+            List<SQLExpr> targetList = new ArrayList<SQLExpr>(longValues.length);
+            for (long value : longValues) {
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    targetList.add(new SQLIntegerExpr((int) value));
+                } else {
+                    targetList.add(new SQLIntegerExpr(value));
+                }
+            }
+            this.targetList = targetList;
+        } else if (charValues != null && targetList.isEmpty()) {
+            List<SQLExpr> targetList = new ArrayList<SQLExpr>(charValues.length);
+            for (String value : charValues) {
+                targetList.add(new SQLCharExpr(value));
+            }
+            this.targetList = targetList;
+        }
         return this.targetList;
     }
 
     public void setTargetList(List<SQLExpr> targetList) {
         this.targetList = targetList;
+        this.longValues = null;
+        this.charValues = null;
+    }
+
+    /**
+     * @return the values if the list is made only of integer literals, null otherwise
+     */
+    public long[] getLongValues() {
+        return longValues;
+    }
+
+    public void setLongValues(long[] longValues) {
+        this.targetList = new ArrayList<SQLExpr>();
+        this.longValues = longValues;
+        this.charValues = null;
+    }
+
+    /**
+     * @return the values if the list is made only of string literals, null otherwise
+     */
+    public String[] getCharValues() {
+        return charValues;
+    }
+
+    public void setCharValues(String[] charValues) {
+        this.targetList = new ArrayList<SQLExpr>();
+        this.longValues = null;
+        this.charValues = charValues;
+    }
+
+    /**
+     * @return true if the values are kept in an array instead of SQLExpr
+     */
+    public boolean isLiteralList() {
+        return longValues != null || charValues != null;
     }
 
     public void output(StringBuffer buf) {
@@ -79,12 +138,13 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
         }
 
         buf.append("(");
+        List<SQLExpr> targetList = getTargetList();
         int i = 0;
-        for (int size = this.targetList.size(); i < size; ++i) {
+        for (int size = targetList.size(); i < size; ++i) {
             if (i != 0) {
                 buf.append(", ");
             }
-            ((SQLExpr) this.targetList.get(i)).output(buf);
+            ((SQLExpr) targetList.get(i)).output(buf);
         }
         buf.append(")");
     }
@@ -92,7 +152,7 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
     protected void accept0(SQLASTVisitor visitor) {
         if (visitor.visit(this)) {
             acceptChild(visitor, this.expr);
-            acceptChild(visitor, this.targetList);
+            acceptChild(visitor, getTargetList());
         }
 
         visitor.endVisit(this);
@@ -104,7 +164,7 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
         int result = 1;
         result = prime * result + ((expr == null) ? 0 : expr.hashCode());
         result = prime * result + (not ? 1231 : 1237);
-        result = prime * result + ((targetList == null) ? 0 : targetList.hashCode());
+        result = prime * result + ((getTargetList() == null) ? 0 : getTargetList().hashCode());
         return result;
     }
 
@@ -130,11 +190,11 @@ public class SQLInListExpr extends SQLExprImpl implements Serializable {
         if (not != other.not) {
             return false;
         }
-        if (targetList == null) {
-            if (other.targetList != null) {
+        if (getTargetList() == null) {
+            if (other.getTargetList() != null) {
                 return false;
             }
-        } else if (!targetList.equals(other.targetList)) {
+        } else if (!getTargetList().equals(other.getTargetList())) {
             return false;
         }
         return true;
@@ -49,6 +49,7 @@ public class MySqlLoadDataInFileStatement extends MySqlStatementImpl {
 
     private SQLExpr             ignoreLinesNumber;
 
+    private final List<SQLExpr> columns                   = new ArrayList<SQLExpr>();
     private final List<SQLExpr> setList                   = new ArrayList<SQLExpr>();
 
     public boolean isLowPriority() {
@@ -171,6 +172,10 @@ public class MySqlLoadDataInFileStatement extends MySqlStatementImpl {
         this.ignoreLinesNumber = ignoreLinesNumber;
     }
 
+    public List<SQLExpr> getColumns() {
+        return columns;
+    }
+
     public List<SQLExpr> getSetList() {
         return setList;
     }
@@ -185,6 +190,7 @@ public class MySqlLoadDataInFileStatement extends MySqlStatementImpl {
             acceptChild(visitor, linesStartingBy);
             acceptChild(visitor, linesTerminatedBy);
             acceptChild(visitor, ignoreLinesNumber);
+            acceptChild(visitor, columns);
             acceptChild(visitor, setList);
         }
         visitor.endVisit(this);
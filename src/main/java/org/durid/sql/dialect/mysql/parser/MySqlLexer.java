@@ -163,13 +163,7 @@ public class MySqlLexer extends Lexer {
 
             this.ch = charAt(pos);
 
-            stringVal = subString(mark, bufPos);
-            Token tok = keywods.getKeyword(stringVal);
-            if (tok != null) {
-                token = tok;
-            } else {
-                token = Token.IDENTIFIER;
-            }
+            scanKeyword();
         } else {
 
             final boolean firstFlag = isFirstIdentifierChar(first);
@@ -193,13 +187,7 @@ public class MySqlLexer extends Lexer {
 
             this.ch = charAt(pos);
 
-            stringVal = addSymbol();
-            Token tok = keywods.getKeyword(stringVal);
-            if (tok != null) {
-                token = tok;
-            } else {
-                token = Token.IDENTIFIER;
-            }
+            scanKeyword();
         }
     }
 
@@ -255,7 +243,8 @@ public class MySqlLexer extends Lexer {
                         putChar(ch);
                         break;
                 }
-                scanChar();
+                // the next character may start another escape
+                continue;
             }
 
             if (ch == '\'') {
@@ -1687,7 +1687,7 @@ public class MySqlStatementParser extends SQLStatementParser {
             lexer.nextToken();
             accept(Token.SET);
 
-            if (lexer.token() != Token.LITERAL_CHARS) {
+            if (lexer.token() != Token.LITERAL_CHARS && lexer.token() != Token.IDENTIFIER) {
                 throw new ParserException("syntax error, illegal charset");
             }
 
@@ -1697,19 +1697,68 @@ public class MySqlStatementParser extends SQLStatementParser {
         }
 
         if (identifierEquals("FIELDS") || identifierEquals("COLUMNS")) {
-            throw new ParserException("TODO");
+            lexer.nextToken();
+            for (;;) {
+                if (identifierEquals("TERMINATED")) {
+                    lexer.nextToken();
+                    accept(Token.BY);
+                    stmt.setColumnsTerminatedBy((SQLLiteralExpr) exprParser.expr());
+                } else if (identifierEquals("OPTIONALLY") || identifierEquals("ENCLOSED")) {
+                    if (identifierEquals("OPTIONALLY")) {
+                        stmt.setColumnsEnclosedOptionally(true);
+                        lexer.nextToken();
+                    }
+                    acceptIdentifier("ENCLOSED");
+                    accept(Token.BY);
+                    stmt.setColumnsEnclosedBy((SQLLiteralExpr) exprParser.expr());
+                } else if (identifierEquals("ESCAPED")) {
+                    lexer.nextToken();
+                    accept(Token.BY);
+                    stmt.setColumnsEscaped((SQLLiteralExpr) exprParser.expr());
+                } else {
+                    break;
+                }
+            }
         }
 
         if (identifierEquals("LINES")) {
-            throw new ParserException("TODO");
+            lexer.nextToken();
+            for (;;) {
+                if (identifierEquals("STARTING")) {
+                    lexer.nextToken();
+                    accept(Token.BY);
+                    stmt.setLinesStartingBy((SQLLiteralExpr) exprParser.expr());
+                } else if (identifierEquals("TERMINATED")) {
+                    lexer.nextToken();
+                    accept(Token.BY);
+                    stmt.setLinesTerminatedBy((SQLLiteralExpr) exprParser.expr());
+                } else {
+                    break;
+                }
+            }
         }
 
         if (identifierEquals(IGNORE)) {
-            throw new ParserException("TODO");
+            lexer.nextToken();
+            stmt.setIgnoreLinesNumber(exprParser.expr());
+            if (identifierEquals("LINES") || identifierEquals("ROWS")) {
+                lexer.nextToken();
+            } else {
+                throw new ParserException("syntax error, expect LINES or ROWS, actual " + lexer.token());
+            }
+        }
+
+        if (lexer.token() == Token.LPAREN) {
+            lexer.nextToken();
+            if (lexer.token() != Token.RPAREN) {
+                exprParser.exprList(stmt.getColumns());
+            }
+            accept(Token.RPAREN);
         }
 
         if (lexer.token() == Token.SET) {
-            throw new ParserException("TODO");
+            lexer.nextToken();
+            exprParser.exprList(stmt.getSetList());
         }
 
         return stmt;
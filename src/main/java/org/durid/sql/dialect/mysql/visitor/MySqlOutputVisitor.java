@@ -919,6 +919,18 @@ public class MySqlOutputVisitor extends SQLASTOutputVisitor implements MySqlASTV
             }
         }
 
+        if (x.getIgnoreLinesNumber() != null) {
+            print(" IGNORE ");
+            x.getIgnoreLinesNumber().accept(this);
+            print(" LINES");
+        }
+
+        if (x.getColumns().size() != 0) {
+            print(" (");
+            printAndAccept(x.getColumns(), ", ");
+            print(")");
+        }
+
         if (x.getSetList().size() != 0) {
             print(" SET ");
             printAndAccept(x.getSetList(), ", ");
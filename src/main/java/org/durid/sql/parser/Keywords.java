@@ -25,6 +25,16 @@ public class Keywords {
 
     private final Map<String, Token> keywords;
 
+    /*
+     * perfect hash of the keywords, every keyword has a slot of its own so a lookup is one case insensitive hash of
+     * the input chars and one compare, without creating a string
+     */
+    private int                      seed;
+    private int                      mask;
+    private String[]                 upperNames;
+    private String[]                 lowerNames;
+    private Token[]                  tokens;
+
     public final static Keywords     DEFAULT_KEYWORDS;
 
     static {
@@ -123,11 +133,108 @@ public class Keywords {
 
     public Keywords(Map<String, Token> keywords){
         this.keywords = keywords;
+
+        int size = 16;
+        while (size < keywords.size() * 4) {
+            size <<= 1;
+        }
+        for (;;) {
+            for (int seed = 1; seed <= 256; seed++) {
+                if (build(size, seed)) {
+                    return;
+                }
+            }
+            size <<= 1;
+        }
+    }
+
+    private boolean build(int size, int seed) {
+        String[] upperNames = new String[size];
+        String[] lowerNames = new String[size];
+        Token[] tokens = new Token[size];
+        for (Map.Entry<String, Token> entry : keywords.entrySet()) {
+            String name = entry.getKey().toUpperCase();
+            int slot = hash(seed, name, 0, name.length()) & (size - 1);
+            if (tokens[slot] != null) {
+                return false;
+            }
+            upperNames[slot] = name;
+            lowerNames[slot] = name.toLowerCase();
+            tokens[slot] = entry.getValue();
+        }
+
+        this.seed = seed;
+        this.mask = size - 1;
+        this.upperNames = upperNames;
+        this.lowerNames = lowerNames;
+        this.tokens = tokens;
+        return true;
+    }
+
+    private static int hash(int seed, String text, int offset, int length) {
+        int h = seed * 0x9E3779B9;
+        for (int i = offset, end = offset + length; i < end; ++i) {
+            char ch = text.charAt(i);
+            if (ch >= 'a' && ch <= 'z') {
+                ch -= 32;
+            }
+            h = (h ^ ch) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(String name, String text, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            char ch = text.charAt(offset + i);
+            if (ch >= 'a' && ch <= 'z') {
+                ch -= 32;
+            }
+            if (ch != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return slot of the keyword spelled by text[offset, offset + length), ignoring case, -1 if it is not a keyword
+     */
+    public int indexOf(String text, int offset, int length) {
+        int slot = hash(seed, text, offset, length) & mask;
+        String name = upperNames[slot];
+        if (name == null || !equalsIgnoreCase(name, text, offset, length)) {
+            return -1;
+        }
+        return slot;
+    }
+
+    public Token getToken(int index) {
+        return tokens[index];
+    }
+
+    /**
+     * @return the keyword as it is spelled in the text, the shared constant if it is all upper or all lower case
+     */
+    public String getName(int index, String text, int offset, int length) {
+        if (text.regionMatches(offset, upperNames[index], 0, length)) {
+            return upperNames[index];
+        }
+        if (text.regionMatches(offset, lowerNames[index], 0, length)) {
+            return lowerNames[index];
+        }
+        return text.substring(offset, offset + length);
+    }
+
+    public Token getKeyword(String text, int offset, int length) {
+        int index = indexOf(text, offset, length);
+        return index == -1 ? null : tokens[index];
     }
 
     public Token getKeyword(String key) {
-        key = key.toUpperCase();
-        return keywords.get(key);
+        return getKeyword(key, 0, key.length());
     }
 
     public Map<String, Token> getKeywords() {
@@ -701,12 +701,21 @@ public class Lexer {
 
         this.ch = charAt(pos);
 
-        stringVal = addSymbol();
-        Token tok = keywods.getKeyword(stringVal);
-        if (tok != null) {
-            token = tok;
+        scanKeyword();
+    }
+
+    /**
+     * Resolve the identifier text[mark, mark + bufPos) without creating a string for keywords or for identifiers which
+     * were seen before.
+     */
+    protected void scanKeyword() {
+        int index = keywods.indexOf(text, mark, bufPos);
+        if (index != -1) {
+            token = keywods.getToken(index);
+            stringVal = keywods.getName(index, text, mark, bufPos);
         } else {
             token = Token.IDENTIFIER;
+            stringVal = SymbolTable.GLOBAL.addSymbol(text, mark, bufPos);
         }
     }
 
@@ -934,6 +943,6 @@ public class Lexer {
     }
 
     public BigDecimal decimalValue() {
-        return new BigDecimal(text.toCharArray(), mark, bufPos);
+        return new BigDecimal(subString(mark, bufPos));
     }
 }
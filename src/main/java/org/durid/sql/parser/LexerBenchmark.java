@@ -0,0 +1,108 @@
+/*
+ * Copyright 1999-2011 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.durid.sql.parser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.durid.sql.dialect.mysql.parser.MySqlLexer;
+
+/**
+ * Compares the keyword lookup of the lexer with the former one, which created a substring for every identifier and
+ * upper cased it to look it up in a HashMap. The corpus is made of the statements the proxy receives from JDBC
+ * drivers, GUI clients and the es4sql users.
+ * 
+ * <pre>
+ * java -cp elasticsql.jar:lib/* org.durid.sql.parser.LexerBenchmark [iterations]
+ * </pre>
+ */
+public class LexerBenchmark {
+
+    private final static String[] CORPUS = {
+            "select * from person where title='Mr' order by grade",
+            "SELECT @@session.auto_increment_increment AS auto_increment_increment, @@character_set_client AS character_set_client, @@character_set_connection AS character_set_connection, @@character_set_results AS character_set_results, @@collation_server AS collation_server, @@init_connect AS init_connect, @@interactive_timeout AS interactive_timeout, @@license AS license, @@lower_case_table_names AS lower_case_table_names, @@max_allowed_packet AS max_allowed_packet, @@net_write_timeout AS net_write_timeout, @@query_cache_size AS query_cache_size, @@sql_mode AS sql_mode, @@system_time_zone AS system_time_zone, @@time_zone AS time_zone, @@tx_isolation AS tx_isolation, @@wait_timeout AS wait_timeout",
+            "SELECT TABLE_NAME, TABLE_TYPE, TABLE_COMMENT FROM information_schema.TABLES WHERE TABLE_SCHEMA = 'elasticsearch' ORDER BY TABLE_NAME",
+            "select count(*), avg(age), max(balance) from bank where gender = 'M' and age between 20 and 40 group by state, city order by count(*) desc limit 10",
+            "SELECT firstname, lastname, address FROM bank/account WHERE (age > 30 OR balance >= 10000) AND state IN ('CA', 'NY', 'TX', 'WA') AND lastname LIKE 'Ba%' LIMIT 100",
+            "select date_histogram(field='@timestamp', interval='1h', alias='hour'), count(*) from logs-2015.01.07 where @timestamp >= '2015-01-07T00:00:00' and status is not null group by date_histogram(field='@timestamp', interval='1h', alias='hour')",
+            "select * from person where fulltext(address, 'Wuhu') and not (score < 60) order by score desc, name asc",
+            "SHOW FULL COLUMNS FROM `account` FROM `bank` LIKE '%'",
+            "Select Name, Email, Created From Users Where Status = 'active' And Deleted Is Null Order By Created Desc",
+            "SELECT COUNT(DISTINCT user_id) AS users, SUM(bytes) AS traffic FROM access_log WHERE method = 'GET' AND response <> 404 GROUP BY host HAVING COUNT(*) > 100" };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        for (int round = 0; round < 3; round++) {
+            run("legacy", true, iterations, round == 2);
+            run("perfect hash", false, iterations, round == 2);
+        }
+    }
+
+    private static void run(String name, boolean legacy, int iterations, boolean report) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocated = allocatedBytes(threads);
+        long start = System.nanoTime();
+        long tokens = 0;
+        for (int i = 0; i < iterations; i++) {
+            String sql = CORPUS[i % CORPUS.length];
+            Lexer lexer = legacy ? new LegacyLexer(sql) : new MySqlLexer(sql);
+            for (;;) {
+                lexer.nextToken();
+                if (lexer.token() == Token.EOF) {
+                    break;
+                }
+                tokens++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes(threads) - allocated;
+
+        if (report) {
+            System.out.println(String.format("%-14s %8d ns/statement %8d ns/1000 tokens %8d bytes/statement", name,
+                                             elapsed / iterations, elapsed * 1000 / tokens,
+                                             allocated < 0 ? -1 : allocated / iterations));
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * The keyword lookup as it was before the perfect hash
+     */
+    private static class LegacyLexer extends MySqlLexer {
+
+        public LegacyLexer(String input){
+            super(input);
+        }
+
+        @Override
+        protected void scanKeyword() {
+            stringVal = subString(mark, bufPos);
+            Token tok = keywods.getKeywords().get(stringVal.toUpperCase());
+            if (tok != null) {
+                token = tok;
+            } else {
+                token = Token.IDENTIFIER;
+            }
+        }
+    }
+}
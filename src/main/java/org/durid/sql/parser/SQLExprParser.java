@@ -17,6 +17,7 @@ package org.durid.sql.parser;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -599,6 +600,88 @@ public class SQLExprParser extends SQLParser {
         }
     }
 
+    /**
+     * Parse the values of an IN list. A list made only of integer literals or only of string literals is kept in an
+     * array instead of one SQLExpr per value, as BI tools send lists of tens of thousands of ids. Any other value turns
+     * the list back into SQLExpr and the rest of it is parsed as usual.
+     */
+    public final void inList(SQLInListExpr inListExpr) {
+        long[] longValues = null;
+        String[] charValues = null;
+        int size = 0;
+        SQLExpr pending = null;
+
+        for (;;) {
+            if (lexer.token() == Token.LITERAL_INT && charValues == null) {
+                Number value = lexer.integerValue();
+                if (value instanceof BigInteger) {
+                    break;
+                }
+                lexer.nextToken();
+                if (lexer.token() != Token.COMMA && lexer.token() != Token.RPAREN) {
+                    pending = new SQLIntegerExpr(value);
+                    break;
+                }
+                if (longValues == null) {
+                    longValues = new long[16];
+                } else if (size == longValues.length) {
+                    longValues = Arrays.copyOf(longValues, size * 2);
+                }
+                longValues[size++] = value.longValue();
+            } else if (lexer.token() == Token.LITERAL_CHARS && longValues == null) {
+                String value = lexer.stringVal();
+                lexer.nextToken();
+                if (lexer.token() != Token.COMMA && lexer.token() != Token.RPAREN) {
+                    pending = new SQLCharExpr(value);
+                    break;
+                }
+                if (charValues == null) {
+                    charValues = new String[16];
+                } else if (size == charValues.length) {
+                    charValues = Arrays.copyOf(charValues, size * 2);
+                }
+                charValues[size++] = value;
+            } else {
+                break;
+            }
+
+            if (lexer.token() == Token.RPAREN) {
+                if (longValues != null) {
+                    inListExpr.setLongValues(Arrays.copyOf(longValues, size));
+                } else {
+                    inListExpr.setCharValues(Arrays.copyOf(charValues, size));
+                }
+                return;
+            }
+            lexer.nextToken();
+        }
+
+        List<SQLExpr> targetList = inListExpr.getTargetList();
+        for (int i = 0; i < size; ++i) {
+            if (longValues != null) {
+                long value = longValues[i];
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    targetList.add(new SQLIntegerExpr((int) value));
+                } else {
+                    targetList.add(new SQLIntegerExpr(value));
+                }
+            } else {
+                targetList.add(new SQLCharExpr(charValues[i]));
+            }
+        }
+
+        if (pending == null) {
+            exprList(targetList);
+            return;
+        }
+
+        targetList.add(exprRest(primaryRest(pending)));
+        if (lexer.token() == Token.COMMA) {
+            lexer.nextToken();
+            exprList(targetList);
+        }
+    }
+
     public final void exprList(Collection<SQLExpr> exprCol) {
         if (lexer.token() == Token.RPAREN || lexer.token() == Token.RBRACKET) {
             return;
@@ -838,13 +921,13 @@ public class SQLExprParser extends SQLParser {
             accept(Token.LPAREN);
 
             SQLInListExpr inListExpr = new SQLInListExpr(expr);
-            exprList(inListExpr.getTargetList());
+            inList(inListExpr);
             expr = inListExpr;
 
             accept(Token.RPAREN);
             expr = inListExpr;
 
-            if (inListExpr.getTargetList().size() == 1) {
+            if (!inListExpr.isLiteralList() && inListExpr.getTargetList().size() == 1) {
                 SQLExpr targetExpr = inListExpr.getTargetList().get(0);
                 if (targetExpr instanceof SQLQueryExpr) {
                     SQLInSubQueryExpr inSubQueryExpr = new SQLInSubQueryExpr();
@@ -1088,12 +1171,12 @@ public class SQLExprParser extends SQLParser {
             accept(Token.LPAREN);
 
             SQLInListExpr inListExpr = new SQLInListExpr(expr, true);
-            exprList(inListExpr.getTargetList());
+            inList(inListExpr);
             expr = inListExpr;
 
             accept(Token.RPAREN);
 
-            if (inListExpr.getTargetList().size() == 1) {
+            if (!inListExpr.isLiteralList() && inListExpr.getTargetList().size() == 1) {
                 SQLExpr targetExpr = inListExpr.getTargetList().get(0);
                 if (targetExpr instanceof SQLQueryExpr) {
                     SQLInSubQueryExpr inSubQueryExpr = new SQLInSubQueryExpr();
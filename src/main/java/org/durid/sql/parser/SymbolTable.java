@@ -0,0 +1,60 @@
+/*
+ * Copyright 1999-2011 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.durid.sql.parser;
+
+/**
+ * Identifiers seen by the lexers. An identifier is added the first time it is scanned, later scans of the same chars
+ * get the same string back instead of a new substring. A slot holds one symbol, a colliding identifier replaces it.
+ */
+public class SymbolTable {
+
+    public final static SymbolTable GLOBAL     = new SymbolTable(4096);
+
+    private final static int        MAX_LENGTH = 64;
+
+    private final String[]          symbols;
+    private final int               mask;
+
+    public SymbolTable(int size){
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        this.symbols = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public String addSymbol(String text, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return text.substring(offset, offset + length);
+        }
+
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; ++i) {
+            h = 31 * h + text.charAt(i);
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+
+        String symbol = symbols[slot];
+        if (symbol != null && symbol.length() == length && text.regionMatches(offset, symbol, 0, length)) {
+            return symbol;
+        }
+
+        symbol = text.substring(offset, offset + length);
+        symbols[slot] = symbol;
+        return symbol;
+    }
+}
@@ -0,0 +1,84 @@
+package org.nlpcn.es4sql;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.OrFilterBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.nlpcn.es4sql.query.maker.FilterMaker;
+
+/**
+ * Time to parse a query with a large IN list and to build its filter, from 100
+ * to 100k values, compared with the former filter made of one match_phrase per
+ * value.
+ * 
+ * <pre>
+ * java -cp elasticsql.jar:lib/* org.nlpcn.es4sql.InListBenchmark
+ * </pre>
+ */
+public class InListBenchmark {
+
+	private static final int[] SIZES = { 100, 1000, 10000, 100000 };
+
+	public static void main(String[] args) throws Exception {
+		for (int round = 0; round < 3; round++) {
+			for (int size : SIZES) {
+				run(size, round == 2);
+			}
+		}
+	}
+
+	private static void run(int size, boolean report) throws Exception {
+		StringBuilder sql = new StringBuilder("select * from orders where customer_id in (");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			// every tenth id is sent twice, as BI tools do
+			sql.append(1000000 + (i % 10 == 9 ? i - 1 : i));
+		}
+		sql.append(")");
+		int iterations = Math.max(1, 200000 / size);
+
+		long parse = 0;
+		long filter = 0;
+		long legacy = 0;
+		int bytes = 0;
+		int legacyBytes = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			Select select = new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr(sql.toString()));
+			parse += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			bytes = length(FilterMaker.explan(select.getWhere()));
+			filter += System.nanoTime() - start;
+
+			Condition condition = (Condition) select.getWhere().getWheres().get(0);
+			start = System.nanoTime();
+			OrFilterBuilder orFilter = FilterBuilders.orFilter();
+			for (Object value : (Object[]) condition.getValue()) {
+				orFilter.add(FilterBuilders.queryFilter(QueryBuilders.matchPhraseQuery(condition.getName(), value)));
+			}
+			legacyBytes = length(orFilter);
+			legacy += System.nanoTime() - start;
+		}
+
+		if (report) {
+			System.out.println(String.format("%6d values: parse %8d us, terms filter %8d us %8d bytes, match_phrase filter %8d us %9d bytes",
+					size, parse / iterations / 1000, filter / iterations / 1000, bytes, legacy / iterations / 1000, legacyBytes));
+		}
+	}
+
+	private static int length(ToXContent filter) throws Exception {
+		XContentBuilder builder = XContentFactory.jsonBuilder();
+		filter.toXContent(builder, ToXContent.EMPTY_PARAMS);
+		return builder.bytes().length();
+	}
+}
@@ -20,6 +20,9 @@ public class Condition extends Where {
 	private Object value;
 
 	private OPEAR opear;
+
+	/** the mapping matches the field on its whole value, it is not analyzed or not a string */
+	private boolean exact = false;
 	
 	public Condition(CONN conn, String name, OPEAR oper, Object value) throws SqlParseException {
 		super(conn);
@@ -117,6 +120,14 @@ public class Condition extends Where {
 		this.opear = opear;
 	}
 
+	public boolean isExact() {
+		return exact;
+	}
+
+	public void setExact(boolean exact) {
+		this.exact = exact;
+	}
+
 	@Override
 	public String toString() {
 
@@ -0,0 +1,63 @@
+package org.nlpcn.es4sql.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL Insert or Replace statement. Every row of VALUES, or of the SELECT,
+ * becomes a document, the _id, _routing and _parent columns are the metadata
+ * of the document.
+ */
+public class Insert extends Query {
+
+	public static final String ID = "_id";
+	public static final String ROUTING = "_routing";
+	public static final String PARENT = "_parent";
+
+	private boolean replace = false;
+	private boolean ignore = false;
+	private List<String> columns = new ArrayList<>();
+	private List<Object[]> values = new ArrayList<>();
+	private Select select;
+
+	/**
+	 * @return true for REPLACE, a document with the same _id is overwritten
+	 */
+	public boolean isReplace() {
+		return replace;
+	}
+
+	public void setReplace(boolean replace) {
+		this.replace = replace;
+	}
+
+	/**
+	 * @return true for INSERT IGNORE, rows which can not be written are skipped
+	 */
+	public boolean isIgnore() {
+		return ignore;
+	}
+
+	public void setIgnore(boolean ignore) {
+		this.ignore = ignore;
+	}
+
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	public List<Object[]> getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the SELECT of INSERT ... SELECT, null for VALUES
+	 */
+	public Select getSelect() {
+		return select;
+	}
+
+	public void setSelect(Select select) {
+		this.select = select;
+	}
+}
@@ -0,0 +1,145 @@
+package org.nlpcn.es4sql.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL LOAD DATA statement. Every line of the file becomes a document, the
+ * fields of a line are read with the FIELDS and LINES options, in the order
+ * of the field list. A field named @var is not written, SET may copy it to a
+ * column.
+ */
+public class LoadData extends Insert {
+
+	private String fileName;
+	private boolean local = false;
+	private String charset;
+	private String fieldsTerminatedBy = "\t";
+	private String enclosedBy = "";
+	private boolean optionallyEnclosed = false;
+	private String escapedBy = "\\";
+	private String linesStartingBy = "";
+	private String linesTerminatedBy = "\n";
+	private long ignoreLines = 0;
+	private List<String> fields = new ArrayList<>();
+	private Map<String, String> variables = new LinkedHashMap<>();
+	private Map<String, Object> constants = new LinkedHashMap<>();
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	/**
+	 * @return true for LOAD DATA LOCAL, the client sends the file
+	 */
+	public boolean isLocal() {
+		return local;
+	}
+
+	public void setLocal(boolean local) {
+		this.local = local;
+	}
+
+	/**
+	 * @return character set of the file, null for the one of the connection
+	 */
+	public String getCharset() {
+		return charset;
+	}
+
+	public void setCharset(String charset) {
+		this.charset = charset;
+	}
+
+	public String getFieldsTerminatedBy() {
+		return fieldsTerminatedBy;
+	}
+
+	public void setFieldsTerminatedBy(String fieldsTerminatedBy) {
+		this.fieldsTerminatedBy = fieldsTerminatedBy;
+	}
+
+	/**
+	 * @return quote of the fields, empty if fields are not quoted
+	 */
+	public String getEnclosedBy() {
+		return enclosedBy;
+	}
+
+	public void setEnclosedBy(String enclosedBy) {
+		this.enclosedBy = enclosedBy;
+	}
+
+	public boolean isOptionallyEnclosed() {
+		return optionallyEnclosed;
+	}
+
+	public void setOptionallyEnclosed(boolean optionallyEnclosed) {
+		this.optionallyEnclosed = optionallyEnclosed;
+	}
+
+	/**
+	 * @return escape character, empty if there is none
+	 */
+	public String getEscapedBy() {
+		return escapedBy;
+	}
+
+	public void setEscapedBy(String escapedBy) {
+		this.escapedBy = escapedBy;
+	}
+
+	public String getLinesStartingBy() {
+		return linesStartingBy;
+	}
+
+	public void setLinesStartingBy(String linesStartingBy) {
+		this.linesStartingBy = linesStartingBy;
+	}
+
+	public String getLinesTerminatedBy() {
+		return linesTerminatedBy;
+	}
+
+	public void setLinesTerminatedBy(String linesTerminatedBy) {
+		this.linesTerminatedBy = linesTerminatedBy;
+	}
+
+	/**
+	 * @return number of lines skipped at the start of the file
+	 */
+	public long getIgnoreLines() {
+		return ignoreLines;
+	}
+
+	public void setIgnoreLines(long ignoreLines) {
+		this.ignoreLines = ignoreLines;
+	}
+
+	/**
+	 * @return columns and @variables the fields of a line are read into, empty for the columns of the table
+	 */
+	public List<String> getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return SET column = @variable
+	 */
+	public Map<String, String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @return SET column = literal
+	 */
+	public Map<String, Object> getConstants() {
+		return constants;
+	}
+}
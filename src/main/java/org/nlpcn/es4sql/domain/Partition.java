@@ -0,0 +1,267 @@
+package org.nlpcn.es4sql.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.durid.sql.ast.SQLExpr;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.joda.time.DateTimeZone;
+import org.elasticsearch.common.joda.time.format.DateTimeFormat;
+import org.elasticsearch.common.joda.time.format.DateTimeFormatter;
+import org.nlpcn.es4sql.domain.Where.CONN;
+import org.nlpcn.es4sql.exception.SqlParseException;
+
+/**
+ * A time partitioned table, its rows are in one index per day, week or month
+ * of a timestamp column, named table-yyyy.MM.dd, table-xxxx.ww or table-yyyy.MM
+ * in UTC. A row is written to the index of its period, a statement reads the
+ * indices of the periods its where clause can match.
+ */
+public class Partition {
+
+	private static final DateMathParser DATE_PARSER = new DateMathParser(
+			Joda.forPattern("dateOptionalTime||yyyy-MM-dd HH:mm:ss"), TimeUnit.MILLISECONDS);
+
+	public enum Period {
+		DAILY("yyyy.MM.dd"),
+		WEEKLY("xxxx.ww"),
+		MONTHLY("yyyy.MM");
+
+		private final DateTimeFormatter format;
+
+		private Period(String pattern) {
+			this.format = DateTimeFormat.forPattern(pattern).withZoneUTC();
+		}
+
+		/**
+		 * @return start of the period of a time
+		 */
+		public long floor(long time) {
+			DateTime day = new DateTime(time, DateTimeZone.UTC).withTimeAtStartOfDay();
+			switch (this) {
+			case WEEKLY:
+				return day.withDayOfWeek(1).getMillis();
+			case MONTHLY:
+				return day.withDayOfMonth(1).getMillis();
+			default:
+				return day.getMillis();
+			}
+		}
+
+		/**
+		 * @return start of the period after the one starting at start
+		 */
+		public long next(long start) {
+			DateTime time = new DateTime(start, DateTimeZone.UTC);
+			switch (this) {
+			case WEEKLY:
+				return time.plusWeeks(1).getMillis();
+			case MONTHLY:
+				return time.plusMonths(1).getMillis();
+			default:
+				return time.plusDays(1).getMillis();
+			}
+		}
+	}
+
+	private final String table;
+	private final String column;
+	private final Period period;
+
+	public Partition(String table, String column, Period period) {
+		this.table = table;
+		this.column = column;
+		this.period = period;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	public Period getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return wildcard of the indices of every period
+	 */
+	public String pattern() {
+		return table + "-*";
+	}
+
+	public String index(long time) {
+		return table + "-" + period.format.print(time);
+	}
+
+	/**
+	 * Index of a row, by the value of its timestamp column
+	 */
+	public String index(Object value) throws SqlParseException {
+		Long time = time(value, System.currentTimeMillis());
+		if (time == null) {
+			throw new SqlParseException(String.format("Column '%s' of the partitioned table %s must be a time, not %s", column, table, value));
+		}
+		return index(time.longValue());
+	}
+
+	/**
+	 * @return start of the period of an index, null if it is not an index of the table
+	 */
+	public Long start(String index) {
+		if (!index.startsWith(table + "-")) {
+			return null;
+		}
+		try {
+			long time = period.format.parseMillis(index.substring(table.length() + 1));
+			return index(time).equals(index) ? period.floor(time) : null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Indices of the periods the time conditions of the where clause can
+	 * match. An open bound stops at the oldest or newest index there is, a
+	 * range without bounds or of more than max periods reads the wildcard.
+	 *
+	 * @param existing names of the indices of the cluster
+	 */
+	public String[] indices(Where where, Collection<String> existing, long now, int max) {
+		long[] range = {Long.MIN_VALUE, Long.MAX_VALUE};
+		if (where != null) {
+			bounds(where, range, now);
+		}
+		if (range[0] == Long.MIN_VALUE && range[1] == Long.MAX_VALUE) {
+			return new String[] {pattern()};
+		}
+		if (range[0] > range[1]) {
+			// nothing can match, the index of the lower bound answers with no rows
+			return new String[] {index(range[0])};
+		}
+
+		long oldest = Long.MAX_VALUE;
+		long newest = period.floor(now);
+		for (String index : existing) {
+			Long start = start(index);
+			if (start != null) {
+				oldest = Math.min(oldest, start);
+				newest = Math.max(newest, start);
+			}
+		}
+		long from = range[0] == Long.MIN_VALUE ? oldest : period.floor(range[0]);
+		long to = range[1] == Long.MAX_VALUE ? newest : range[1];
+		if (from == Long.MAX_VALUE) {
+			return new String[] {pattern()};
+		}
+
+		List<String> indices = new ArrayList<>();
+		for (long start = from; start <= to; start = period.next(start)) {
+			if (indices.size() >= max) {
+				return new String[] {pattern()};
+			}
+			indices.add(index(start));
+		}
+		if (indices.isEmpty()) {
+			indices.add(index(from));
+		}
+		return indices.toArray(new String[indices.size()]);
+	}
+
+	/**
+	 * Narrow the range with the conditions on the timestamp column the where
+	 * clause requires, as FilterMaker groups them in bool filters
+	 */
+	private void bounds(Where where, long[] range, long now) {
+		while (!(where instanceof Condition) && where.getWheres().size() == 1) {
+			where = where.getWheres().getFirst();
+		}
+		if (where instanceof Condition) {
+			bound((Condition) where, range, now);
+			return;
+		}
+		for (Where sub : where.getWheres()) {
+			// an OR condition is a should of the bool filter, it does not narrow the range
+			if (sub.getConn() == CONN.AND) {
+				bounds(sub, range, now);
+			}
+		}
+	}
+
+	private void bound(Condition condition, long[] range, long now) {
+		if (!column.equals(condition.getName())) {
+			return;
+		}
+		Object value = condition.getValue();
+		switch (condition.getOpear()) {
+		case EQ:
+			lower(range, time(value, now));
+			upper(range, time(value, now));
+			break;
+		case GT:
+		case GTE:
+			lower(range, time(value, now));
+			break;
+		case LT:
+		case LTE:
+			upper(range, time(value, now));
+			break;
+		case BETWEEN:
+			lower(range, time(((Object[]) value)[0], now));
+			upper(range, time(((Object[]) value)[1], now));
+			break;
+		case IN:
+			Long min = null;
+			Long max = null;
+			for (Object item : (Object[]) value) {
+				Long time = time(item, now);
+				if (time == null) {
+					return;
+				}
+				min = min == null ? time : Math.min(min, time);
+				max = max == null ? time : Math.max(max, time);
+			}
+			lower(range, min);
+			upper(range, max);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void lower(long[] range, Long time) {
+		if (time != null) {
+			range[0] = Math.max(range[0], time);
+		}
+	}
+
+	private void upper(long[] range, Long time) {
+		if (time != null) {
+			range[1] = Math.min(range[1], time);
+		}
+	}
+
+	/**
+	 * @return milliseconds of a number or of a date, null if the value is not a time
+	 */
+	private Long time(Object value, long now) {
+		if (value == null || value instanceof SQLExpr) {
+			return null;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		try {
+			return DATE_PARSER.parse(value.toString().trim(), now);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.nlpcn.es4sql.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.elasticsearch.common.joda.time.DateTime;
+import org.elasticsearch.common.joda.time.DateTimeZone;
+import org.nlpcn.es4sql.domain.Partition.Period;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PartitionTest {
+	private static final long NOW = time(2015, 3, 10);
+	private final Partition daily = new Partition("logs", "ts", Period.DAILY);
+	private final Partition weekly = new Partition("logs", "ts", Period.WEEKLY);
+	private final Partition monthly = new Partition("logs", "ts", Period.MONTHLY);
+
+	@Test
+	public void testNaming() throws Exception {
+		assertEquals("logs-2015.03.10", daily.index(NOW));
+		assertEquals("logs-2015.03", monthly.index("2015-03-31 23:59:59"));
+		// the week of a year starts on monday, 2014-12-31 is in the first week of 2015
+		assertEquals("logs-2015.01", weekly.index(time(2014, 12, 31)));
+		assertEquals("logs-2015.11", weekly.index(NOW));
+		assertEquals(Long.valueOf(time(2014, 12, 29)), weekly.start("logs-2015.01"));
+		assertEquals(Long.valueOf(time(2015, 3, 1)), monthly.start("logs-2015.03"));
+		assertNull(daily.start("logs-2015.3.1"));
+		assertNull(daily.start("other-2015.03.01"));
+		assertNull(daily.start("logs-x"));
+	}
+
+	@Test
+	public void testClosedRange() throws Exception {
+		assertIndices(daily.indices(where("ts BETWEEN '2015-03-01' AND '2015-03-03'"), none(), NOW, 10),
+				"logs-2015.03.01", "logs-2015.03.02", "logs-2015.03.03");
+		assertIndices(weekly.indices(where("ts >= '2014-12-25' AND ts < '2015-01-06'"), none(), NOW, 10),
+				"logs-2014.52", "logs-2015.01", "logs-2015.02");
+		assertIndices(monthly.indices(where("ts = '2015-02-14'"), none(), NOW, 10), "logs-2015.02");
+		assertIndices(daily.indices(where("ts IN ('2015-03-02', '2015-03-01')"), none(), NOW, 10),
+				"logs-2015.03.01", "logs-2015.03.02");
+	}
+
+	@Test
+	public void testOpenBounds() throws Exception {
+		List<String> existing = Arrays.asList("logs-2015.03.07", "logs-2015.03.12", "other-2015.01.01", ".kibana");
+		// a lower bound stops at the newest index, or today
+		assertIndices(daily.indices(where("ts > '2015-03-09'"), existing, NOW, 10),
+				"logs-2015.03.09", "logs-2015.03.10", "logs-2015.03.11", "logs-2015.03.12");
+		// an upper bound starts at the oldest index
+		assertIndices(daily.indices(where("ts <= '2015-03-08'"), existing, NOW, 10),
+				"logs-2015.03.07", "logs-2015.03.08");
+		// without an index of the table an upper bound reads the wildcard
+		assertIndices(daily.indices(where("ts <= '2015-03-08'"), none(), NOW, 10), "logs-*");
+	}
+
+	@Test
+	public void testEmptyRange() throws Exception {
+		assertIndices(daily.indices(where("ts > '2015-03-05' AND ts < '2015-03-01'"), none(), NOW, 10), "logs-2015.03.05");
+	}
+
+	@Test
+	public void testMaxIndices() throws Exception {
+		assertEquals(10, daily.indices(where("ts BETWEEN '2015-03-01' AND '2015-03-10'"), none(), NOW, 10).length);
+		// more periods than max read the wildcard
+		assertIndices(daily.indices(where("ts BETWEEN '2015-03-01' AND '2015-03-11'"), none(), NOW, 10), "logs-*");
+	}
+
+	@Test
+	public void testWithoutBounds() throws Exception {
+		assertIndices(daily.indices(null, none(), NOW, 10), "logs-*");
+		assertIndices(daily.indices(where("name = 'x'"), none(), NOW, 10), "logs-*");
+		// an OR condition does not narrow the range
+		assertIndices(daily.indices(where("name = 'x' OR ts = '2015-03-01'"), none(), NOW, 10), "logs-*");
+		assertIndices(daily.indices(where("ts = '2015-03-01' AND (name = 'x' OR ts = '2015-01-01')"), none(), NOW, 10),
+				"logs-2015.03.01");
+	}
+
+	private static long time(int year, int month, int day) {
+		return new DateTime(year, month, day, 0, 0, DateTimeZone.UTC).getMillis();
+	}
+
+	private List<String> none() {
+		return Collections.emptyList();
+	}
+
+	private Where where(String where) throws Exception {
+		return new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr("select * from logs where " + where)).getWhere();
+	}
+
+	private void assertIndices(String[] actual, String... expected) {
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+}
@@ -19,6 +19,7 @@ public class Select extends Query {
 	private List<Order> orderBys = new ArrayList<>();
 	private int offset;
 	private int rowCount = 200;
+	private boolean limited = false;
 
 	public boolean isQuery = false;
 
@@ -37,6 +38,15 @@ public class Select extends Query {
 
 	public void setRowCount(int rowCount) {
 		this.rowCount = rowCount;
+		this.limited = true;
+	}
+
+	/**
+	 * Whether the row count comes from a LIMIT clause
+	 * rather than the default page size.
+	 */
+	public boolean isLimited() {
+		return limited;
 	}
 
 
@@ -0,0 +1,53 @@
+package org.nlpcn.es4sql.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL Update statement. The SET assignments are applied in their order to
+ * every document matching the where clause, an assignment may read the
+ * columns of the document and the columns assigned before it.
+ */
+public class Update extends Query {
+
+	private boolean ignore = false;
+	private Map<String, Object> assignments = new LinkedHashMap<>();
+	private List<Order> orderBys = new ArrayList<>();
+	private int rowCount = -1;
+
+	/**
+	 * @return true for UPDATE IGNORE, rows which can not be written are skipped
+	 */
+	public boolean isIgnore() {
+		return ignore;
+	}
+
+	public void setIgnore(boolean ignore) {
+		this.ignore = ignore;
+	}
+
+	/**
+	 * @return SET column = value, in the order of the statement. A value is a
+	 * literal, or an SQLExpr evaluated against each document.
+	 */
+	public Map<String, Object> getAssignments() {
+		return assignments;
+	}
+
+	public List<Order> getOrderBys() {
+		return orderBys;
+	}
+
+	/**
+	 * @return the LIMIT of the statement, -1 to update every matching row
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public void setRowCount(int rowCount) {
+		this.rowCount = rowCount;
+	}
+}
@@ -0,0 +1,246 @@
+package org.nlpcn.es4sql.parse;
+
+import java.math.BigInteger;
+
+import org.durid.sql.dialect.mysql.parser.MySqlLexer;
+import org.durid.sql.parser.Token;
+import org.nlpcn.es4sql.domain.From;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.exception.SqlParseException;
+
+/**
+ * Read an INSERT or REPLACE ... VALUES statement row by row, without building
+ * its syntax tree. A dump of many megabytes is written while it is read, only
+ * the row being read is kept. The statement is checked with accepts() first,
+ * so that a statement it can not read is not written in part.
+ *
+ * <pre>
+ * if (InsertStreamParser.accepts(sql)) ...
+ * InsertStreamParser parser = new InsertStreamParser(sql);
+ * Insert insert = parser.parseHeader();
+ * Object[] row;
+ * while ((row = parser.next()) != null) {
+ * 	...
+ * }
+ * </pre>
+ */
+public class InsertStreamParser {
+
+	private final MySqlLexer lexer;
+	/** values of the row being read */
+	private Object[] row;
+	private int rows = 0;
+	private boolean end = false;
+
+	public InsertStreamParser(String sql) {
+		this.lexer = new MySqlLexer(sql);
+		this.lexer.nextToken();
+	}
+
+	/**
+	 * Read the whole statement once without keeping its rows, before any of
+	 * them is written
+	 *
+	 * @return false if the statement has a clause or a value this parser does
+	 *         not read, such as ON DUPLICATE KEY UPDATE or an expression, the
+	 *         statement is left to the sql parser
+	 */
+	public static boolean accepts(String sql) {
+		InsertStreamParser parser = new InsertStreamParser(sql);
+		try {
+			parser.parseHeader();
+			while (parser.next() != null) {
+			}
+			return true;
+		} catch (SqlParseException e) {
+			return false;
+		} catch (RuntimeException e) {
+			// an error of the lexer
+			return false;
+		}
+	}
+
+	/**
+	 * Parse the statement up to VALUES
+	 *
+	 * @return the insert, without values
+	 */
+	public Insert parseHeader() throws SqlParseException {
+		Insert insert = new Insert();
+		if (lexer.token() == Token.INSERT) {
+			lexer.nextToken();
+		} else if (isIdentifier("REPLACE")) {
+			insert.setReplace(true);
+			lexer.nextToken();
+		} else {
+			throw error("INSERT or REPLACE");
+		}
+
+		while (isIdentifier("LOW_PRIORITY") || isIdentifier("DELAYED") || isIdentifier("HIGH_PRIORITY") || isIdentifier("IGNORE")) {
+			if (isIdentifier("IGNORE")) {
+				insert.setIgnore(true);
+			}
+			lexer.nextToken();
+		}
+		if (lexer.token() == Token.INTO) {
+			lexer.nextToken();
+		}
+
+		String table = name();
+		while (lexer.token() == Token.DOT) {
+			// a table of another schema, the schema is the cluster
+			lexer.nextToken();
+			table = name();
+		}
+		insert.getFrom().add(new From(table));
+
+		if (lexer.token() == Token.LPAREN) {
+			lexer.nextToken();
+			for (;;) {
+				StringBuilder column = new StringBuilder(name());
+				while (lexer.token() == Token.DOT) {
+					lexer.nextToken();
+					column.append('.').append(name());
+				}
+				insert.getColumns().add(column.toString());
+				if (lexer.token() == Token.COMMA) {
+					lexer.nextToken();
+				} else {
+					accept(Token.RPAREN);
+					break;
+				}
+			}
+		}
+
+		if (lexer.token() != Token.VALUES && !isIdentifier("VALUE")) {
+			throw error("VALUES");
+		}
+		lexer.nextToken();
+		return insert;
+	}
+
+	/**
+	 * @return values of the next row, null at the end of the statement
+	 */
+	public Object[] next() throws SqlParseException {
+		if (end) {
+			return null;
+		}
+
+		accept(Token.LPAREN);
+		int size = 0;
+		for (;;) {
+			if (row == null) {
+				row = new Object[16];
+			} else if (size == row.length) {
+				Object[] values = new Object[size * 2];
+				System.arraycopy(row, 0, values, 0, size);
+				row = values;
+			}
+			row[size++] = value();
+
+			if (lexer.token() == Token.COMMA) {
+				lexer.nextToken();
+			} else {
+				accept(Token.RPAREN);
+				break;
+			}
+		}
+		rows++;
+
+		if (lexer.token() == Token.COMMA) {
+			lexer.nextToken();
+		} else {
+			while (lexer.token() == Token.SEMI) {
+				lexer.nextToken();
+			}
+			if (lexer.token() != Token.EOF) {
+				throw error("end of statement");
+			}
+			end = true;
+		}
+
+		Object[] values = new Object[size];
+		System.arraycopy(row, 0, values, 0, size);
+		return values;
+	}
+
+	/**
+	 * @return number of rows read
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	private Object value() throws SqlParseException {
+		Object value;
+		boolean negative = false;
+		if (lexer.token() == Token.SUB) {
+			negative = true;
+			lexer.nextToken();
+		}
+
+		switch (lexer.token()) {
+		case LITERAL_INT:
+			Number number = lexer.integerValue();
+			if (negative) {
+				number = number instanceof Integer ? (Number) (-number.intValue()) : number instanceof Long ? (Number) (-number.longValue())
+						: (Number) ((BigInteger) number).negate();
+			}
+			value = number;
+			break;
+		case LITERAL_FLOAT:
+			value = negative ? lexer.decimalValue().negate() : lexer.decimalValue();
+			break;
+		case LITERAL_CHARS:
+		case LITERAL_ALIAS:
+			value = negative ? null : lexer.stringVal();
+			break;
+		case NULL:
+			value = null;
+			break;
+		case TRUE:
+			value = Boolean.TRUE;
+			break;
+		case FALSE:
+			value = Boolean.FALSE;
+			break;
+		default:
+			throw error("a literal value");
+		}
+		if (negative && value == null) {
+			throw error("a number");
+		}
+
+		lexer.nextToken();
+		return value;
+	}
+
+	private String name() throws SqlParseException {
+		if (lexer.token() != Token.IDENTIFIER && lexer.token() != Token.LITERAL_ALIAS) {
+			throw error("a name");
+		}
+		String name = lexer.stringVal();
+		lexer.nextToken();
+		if (name.length() > 1 && (name.charAt(0) == '`' || name.charAt(0) == '"')) {
+			name = name.substring(1, name.length() - 1);
+		}
+		return name;
+	}
+
+	private boolean isIdentifier(String text) {
+		return lexer.token() == Token.IDENTIFIER && text.equalsIgnoreCase(lexer.stringVal());
+	}
+
+	private void accept(Token token) throws SqlParseException {
+		if (lexer.token() != token) {
+			throw error(token.name());
+		}
+		lexer.nextToken();
+	}
+
+	private SqlParseException error(String expected) {
+		return new SqlParseException(String.format("syntax error at position %d of row %d, expected %s but was %s",
+				lexer.pos(), rows + 1, expected, lexer.token()));
+	}
+}
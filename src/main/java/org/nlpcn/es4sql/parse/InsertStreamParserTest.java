@@ -0,0 +1,31 @@
+package org.nlpcn.es4sql.parse;
+
+import java.util.Arrays;
+
+import org.nlpcn.es4sql.domain.Insert;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InsertStreamParserTest {
+	@Test
+	public void testRows() throws Exception {
+		InsertStreamParser parser = new InsertStreamParser("INSERT INTO `t` (a, b.c) VALUES (1, 'x'), (-2.5, NULL);");
+		Insert insert = parser.parseHeader();
+		assertEquals("t", insert.getFrom().get(0).getIndex());
+		assertEquals(Arrays.asList("a", "b.c"), insert.getColumns());
+		assertEquals("[1, x]", Arrays.toString(parser.next()));
+		assertEquals("[-2.5, null]", Arrays.toString(parser.next()));
+		assertNull(parser.next());
+		assertEquals(2, parser.getRows());
+	}
+
+	@Test
+	public void testAccepts() {
+		assertTrue(InsertStreamParser.accepts("REPLACE t VALUES (1), (2)"));
+		assertFalse(InsertStreamParser.accepts("INSERT INTO t (a) VALUES (1), (2) ON DUPLICATE KEY UPDATE a = VALUES(a)"));
+		assertFalse(InsertStreamParser.accepts("INSERT INTO t (a) VALUES (1), (NOW())"));
+		assertFalse(InsertStreamParser.accepts("INSERT INTO t (a) VALUES (1), (2"));
+		assertFalse(InsertStreamParser.accepts("INSERT INTO t (a) SELECT a FROM u"));
+		assertFalse(InsertStreamParser.accepts("INSERT INTO t (a) VALUES ('unclosed)"));
+	}
+}
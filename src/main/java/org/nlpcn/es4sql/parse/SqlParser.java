@@ -1,6 +1,9 @@
 package org.nlpcn.es4sql.parse;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.durid.sql.ast.statement.*;
@@ -8,6 +11,7 @@ import org.nlpcn.es4sql.domain.*;
 import org.nlpcn.es4sql.domain.Where.CONN;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.durid.sql.ast.SQLExpr;
+import org.durid.sql.ast.SQLName;
 import org.durid.sql.ast.SQLOrderBy;
 import org.durid.sql.ast.SQLOrderingSpecification;
 import org.durid.sql.ast.expr.SQLBetweenExpr;
@@ -20,8 +24,19 @@ import org.durid.sql.ast.expr.SQLNullExpr;
 import org.durid.sql.ast.expr.SQLNumericLiteralExpr;
 import org.durid.sql.ast.expr.SQLPropertyExpr;
 import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.durid.sql.ast.expr.SQLUnaryExpr;
+import org.durid.sql.ast.expr.SQLUnaryOperator;
+import org.durid.sql.ast.expr.SQLBinaryOperator;
+import org.durid.sql.ast.expr.SQLLiteralExpr;
+import org.durid.sql.ast.expr.SQLVariantRefExpr;
+import org.durid.sql.ast.statement.SQLInsertStatement.ValuesClause;
+import org.durid.sql.dialect.mysql.ast.expr.MySqlBooleanExpr;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlLoadDataInFileStatement;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlReplaceStatement;
 import org.durid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import org.durid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock.Limit;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlUpdateStatement;
 
 /**
  * es sql support
@@ -66,6 +81,190 @@ public class SqlParser {
 		return delete;
 	}
 
+	public Insert parseInsert(MySqlInsertStatement insertStatement) throws SqlParseException {
+		if (!insertStatement.getDuplicateKeyUpdate().isEmpty()) {
+			throw new SqlParseException("INSERT ... ON DUPLICATE KEY UPDATE is not supported");
+		}
+
+		Insert insert = new Insert();
+		insert.setIgnore(insertStatement.isIgnore());
+		findInsert(insert, insertStatement.getTableName(), insertStatement.getColumns(), insertStatement.getValuesList());
+		if (insertStatement.getQuery() != null) {
+			insert.setSelect(parseSelect(new SQLQueryExpr(insertStatement.getQuery())));
+		}
+		return insert;
+	}
+
+	public Insert parseReplace(MySqlReplaceStatement replaceStatement) throws SqlParseException {
+		Insert insert = new Insert();
+		insert.setReplace(true);
+		findInsert(insert, replaceStatement.getTableName(), replaceStatement.getColumns(), replaceStatement.getValuesList());
+		if (replaceStatement.getQuery() != null) {
+			insert.setSelect(parseSelect(replaceStatement.getQuery()));
+		}
+		return insert;
+	}
+
+	/**
+	 * UPDATE of a single table. A literal value is kept as is, any other
+	 * expression is evaluated against each document when it is updated.
+	 */
+	public Update parseUpdate(MySqlUpdateStatement updateStatement) throws SqlParseException {
+		Update update = new Update();
+		update.setIgnore(updateStatement.isIgnore());
+		update.getFrom().addAll(findFrom(updateStatement.getTableSource()));
+		if (update.getFrom().size() > 1) {
+			throw new SqlParseException("UPDATE of multiple tables is not supported");
+		}
+		update.setWhere(findWhere(updateStatement.getWhere()));
+
+		for (SQLUpdateSetItem item : updateStatement.getItems()) {
+			String column = item.getColumn().toString().replace("`", "");
+			if (Insert.ID.equals(column) || Insert.ROUTING.equals(column) || Insert.PARENT.equals(column)) {
+				throw new SqlParseException(String.format("Column %s can not be updated", column));
+			}
+			SQLExpr value = item.getValue();
+			if (value instanceof SQLNumericLiteralExpr || value instanceof SQLCharExpr || value instanceof SQLNullExpr
+					|| value instanceof MySqlBooleanExpr || (value instanceof SQLUnaryExpr
+					&& ((SQLUnaryExpr) value).getOperator() == SQLUnaryOperator.Negative
+					&& ((SQLUnaryExpr) value).getExpr() instanceof SQLNumericLiteralExpr)) {
+				update.getAssignments().put(column, parseLiteral(value));
+			} else {
+				update.getAssignments().put(column, value);
+			}
+		}
+
+		if (updateStatement.getOrderBy() != null) {
+			for (SQLSelectOrderByItem item : updateStatement.getOrderBy().getItems()) {
+				String type = item.getType() == null ? SQLOrderingSpecification.ASC.toString() : item.getType().toString();
+				update.getOrderBys().add(new Order(FieldMaker.makeField(item.getExpr(), null).toString(), type));
+			}
+		}
+		if (updateStatement.getLimit() != null) {
+			if (updateStatement.getLimit().getOffset() != null) {
+				throw new SqlParseException("UPDATE ... LIMIT accepts a row count only");
+			}
+			update.setRowCount(Integer.parseInt(updateStatement.getLimit().getRowCount().toString()));
+		}
+		return update;
+	}
+
+	/**
+	 * LOAD DATA, the columns are resolved when the statement is executed, from
+	 * the field list or the table
+	 */
+	public LoadData parseLoadData(MySqlLoadDataInFileStatement loadStatement) throws SqlParseException {
+		LoadData load = new LoadData();
+		load.getFrom().add(new From(loadStatement.getTableName().toString().replace("`", "")));
+		load.setFileName(text(loadStatement.getFileName()));
+		load.setLocal(loadStatement.isLocal());
+		load.setReplace(loadStatement.isReplicate());
+		// the server can not stop a client sending its file, duplicates are skipped as MySQL does
+		load.setIgnore(loadStatement.isIgnore() || (loadStatement.isLocal() && !loadStatement.isReplicate()));
+		load.setCharset(loadStatement.getCharset());
+		if (loadStatement.getColumnsTerminatedBy() != null) {
+			load.setFieldsTerminatedBy(text(loadStatement.getColumnsTerminatedBy()));
+		}
+		if (loadStatement.getColumnsEnclosedBy() != null) {
+			load.setEnclosedBy(text(loadStatement.getColumnsEnclosedBy()));
+			load.setOptionallyEnclosed(loadStatement.isColumnsEnclosedOptionally());
+		}
+		if (loadStatement.getColumnsEscaped() != null) {
+			load.setEscapedBy(text(loadStatement.getColumnsEscaped()));
+		}
+		if (loadStatement.getLinesStartingBy() != null) {
+			load.setLinesStartingBy(text(loadStatement.getLinesStartingBy()));
+		}
+		if (loadStatement.getLinesTerminatedBy() != null) {
+			load.setLinesTerminatedBy(text(loadStatement.getLinesTerminatedBy()));
+		}
+		if (load.getFieldsTerminatedBy().isEmpty() || load.getLinesTerminatedBy().isEmpty()) {
+			throw new SqlParseException("LOAD DATA of fixed width fields is not supported");
+		}
+		if (load.getEnclosedBy().length() > 1 || load.getEscapedBy().length() > 1) {
+			throw new SqlParseException("ENCLOSED BY and ESCAPED BY must be a single character");
+		}
+		if (loadStatement.getIgnoreLinesNumber() != null) {
+			Object lines = parseLiteral(loadStatement.getIgnoreLinesNumber());
+			if (!(lines instanceof Number)) {
+				throw new SqlParseException("IGNORE expects a number of lines: " + lines);
+			}
+			load.setIgnoreLines(((Number) lines).longValue());
+		}
+
+		for (SQLExpr field : loadStatement.getColumns()) {
+			load.getFields().add(field.toString().replace("`", ""));
+		}
+		for (SQLExpr assignment : loadStatement.getSetList()) {
+			if (!(assignment instanceof SQLBinaryOpExpr) || ((SQLBinaryOpExpr) assignment).getOperator() != SQLBinaryOperator.Equality) {
+				throw new SqlParseException("SET expects column = value: " + assignment);
+			}
+			String column = ((SQLBinaryOpExpr) assignment).getLeft().toString().replace("`", "");
+			SQLExpr value = ((SQLBinaryOpExpr) assignment).getRight();
+			if (value instanceof SQLVariantRefExpr) {
+				load.getVariables().put(column, ((SQLVariantRefExpr) value).getName());
+			} else {
+				load.getConstants().put(column, parseLiteral(value));
+			}
+		}
+		return load;
+	}
+
+	private String text(SQLLiteralExpr expr) throws SqlParseException {
+		if (!(expr instanceof SQLCharExpr)) {
+			throw new SqlParseException("Expected a string: " + expr);
+		}
+		return ((SQLCharExpr) expr).getText();
+	}
+
+	private void findInsert(Insert insert, SQLName tableName, List<SQLExpr> columns, List<ValuesClause> valuesList) throws SqlParseException {
+		insert.getFrom().add(new From(tableName.toString().replace("`", "")));
+		for (SQLExpr column : columns) {
+			insert.getColumns().add(column.toString().replace("`", ""));
+		}
+
+		for (int i = 0; i < valuesList.size(); i++) {
+			List<SQLExpr> exprs = valuesList.get(i).getValues();
+			if (!insert.getColumns().isEmpty() && exprs.size() != insert.getColumns().size()) {
+				throw new SqlParseException(String.format("Column count doesn't match value count at row %d", i + 1));
+			}
+			Object[] row = new Object[exprs.size()];
+			for (int j = 0; j < row.length; j++) {
+				row[j] = parseLiteral(exprs.get(j));
+			}
+			insert.getValues().add(row);
+		}
+	}
+
+	/**
+	 * Value of a column written by INSERT, only literals are accepted
+	 */
+	private Object parseLiteral(SQLExpr expr) throws SqlParseException {
+		if (expr instanceof SQLNumericLiteralExpr) {
+			return ((SQLNumericLiteralExpr) expr).getNumber();
+		} else if (expr instanceof SQLCharExpr) {
+			return ((SQLCharExpr) expr).getText();
+		} else if (expr instanceof SQLNullExpr) {
+			return null;
+		} else if (expr instanceof MySqlBooleanExpr) {
+			return ((MySqlBooleanExpr) expr).getValue();
+		} else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Negative
+				&& ((SQLUnaryExpr) expr).getExpr() instanceof SQLNumericLiteralExpr) {
+			Number number = ((SQLNumericLiteralExpr) ((SQLUnaryExpr) expr).getExpr()).getNumber();
+			if (number instanceof Integer) {
+				return -number.intValue();
+			} else if (number instanceof Long) {
+				return -number.longValue();
+			} else if (number instanceof BigInteger) {
+				return ((BigInteger) number).negate();
+			} else if (number instanceof BigDecimal) {
+				return ((BigDecimal) number).negate();
+			}
+			return -number.doubleValue();
+		}
+		throw new SqlParseException(String.format("Failed to parse value of type %s: %s", expr.getClass().getSimpleName(), expr));
+	}
+
 	private Where findWhere(SQLExpr where) throws SqlParseException {
 		if(where == null) {
 			return null;
@@ -121,7 +320,7 @@ public class SqlParser {
 			where.addWhere(condition);
 		} else if (expr instanceof SQLInListExpr) {
 			SQLInListExpr siExpr = (SQLInListExpr) expr;
-			Condition condition = new Condition(CONN.valueOf(opear), siExpr.getExpr().toString(), siExpr.isNot() ? "NOT IN" : "IN", parseValue(siExpr.getTargetList()));
+			Condition condition = new Condition(CONN.valueOf(opear), siExpr.getExpr().toString(), siExpr.isNot() ? "NOT IN" : "IN", parseInList(siExpr));
 			where.addWhere(condition);
 		} else if (expr instanceof SQLBetweenExpr) {
 			SQLBetweenExpr between = ((SQLBetweenExpr) expr);
@@ -133,6 +332,39 @@ public class SqlParser {
 		}
 	}
 
+	/**
+	 * A literal list is sorted and deduplicated, its values are not turned into SQLExpr
+	 */
+	private Object[] parseInList(SQLInListExpr siExpr) throws SqlParseException {
+		if (siExpr.getLongValues() != null) {
+			long[] values = siExpr.getLongValues().clone();
+			Arrays.sort(values);
+			int size = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (i == 0 || values[i] != values[i - 1]) {
+					values[size++] = values[i];
+				}
+			}
+			Object[] value = new Object[size];
+			for (int i = 0; i < size; i++) {
+				value[i] = values[i] >= Integer.MIN_VALUE && values[i] <= Integer.MAX_VALUE ? (Object) (int) values[i] : (Object) values[i];
+			}
+			return value;
+		}
+		if (siExpr.getCharValues() != null) {
+			String[] values = siExpr.getCharValues().clone();
+			Arrays.sort(values);
+			int size = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (i == 0 || !values[i].equals(values[i - 1])) {
+					values[size++] = values[i];
+				}
+			}
+			return Arrays.copyOf(values, size, Object[].class);
+		}
+		return parseValue(siExpr.getTargetList());
+	}
+
 	private Object[] parseValue(List<SQLExpr> targetList) throws SqlParseException {
 		Object[] value = new Object[targetList.size()];
 		for (int i = 0; i < targetList.size(); i++) {
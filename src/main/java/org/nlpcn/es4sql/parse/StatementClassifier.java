@@ -0,0 +1,101 @@
+package org.nlpcn.es4sql.parse;
+
+/**
+ * Tells what a statement is from its leading keyword, before it is parsed.
+ * Whitespace, comments and parentheses in front of the keyword are skipped, the
+ * content of a MySQL executable comment, opened by /*!40101, is read as part of
+ * the statement. Nothing is allocated but the optimizer hint when it is asked for.
+ */
+public class StatementClassifier {
+
+	public static enum Type {
+		SELECT, INSERT, REPLACE, UPDATE, DELETE, SHOW, SET, USE, EXPLAIN, DESCRIBE, LOAD, CREATE, DROP, ALTER, KILL, ANALYZE, FLUSH, TRANSACTION, UNKNOWN
+	};
+
+	private static final String[] KEYWORDS = { "SELECT", "INSERT", "REPLACE", "UPDATE", "DELETE", "SHOW", "SET", "USE", "EXPLAIN", "DESCRIBE", "DESC",
+			"LOAD", "CREATE", "DROP", "ALTER", "KILL", "ANALYZE", "FLUSH", "RESET", "BEGIN", "START", "COMMIT", "ROLLBACK" };
+	private static final Type[] TYPES = { Type.SELECT, Type.INSERT, Type.REPLACE, Type.UPDATE, Type.DELETE, Type.SHOW, Type.SET, Type.USE, Type.EXPLAIN,
+			Type.DESCRIBE, Type.DESCRIBE, Type.LOAD, Type.CREATE, Type.DROP, Type.ALTER, Type.KILL, Type.ANALYZE, Type.FLUSH, Type.FLUSH,
+			Type.TRANSACTION, Type.TRANSACTION, Type.TRANSACTION, Type.TRANSACTION };
+
+	public static Type classify(String sql) {
+		int start = start(sql);
+		if (start < 0) {
+			return Type.UNKNOWN;
+		}
+		int end = wordEnd(sql, start);
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			String keyword = KEYWORDS[i];
+			if (keyword.length() == end - start && sql.regionMatches(true, start, keyword, 0, keyword.length())) {
+				return TYPES[i];
+			}
+		}
+		return Type.UNKNOWN;
+	}
+
+	/**
+	 * @return offset of the leading keyword, -1 if the statement is empty
+	 */
+	public static int start(String sql) {
+		int i = skip(sql, 0);
+		while (i < sql.length() && sql.charAt(i) == '(') {
+			i = skip(sql, i + 1);
+		}
+		return i < sql.length() ? i : -1;
+	}
+
+	/**
+	 * @return content of the optimizer hint comment, opened by /*+, which follows
+	 *         the leading keyword, null if there is none
+	 */
+	public static String hint(String sql) {
+		int start = start(sql);
+		if (start < 0) {
+			return null;
+		}
+		int i = wordEnd(sql, start);
+		while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+			i++;
+		}
+		if (!sql.startsWith("/*+", i)) {
+			return null;
+		}
+		int end = sql.indexOf("*/", i + 3);
+		return end < 0 ? null : sql.substring(i + 3, end).trim();
+	}
+
+	/**
+	 * Skip whitespace and comments from offset i
+	 */
+	private static int skip(String sql, int i) {
+		int length = sql.length();
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '#' || (c == '-' && sql.startsWith("--", i) && (i + 2 == length || Character.isWhitespace(sql.charAt(i + 2))))) {
+				int end = sql.indexOf('\n', i);
+				i = end < 0 ? length : end + 1;
+			} else if (sql.startsWith("/*!", i)) {
+				// executable comment, its content is part of the statement
+				i += 3;
+				while (i < length && Character.isDigit(sql.charAt(i))) {
+					i++;
+				}
+			} else if (sql.startsWith("/*", i)) {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	private static int wordEnd(String sql, int i) {
+		while (i < sql.length() && Character.isLetter(sql.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,61 @@
+package org.nlpcn.es4sql.parse;
+
+import org.nlpcn.es4sql.parse.StatementClassifier.Type;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class StatementClassifierTest {
+	@Test
+	public void testKeywords() {
+		assertEquals(Type.SELECT, StatementClassifier.classify("select 1"));
+		assertEquals(Type.INSERT, StatementClassifier.classify("INSERT INTO t VALUES (1)"));
+		assertEquals(Type.DESCRIBE, StatementClassifier.classify("desc t"));
+		assertEquals(Type.FLUSH, StatementClassifier.classify("RESET QUERY CACHE"));
+		assertEquals(Type.TRANSACTION, StatementClassifier.classify("commit"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("SELECTED"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("WITH x AS (SELECT 1) SELECT 1"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify(""));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("  /* only a comment */ "));
+	}
+
+	@Test
+	public void testComments() {
+		assertEquals(Type.SELECT, StatementClassifier.classify("\n\t /* a */ # b\n-- c\n--\nSELECT 1"));
+		assertEquals(Type.DELETE, StatementClassifier.classify("/* unclosed */DELETE FROM t"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("/* unclosed SELECT 1"));
+		assertEquals(6, StatementClassifier.start("/**/  SELECT 1"));
+	}
+
+	@Test
+	public void testDoubleDashWithoutSpace() {
+		// -- is a comment only when a space or the end of the statement follows
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("--SELECT 1"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("--1\nSELECT 1"));
+		assertEquals(Type.SELECT, StatementClassifier.classify("-- 1\nSELECT 1"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("--"));
+	}
+
+	@Test
+	public void testExecutableComment() {
+		assertEquals(Type.SET, StatementClassifier.classify("/*!40101 SET NAMES utf8 */"));
+		assertEquals(Type.SET, StatementClassifier.classify("/*!SET NAMES utf8 */"));
+		assertEquals(Type.SELECT, StatementClassifier.classify("/* x */ /*!50001 SELECT 1 */"));
+	}
+
+	@Test
+	public void testParentheses() {
+		assertEquals(Type.SELECT, StatementClassifier.classify("((SELECT a FROM t) UNION (SELECT b FROM u))"));
+		assertEquals(Type.SELECT, StatementClassifier.classify("( /* a */ ( select 1))"));
+		assertEquals(Type.UNKNOWN, StatementClassifier.classify("(("));
+	}
+
+	@Test
+	public void testHint() {
+		assertEquals("MAX_EXECUTION_TIME(1000)", StatementClassifier.hint("SELECT /*+ MAX_EXECUTION_TIME(1000) */ * FROM t"));
+		assertEquals("SQL_NO_CACHE", StatementClassifier.hint("/* a */ (select\n/*+SQL_NO_CACHE*/ 1)"));
+		assertNull(StatementClassifier.hint("SELECT /* MAX_EXECUTION_TIME(1000) */ * FROM t"));
+		assertNull(StatementClassifier.hint("SELECT * FROM t /*+ MAX_EXECUTION_TIME(1000) */"));
+		assertNull(StatementClassifier.hint("SELECT /*+ unclosed"));
+		assertNull(StatementClassifier.hint(""));
+	}
+}
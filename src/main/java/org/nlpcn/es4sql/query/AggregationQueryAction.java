@@ -21,6 +21,7 @@ import org.nlpcn.es4sql.domain.Where;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.query.maker.AggMaker;
 import org.nlpcn.es4sql.query.maker.FilterMaker;
+import org.nlpcn.es4sql.query.maker.Statistics;
 
 /**
  * Transform SQL query to Elasticsearch aggregations query
@@ -30,6 +31,7 @@ public class AggregationQueryAction extends QueryAction {
 	private final Select select;
 	private AggMaker aggMaker = new AggMaker();
 	private SearchRequestBuilder request;
+	private Statistics statistics;
 
 	public AggregationQueryAction(Client client, Select select) {
 		super(client, select);
@@ -43,7 +45,11 @@ public class AggregationQueryAction extends QueryAction {
 		setIndicesAndTypes();
 
 		setWhere(select.getWhere());
+		if (statistics != null) {
+			aggMaker.setStatistics(statistics, select.getWhere());
+		}
 		AggregationBuilder<?> lastAgg = null;
+		TermsBuilder topTerms = null;
 
 		if (select.getGroupBys().size() > 0) {
 			Field field = select.getGroupBys().get(0);
@@ -51,7 +57,9 @@ public class AggregationQueryAction extends QueryAction {
 			
 
 			if (lastAgg != null && lastAgg instanceof TermsBuilder) {
-				((TermsBuilder) lastAgg).size(select.getRowCount());
+				topTerms = (TermsBuilder) lastAgg;
+				topTerms.size(select.getRowCount());
+				aggMaker.tune(topTerms, field.getName(), select.getRowCount(), true);
 			}
 
 			request.addAggregation(lastAgg);
@@ -61,6 +69,7 @@ public class AggregationQueryAction extends QueryAction {
 				AggregationBuilder<?> subAgg = aggMaker.makeGroupAgg(field);
 				if(subAgg instanceof TermsBuilder){
 					((TermsBuilder)subAgg).size(0) ;
+					aggMaker.tune((TermsBuilder) subAgg, field.getName(), 0, false);
 				}
 				
 				lastAgg.subAggregation(subAgg);
@@ -75,6 +84,7 @@ public class AggregationQueryAction extends QueryAction {
 		}
 
 		// add order
+		boolean orderByMetric = false;
 		if (lastAgg != null && select.getOrderBys().size() > 0) {
 			KVValue temp = null;
 			TermsBuilder termsBuilder = null;
@@ -90,17 +100,30 @@ public class AggregationQueryAction extends QueryAction {
 					break;
 				case "FIELD":
 					termsBuilder.order(Terms.Order.aggregation(order.getName(), isASC(order)));
+					orderByMetric = true;
 					break;
 				default:
 					throw new SqlParseException(order.getName() + " can not to order");
 				}
 			}
 		}
+
+		// buckets ordered by a metric need their sub aggregations collected before pruning
+		if (topTerms != null && select.getGroupBys().size() > 1 && !orderByMetric) {
+			aggMaker.partition(topTerms, select.getGroupBys().get(0).getName(), select.getRowCount());
+		}
 		request.setSize(0);
 		request.setSearchType(SearchType.DEFAULT);
 		return request;
 	}
 
+	/**
+	 * Statistics of the index collected by ANALYZE TABLE
+	 */
+	public void setStatistics(Statistics statistics) {
+		this.statistics = statistics;
+	}
+
 	private boolean isASC(Order order) {
 		return "ASC".equals(order.getType());
 	}
@@ -138,7 +161,7 @@ public class AggregationQueryAction extends QueryAction {
 
 
 	/**
-	 * Set indices and types to the search request.
+	 * Set indices, types and routing to the search request.
 	 */
 	private void setIndicesAndTypes() {
 		request.setIndices(query.getIndexArr());
@@ -147,5 +170,13 @@ public class AggregationQueryAction extends QueryAction {
 		if(typeArr != null) {
 			request.setTypes(typeArr);
 		}
+
+		if (indicesOptions != null) {
+			request.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(select.getWhere());
+		if (routing != null) {
+			request.setRouting(routing);
+		}
 	}
 }
@@ -48,7 +48,7 @@ public class DefaultQueryAction extends QueryAction {
 	}
 
 	/**
-	 * Set indices and types to the search request.
+	 * Set indices, types and routing to the search request.
 	 */
 	private void setIndicesAndTypes() {
 		request.setIndices(query.getIndexArr());
@@ -57,6 +57,14 @@ public class DefaultQueryAction extends QueryAction {
 		if(typeArr != null) {
 			request.setTypes(typeArr);
 		}
+
+		if (indicesOptions != null) {
+			request.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(select.getWhere());
+		if (routing != null) {
+			request.setRouting(routing);
+		}
 	}
 
 
@@ -1,19 +1,27 @@
 package org.nlpcn.es4sql.query;
 
 
+import org.elasticsearch.action.count.CountRequestBuilder;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.index.query.BoolFilterBuilder;
-import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
 import org.nlpcn.es4sql.domain.Delete;
-import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Insert;
 import org.nlpcn.es4sql.domain.Where;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.query.maker.FilterMaker;
-import org.nlpcn.es4sql.query.maker.QueryMaker;
 
+/**
+ * Transform a Delete object to a delete by query, or to a scan of the
+ * documents to delete for a delete in bulk requests, and to the count of
+ * these documents which chooses between the two.
+ */
 public class DeleteQueryAction extends QueryAction {
 
 	private final Delete delete;
@@ -30,13 +38,67 @@ public class DeleteQueryAction extends QueryAction {
 		request.setListenerThreaded(false);
 
 		setIndicesAndTypes();
-		setWhere(delete.getWhere());
+		request.setQuery(where(delete.getWhere()));
 		return request;
 	}
 
+	/**
+	 * Count of the documents to delete
+	 */
+	public CountRequestBuilder count() throws SqlParseException {
+		CountRequestBuilder count = client.prepareCount(query.getIndexArr());
+		String[] typeArr = query.getTypeArr();
+		if (typeArr != null) {
+			count.setTypes(typeArr);
+		}
+		if (indicesOptions != null) {
+			count.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(delete.getWhere());
+		if (routing != null) {
+			count.setRouting(routing);
+		}
+		count.setQuery(where(delete.getWhere()));
+		return count;
+	}
+
+	/**
+	 * Scan of the documents to delete, the caller sets the scroll and the page size
+	 */
+	public SearchRequestBuilder scan() throws SqlParseException {
+		SearchRequestBuilder search = client.prepareSearch(query.getIndexArr());
+		search.setListenerThreaded(false);
+		String[] typeArr = query.getTypeArr();
+		if (typeArr != null) {
+			search.setTypes(typeArr);
+		}
+		if (indicesOptions != null) {
+			search.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(delete.getWhere());
+		if (routing != null) {
+			search.setRouting(routing);
+		}
+		search.setQuery(where(delete.getWhere()));
+		search.setSearchType(SearchType.SCAN);
+		search.setFetchSource(false);
+		search.addFields(Insert.ROUTING, Insert.PARENT);
+		return search;
+	}
 
 	/**
-	 * Set indices and types to the delete by query request.
+	 * Delete operation of a document read by the scan
+	 */
+	public DeleteRequest request(SearchHit hit) {
+		DeleteRequest request = new DeleteRequest(hit.getIndex(), hit.getType(), hit.getId());
+		request.routing(routing(hit));
+		request.parent(parent(hit));
+		return request;
+	}
+
+
+	/**
+	 * Set indices, types and routing to the delete by query request.
 	 */
 	private void setIndicesAndTypes() {
 		request.setIndices(query.getIndexArr());
@@ -45,6 +107,14 @@ public class DeleteQueryAction extends QueryAction {
 		if (typeArr != null) {
 			request.setTypes(typeArr);
 		}
+
+		if (indicesOptions != null) {
+			request.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(delete.getWhere());
+		if (routing != null) {
+			request.setRouting(routing);
+		}
 	}
 
 
@@ -55,12 +125,12 @@ public class DeleteQueryAction extends QueryAction {
 	 * @param where the 'WHERE' part of the SQL query.
 	 * @throws SqlParseException
 	 */
-	private void setWhere(Where where) throws SqlParseException {
+	private QueryBuilder where(Where where) throws SqlParseException {
 		if (where != null) {
 			BoolFilterBuilder boolFilter = FilterMaker.explan(where);
-			request.setQuery(QueryBuilders.filteredQuery(null, boolFilter));
+			return QueryBuilders.filteredQuery(null, boolFilter);
 		} else {
-			request.setQuery(QueryBuilders.matchAllQuery());
+			return QueryBuilders.matchAllQuery();
 		}
 	}
 
@@ -4,14 +4,22 @@ package org.nlpcn.es4sql.query;
 import org.durid.sql.SQLUtils;
 import org.durid.sql.ast.expr.SQLQueryExpr;
 import org.durid.sql.ast.statement.SQLDeleteStatement;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlLoadDataInFileStatement;
+import org.durid.sql.dialect.mysql.ast.statement.MySqlUpdateStatement;
+import org.durid.sql.dialect.mysql.parser.MySqlStatementParser;
 import org.durid.sql.parser.SQLParserUtils;
 import org.durid.sql.parser.SQLStatementParser;
 import org.durid.util.JdbcUtils;
 import org.elasticsearch.client.Client;
 import org.nlpcn.es4sql.domain.Delete;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.domain.LoadData;
 import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Update;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.parse.SqlParser;
+import org.nlpcn.es4sql.parse.StatementClassifier;
 
 import java.sql.SQLFeatureNotSupportedException;
 
@@ -25,9 +33,8 @@ public class ESActionFactory {
 	 * @return Query object.
 	 */
 	public static QueryAction create(Client client, String sql) throws SqlParseException, SQLFeatureNotSupportedException {
-		String firstWord = sql.substring(0, sql.indexOf(' '));
-		switch (firstWord.toUpperCase()) {
-			case "SELECT":
+		switch (StatementClassifier.classify(sql)) {
+			case SELECT:
 				SQLQueryExpr sqlExpr = (SQLQueryExpr) SQLUtils.toMySqlExpr(sql);
 				Select select = new SqlParser().parseSelect(sqlExpr);
 
@@ -36,11 +43,28 @@ public class ESActionFactory {
 				} else {
 					return new DefaultQueryAction(client, select);
 				}
-			case "DELETE":
+			case DELETE:
 				SQLStatementParser parser = SQLParserUtils.createSQLStatementParser(sql, JdbcUtils.MYSQL);
 				SQLDeleteStatement deleteStatement = parser.parseDeleteStatement();
 				Delete delete = new SqlParser().parseDelete(deleteStatement);
 				return new DeleteQueryAction(client, delete);
+			case UPDATE:
+				MySqlStatementParser updateParser = new MySqlStatementParser(sql);
+				Update update = new SqlParser().parseUpdate((MySqlUpdateStatement) updateParser.parseUpdateStatement());
+				return new UpdateQueryAction(client, update);
+
+			case INSERT:
+				MySqlStatementParser insertParser = new MySqlStatementParser(sql);
+				Insert insert = new SqlParser().parseInsert((MySqlInsertStatement) insertParser.parseInsert());
+				return new InsertQueryAction(client, insert);
+			case REPLACE:
+				MySqlStatementParser replaceParser = new MySqlStatementParser(sql);
+				Insert replace = new SqlParser().parseReplace(replaceParser.parseReplicate());
+				return new InsertQueryAction(client, replace);
+			case LOAD:
+				MySqlStatementParser loadParser = new MySqlStatementParser(sql);
+				LoadData load = new SqlParser().parseLoadData((MySqlLoadDataInFileStatement) loadParser.parseStatementList().get(0));
+				return new InsertQueryAction(client, load);
 
 			default:
 				throw new SQLFeatureNotSupportedException(String.format("Unsupported query: %s", sql));
@@ -0,0 +1,276 @@
+package org.nlpcn.es4sql.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.durid.sql.ast.SQLExpr;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Condition.OPEAR;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.From;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Order;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.domain.Where.CONN;
+import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.query.maker.DocumentMatcher;
+import org.nlpcn.es4sql.query.maker.RoutingMaker;
+
+/**
+ * Transform a select of documents by their _id to a multi get. A get is sent
+ * to the shard of each id only, and reads the documents not refreshed yet.
+ * The other conditions of the where clause, the order and the limit are
+ * applied by the proxy to the documents read.
+ */
+public class GetQueryAction extends QueryAction {
+
+	private final Select select;
+	private final Object[] ids;
+	private final String routing;
+	/** the where clause without the _id and _routing conditions, null if nothing is left */
+	private final Where residual;
+
+	private GetQueryAction(Client client, Select select, Object[] ids, String routing, Where residual) {
+		super(client, select);
+		this.select = select;
+		this.ids = ids;
+		this.routing = routing;
+		this.residual = residual;
+	}
+
+	/**
+	 * A plain select whose where clause is a conjunction with _id = value or
+	 * _id IN (values). A _routing = value condition routes the gets, or on a
+	 * table routed by a column, a condition on this column with one value.
+	 * The other conditions must be on exact fields, the proxy can not match
+	 * a document as the analyzer of a field does.
+	 *
+	 * @param routingColumn the column the documents are routed by, may be null
+	 * @return null if the select must be executed as a search
+	 */
+	public static GetQueryAction create(Client client, Select select, String routingColumn) {
+		if (select.isAgg || select.isQuery || select.getWhere() == null) {
+			return null;
+		}
+		for (String index : select.getIndexArr()) {
+			// a get reads one index, not a pattern or a list
+			if (index.contains("*") || index.contains(",")) {
+				return null;
+			}
+		}
+		for (Field field : select.getFields()) {
+			if (field instanceof MethodField) {
+				return null;
+			}
+		}
+
+		Where where = select.getWhere();
+		while (!(where instanceof Condition) && where.getWheres().size() == 1) {
+			where = where.getWheres().getFirst();
+		}
+		List<Where> conditions = where instanceof Condition ? Collections.singletonList(where) : where.getWheres();
+		Object[] ids = null;
+		String routing = null;
+		Where residual = Where.newInstance();
+		for (Where condition : conditions) {
+			// an OR condition is a should of the bool filter, it stays in the residual
+			boolean must = conditions.size() == 1 || condition.getConn() == CONN.AND;
+			if (must && ids == null && isId(condition)) {
+				Condition id = (Condition) condition;
+				ids = id.getOpear() == OPEAR.IN ? (Object[]) id.getValue() : new Object[] {id.getValue()};
+			} else if (must && routing == null && isRouting(condition)) {
+				routing = ((Condition) condition).getValue().toString();
+			} else {
+				residual.addWhere(condition);
+			}
+		}
+		if (ids == null || !DocumentMatcher.isSupported(residual) || !isExact(residual)) {
+			return null;
+		}
+		if (routing == null && routingColumn != null) {
+			// without the routing the gets would be sent to the shard of the _id
+			String[] values = RoutingMaker.explan(where, routingColumn);
+			if (values == null || values.length != 1) {
+				return null;
+			}
+			routing = values[0];
+		}
+		GetQueryAction action = new GetQueryAction(client, select, ids, routing, residual.getWheres().isEmpty() ? null : residual);
+		action.setRoutingColumn(routingColumn);
+		return action;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("multi get of %s from %s, routing %s, where %s",
+				Arrays.toString(ids), Arrays.toString(select.getIndexArr()), routing, residual);
+	}
+
+	private static boolean isId(Where where) {
+		if (!(where instanceof Condition) || !Insert.ID.equals(((Condition) where).getName())) {
+			return false;
+		}
+		Condition condition = (Condition) where;
+		if (condition.getOpear() == OPEAR.EQ) {
+			return condition.getValue() != null && !(condition.getValue() instanceof SQLExpr);
+		}
+		if (condition.getOpear() == OPEAR.IN) {
+			for (Object value : (Object[]) condition.getValue()) {
+				if (value == null || value instanceof SQLExpr) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isExact(Where where) {
+		if (where instanceof Condition) {
+			return ((Condition) where).isExact();
+		}
+		for (Where sub : where.getWheres()) {
+			if (!isExact(sub)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isRouting(Where where) {
+		return where instanceof Condition && Insert.ROUTING.equals(((Condition) where).getName())
+				&& ((Condition) where).getOpear() == OPEAR.EQ && ((Condition) where).getValue() != null
+				&& !(((Condition) where).getValue() instanceof SQLExpr);
+	}
+
+	@Override
+	public MultiGetRequestBuilder explain() throws SqlParseException {
+		MultiGetRequestBuilder request = client.prepareMultiGet();
+		request.setListenerThreaded(false);
+		request.setRealtime(true);
+
+		FetchSourceContext source = fetchSource();
+		for (From from : select.getFrom()) {
+			for (Object id : ids) {
+				MultiGetRequest.Item item = new MultiGetRequest.Item(from.getIndex(), from.getType(), id.toString());
+				item.routing(routing);
+				item.fetchSourceContext(source);
+				request.add(item);
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * @return the documents found which match the rest of the where clause, sorted and limited
+	 * @throws ElasticsearchException if a get failed, the index is missing for example
+	 * unless the indices options ignore the unavailable indices
+	 */
+	public List<Map<String, Object>> getBody(MultiGetResponse response) {
+		List<Map<String, Object>> body = new ArrayList<>();
+		String[] fields = fields();
+		for (MultiGetItemResponse item : response.getResponses()) {
+			if (item.isFailed()) {
+				// a multi get does not apply the indices options, a period not written yet is missing
+				if (indicesOptions != null && indicesOptions.ignoreUnavailable() && isMissing(item.getFailure())) {
+					continue;
+				}
+				throw new ElasticsearchException(item.getFailure().getMessage());
+			}
+			if (!item.getResponse().isExists()) {
+				continue;
+			}
+			Map<String, Object> source = item.getResponse().getSourceAsMap();
+			if (source == null) {
+				continue;
+			}
+			if (residual != null && !DocumentMatcher.matches(residual, source)) {
+				continue;
+			}
+			body.add(source);
+		}
+
+		final List<Order> orders = select.getOrderBys();
+		if (!orders.isEmpty()) {
+			Collections.sort(body, new Comparator<Map<String, Object>>() {
+				public int compare(Map<String, Object> a, Map<String, Object> b) {
+					for (Order order : orders) {
+						int c = DocumentMatcher.compare(DocumentMatcher.get(a, order.getName()), DocumentMatcher.get(b, order.getName()));
+						if (c != 0) {
+							return "DESC".equalsIgnoreCase(order.getType()) ? -c : c;
+						}
+					}
+					return 0;
+				}
+			});
+		}
+
+		int from = Math.min(select.getOffset(), body.size());
+		int to = select.getRowCount() < 0 ? body.size() : (int) Math.min((long) from + select.getRowCount(), body.size());
+		body = new ArrayList<>(body.subList(from, to));
+
+		// the fields read for the where clause and the order are not selected
+		if (fields.length > 0 && fetchSource().includes().length > fields.length) {
+			for (int i = 0; i < body.size(); i++) {
+				body.set(i, XContentMapValues.filter(body.get(i), fields, null));
+			}
+		}
+		return body;
+	}
+
+	private static boolean isMissing(MultiGetResponse.Failure failure) {
+		return ("[" + failure.getIndex() + "] missing").equals(failure.getMessage());
+	}
+
+	/**
+	 * Source read from each document: the fields selected and the fields of the where clause and the order
+	 */
+	private FetchSourceContext fetchSource() {
+		String[] fields = fields();
+		if (fields.length == 0) {
+			return new FetchSourceContext(true);
+		}
+		Set<String> includes = new LinkedHashSet<>();
+		Collections.addAll(includes, fields);
+		if (residual != null) {
+			addNames(residual, includes);
+		}
+		for (Order order : select.getOrderBys()) {
+			includes.add(order.getName());
+		}
+		return new FetchSourceContext(includes.toArray(new String[includes.size()]));
+	}
+
+	private String[] fields() {
+		List<String> fields = new ArrayList<>();
+		for (Field field : select.getFields()) {
+			fields.add(field.getName());
+		}
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	private void addNames(Where where, Set<String> names) {
+		if (where instanceof Condition) {
+			names.add(((Condition) where).getName());
+		}
+		for (Where sub : where.getWheres()) {
+			addNames(sub, names);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.nlpcn.es4sql.query;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class GetQueryActionTest {
+	@Test
+	public void testById() throws Exception {
+		assertNotNull(create("select * from t where _id = 'a'"));
+		assertNotNull(create("select * from t where _id IN ('a', 'b') AND _routing = 'r'"));
+		assertNull(create("select * from t where _id = 'a' OR _id = 'b'"));
+		assertNull(create("select * from t where name = 'a'"));
+		assertNull(create("select count(*) from t where _id = 'a'"));
+		assertNull(create("select * from `t*` where _id = 'a'"));
+	}
+
+	@Test
+	public void testResidual() throws Exception {
+		// a condition on an analyzed field is left to a search
+		assertNull(create("select * from t where _id = 'a' AND name = 'x'"));
+		assertNotNull(create("select * from t where _id = 'a' AND name = 'x'", "name"));
+		assertNull(create("select * from t where _id = 'a' AND (name = 'x' OR age = 1)", "name"));
+		assertNotNull(create("select * from t where _id = 'a' AND (name = 'x' OR age = 1)", "name", "age"));
+	}
+
+	@Test
+	public void testRoutingColumn() throws Exception {
+		Select select = select("select * from t where _id = 'a' AND user = 'u'");
+		exact(select.getWhere(), "user");
+		assertNotNull(GetQueryAction.create(null, select, "user"));
+		select = select("select * from t where _id = 'a'");
+		assertNull(GetQueryAction.create(null, select, "user"));
+	}
+
+	@Test
+	public void testMissingIndex() throws Exception {
+		GetQueryAction action = create("select * from `logs-2015.03.10` where _id = 'a'");
+		MultiGetResponse response = new MultiGetResponse(new MultiGetItemResponse[] {
+				new MultiGetItemResponse(null, new MultiGetResponse.Failure("logs-2015.03.10", "log", "a", "[logs-2015.03.10] missing"))});
+		try {
+			action.getBody(response);
+			fail();
+		} catch (ElasticsearchException e) {
+			assertEquals("[logs-2015.03.10] missing", e.getMessage());
+		}
+
+		// a pruned period not created yet has no rows
+		action.setIndicesOptions(IndicesOptions.lenientExpandOpen());
+		assertTrue(action.getBody(response).isEmpty());
+	}
+
+	private GetQueryAction create(String sql, String... exact) throws Exception {
+		Select select = select(sql);
+		if (select.getWhere() != null) {
+			exact(select.getWhere(), exact);
+		}
+		return GetQueryAction.create(null, select, null);
+	}
+
+	private Select select(String sql) throws Exception {
+		return new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr(sql));
+	}
+
+	private void exact(Where where, String... names) {
+		if (where instanceof Condition) {
+			for (String name : names) {
+				if (name.equals(((Condition) where).getName())) {
+					((Condition) where).setExact(true);
+				}
+			}
+		}
+		for (Where sub : where.getWheres()) {
+			exact(sub, names);
+		}
+	}
+}
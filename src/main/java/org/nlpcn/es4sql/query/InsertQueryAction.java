@@ -0,0 +1,228 @@
+package org.nlpcn.es4sql.query;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.SearchHit;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Partition;
+import org.nlpcn.es4sql.exception.SqlParseException;
+
+/**
+ * Transform an Insert object to a bulk request with one index operation per row.
+ * INSERT creates the documents and fails on an existing _id, REPLACE overwrites
+ * them. A row without a _routing value is routed by the routing column of the
+ * table, a row of a time partitioned table goes to the index of its period.
+ * The rows of INSERT ... SELECT are the documents or aggregation rows read by
+ * the select, transformed one at a time.
+ */
+public class InsertQueryAction extends QueryAction {
+
+	private final Insert insert;
+	private String defaultType;
+	private Partition partition;
+
+	public InsertQueryAction(Client client, Insert insert) {
+		super(client, insert);
+		this.insert = insert;
+	}
+
+	/**
+	 * Type of the documents when the table is not named index/type
+	 */
+	public void setDefaultType(String defaultType) {
+		this.defaultType = defaultType;
+	}
+
+	/**
+	 * The table is time partitioned, each row is written to the index of its period
+	 */
+	public void setPartition(Partition partition) {
+		this.partition = partition;
+	}
+
+	@Override
+	public BulkRequestBuilder explain() throws SqlParseException {
+		BulkRequestBuilder bulk = client.prepareBulk();
+		for (int i = 0; i < insert.getValues().size(); i++) {
+			bulk.add(request(insert.getValues().get(i), i + 1));
+		}
+		return bulk;
+	}
+
+	/**
+	 * Index operation of a row, its values are encoded to the JSON source right away
+	 *
+	 * @param row values of the columns
+	 * @param number number of the row in the statement, from 1
+	 */
+	public IndexRequest request(Object[] row, int number) throws SqlParseException {
+		String index = insert.getFrom().get(0).getIndex();
+		String type = insert.getFrom().get(0).getType() != null ? insert.getFrom().get(0).getType() : defaultType;
+		if (type == null) {
+			throw new SqlParseException(String.format("no type for table %s, insert into `%s/type`", index, index));
+		}
+		List<String> columns = insert.getColumns();
+		if (row.length != columns.size()) {
+			throw new SqlParseException(String.format("Column count doesn't match value count at row %d", number));
+		}
+
+		IndexRequest request = new IndexRequest(index, type);
+		Map<String, Object> objects = null;
+		try {
+			XContentBuilder source = XContentFactory.jsonBuilder().startObject();
+			for (int j = 0; j < row.length; j++) {
+				String column = columns.get(j);
+				if (Insert.ID.equals(column)) {
+					request.id(row[j] == null ? null : row[j].toString());
+				} else if (Insert.ROUTING.equals(column)) {
+					request.routing(row[j] == null ? null : row[j].toString());
+				} else if (Insert.PARENT.equals(column)) {
+					request.parent(row[j] == null ? null : row[j].toString());
+				} else if (column.indexOf('.') > 0) {
+					if (objects == null) {
+						objects = new HashMap<>();
+					}
+					put(objects, column, value(row[j]));
+				} else {
+					source.field(column, value(row[j]));
+				}
+			}
+			if (objects != null) {
+				for (Map.Entry<String, Object> object : objects.entrySet()) {
+					source.field(object.getKey(), object.getValue());
+				}
+			}
+			request.source(source.endObject());
+		} catch (IOException e) {
+			throw new SqlParseException(String.format("can not encode row %d: %s", number, e.getMessage()));
+		}
+		if (partition != null) {
+			int time = columns.indexOf(partition.getColumn());
+			request.index(partition.index(time < 0 ? null : value(row[time])));
+		}
+		int routing = routingColumn == null ? -1 : columns.indexOf(routingColumn);
+		if (request.routing() == null && routing >= 0 && row[routing] != null) {
+			request.routing(String.valueOf(value(row[routing])));
+		}
+		request.opType(insert.isReplace() || request.id() == null ? IndexRequest.OpType.INDEX : IndexRequest.OpType.CREATE);
+		return request;
+	}
+
+	/**
+	 * Index operation of a document read by INSERT ... SELECT *, without a
+	 * column list: the document is copied with its id and routing.
+	 */
+	public IndexRequest copy(SearchHit hit) throws SqlParseException {
+		String index = insert.getFrom().get(0).getIndex();
+		String type = insert.getFrom().get(0).getType() != null ? insert.getFrom().get(0).getType() : defaultType;
+		IndexRequest request = new IndexRequest(index, type == null ? hit.getType() : type, hit.getId());
+		request.source(hit.getSource() == null ? Collections.<String, Object>emptyMap() : hit.getSource());
+		if (partition != null) {
+			request.index(partition.index(hit.getSource() == null ? null : get(hit.getSource(), partition.getColumn())));
+		}
+		Object value = routingColumn == null || hit.getSource() == null ? null : get(hit.getSource(), routingColumn);
+		// the table copied to is routed by its column, whatever the routing of the source
+		request.routing(value != null ? String.valueOf(value) : routing(hit));
+		request.parent(parent(hit));
+		request.opType(insert.isReplace() ? IndexRequest.OpType.INDEX : IndexRequest.OpType.CREATE);
+		return request;
+	}
+
+	/**
+	 * Index operation of a document read by INSERT ... SELECT, the values are the
+	 * fields selected, or the fields named by the columns for SELECT *
+	 */
+	public IndexRequest request(SearchHit hit, int number) throws SqlParseException {
+		Map<String, Object> source = hit.getSource() == null ? Collections.<String, Object>emptyMap() : hit.getSource();
+		List<String> names = getSelected();
+		Object[] row = new Object[names.size()];
+		for (int i = 0; i < row.length; i++) {
+			String name = names.get(i);
+			row[i] = Insert.ID.equals(name) ? hit.getId() : get(source, name);
+		}
+		return request(row, number);
+	}
+
+	/**
+	 * Index operation of a row of an aggregation read by INSERT ... SELECT
+	 */
+	public IndexRequest request(Map<String, Object> values, int number) throws SqlParseException {
+		List<String> names = getSelected();
+		Object[] row = new Object[names.size()];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = values.get(names.get(i));
+		}
+		return request(row, number);
+	}
+
+	/**
+	 * @return names of the values of INSERT ... SELECT, in the order of the columns
+	 */
+	public List<String> getSelected() {
+		List<Field> fields = insert.getSelect().getFields();
+		if (fields.isEmpty()) {
+			return insert.getColumns();
+		}
+		List<String> names = new ArrayList<>();
+		for (Field field : fields) {
+			names.add(field instanceof MethodField ? field.getAlias() : field.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Value of a field of a document, a dotted column is a field of an object
+	 */
+	@SuppressWarnings("unchecked")
+	private Object get(Map<String, Object> source, String column) {
+		if (source.containsKey(column)) {
+			return source.get(column);
+		}
+		int dot = column.indexOf('.');
+		if (dot < 0) {
+			return null;
+		}
+		Object object = source.get(column.substring(0, dot));
+		return object instanceof Map ? get((Map<String, Object>) object, column.substring(dot + 1)) : null;
+	}
+
+	/**
+	 * A decimal literal is encoded as a string by XContent, elasticsearch stores it as a double anyway
+	 */
+	private Object value(Object value) {
+		return value instanceof BigDecimal ? ((BigDecimal) value).doubleValue() : value;
+	}
+
+	/**
+	 * A dotted column is a field of an object
+	 */
+	@SuppressWarnings("unchecked")
+	private void put(Map<String, Object> source, String column, Object value) {
+		int dot = column.indexOf('.');
+		if (dot < 0) {
+			source.put(column, value);
+			return;
+		}
+
+		String name = column.substring(0, dot);
+		Object object = source.get(name);
+		if (!(object instanceof Map)) {
+			object = new HashMap<String, Object>();
+			source.put(name, object);
+		}
+		put((Map<String, Object>) object, column.substring(dot + 1), value);
+	}
+}
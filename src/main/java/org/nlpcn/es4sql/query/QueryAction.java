@@ -2,10 +2,16 @@ package org.nlpcn.es4sql.query;
 
 import org.elasticsearch.action.ActionRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.nlpcn.es4sql.domain.Insert;
 import org.nlpcn.es4sql.domain.Query;
 import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.domain.Where;
 import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.query.maker.RoutingMaker;
 
 /**
  * Abstract class. used to transform Select object (Represents SQL query) to
@@ -17,6 +23,12 @@ public abstract class QueryAction {
 
 	protected Client client;
 
+	/** column the documents of the tables are routed by, null if they are not */
+	protected String routingColumn;
+
+	/** how the indices are resolved, null for the default */
+	protected IndicesOptions indicesOptions;
+
 
 	public QueryAction(Client client, Query query) {
 		this.client = client;
@@ -24,6 +36,71 @@ public abstract class QueryAction {
 	}
 
 
+	/**
+	 * Get the parsed query this action was created from.
+	 * @return Select or Delete object
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+
+	public String getRoutingColumn() {
+		return routingColumn;
+	}
+
+
+	/**
+	 * Set the column the documents of the tables are routed by, a request for
+	 * given values of this column is sent to their shards only.
+	 */
+	public void setRoutingColumn(String routingColumn) {
+		this.routingColumn = routingColumn;
+	}
+
+
+	/**
+	 * Set how the indices are resolved, the indices of a partitioned table
+	 * which have not been written are ignored.
+	 */
+	public void setIndicesOptions(IndicesOptions indicesOptions) {
+		this.indicesOptions = indicesOptions;
+	}
+
+	public IndicesOptions getIndicesOptions() {
+		return indicesOptions;
+	}
+
+
+	/**
+	 * Routing values of the where clause.
+	 * @return null if the request goes to every shard
+	 */
+	protected String[] routing(Where where) {
+		return RoutingMaker.explan(where, routingColumn);
+	}
+
+
+	/**
+	 * Routing of a document read by a search which asked for the _routing field.
+	 * @return null if the document is routed by its id
+	 */
+	protected static String routing(SearchHit hit) {
+		SearchHitField routing = hit.field(Insert.ROUTING);
+		return routing == null ? null : String.valueOf(routing.getValue());
+	}
+
+
+	/**
+	 * Parent of a document read by a search which asked for the _parent field.
+	 * @return null if the document has no parent
+	 */
+	protected static String parent(SearchHit hit) {
+		SearchHitField parent = hit.field(Insert.PARENT);
+		return parent == null ? null : String.valueOf(parent.getValue());
+	}
+
+
 	/**
 	 * Prepare the request, and return ES request.
 	 * @return ActionRequestBuilder (ES request)
@@ -0,0 +1,415 @@
+package org.nlpcn.es4sql.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.durid.sql.ast.SQLExpr;
+import org.durid.sql.ast.SQLObject;
+import org.durid.sql.ast.expr.SQLBinaryOpExpr;
+import org.durid.sql.ast.expr.SQLBinaryOperator;
+import org.durid.sql.ast.expr.SQLIdentifierExpr;
+import org.durid.sql.ast.expr.SQLMethodInvokeExpr;
+import org.durid.sql.ast.expr.SQLPropertyExpr;
+import org.durid.sql.dialect.mysql.visitor.MySqlEvalVisitorImpl;
+import org.durid.sql.visitor.SQLEvalVisitor;
+import org.durid.sql.visitor.SQLEvalVisitorUtils;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.nlpcn.es4sql.domain.Insert;
+import org.nlpcn.es4sql.domain.Order;
+import org.nlpcn.es4sql.domain.Update;
+import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.query.maker.FilterMaker;
+
+/**
+ * Transform an Update object to a search of the documents to update, read with
+ * a scroll, and to one partial update of each document which changes. When a
+ * value is computed from the document, its update carries the version read so
+ * it fails if the document has been changed meanwhile.
+ */
+public class UpdateQueryAction extends QueryAction {
+
+	private final Update update;
+	private final boolean constant;
+	private final RowEvalVisitor visitor = new RowEvalVisitor();
+
+	public UpdateQueryAction(Client client, Update update) {
+		super(client, update);
+		this.update = update;
+
+		boolean constant = true;
+		for (Object value : update.getAssignments().values()) {
+			if (value instanceof SQLExpr) {
+				constant = false;
+			}
+		}
+		this.constant = constant;
+	}
+
+	/**
+	 * @return true if every value assigned is a literal
+	 */
+	public boolean isConstant() {
+		return constant;
+	}
+
+	/**
+	 * Search of the documents to update, the caller sets the scroll and the page size
+	 */
+	@Override
+	public SearchRequestBuilder explain() throws SqlParseException {
+		SearchRequestBuilder request = client.prepareSearch();
+		request.setListenerThreaded(false);
+		request.setIndices(query.getIndexArr());
+		String[] typeArr = query.getTypeArr();
+		if (typeArr != null) {
+			request.setTypes(typeArr);
+		}
+		if (indicesOptions != null) {
+			request.setIndicesOptions(indicesOptions);
+		}
+		String[] routing = routing(update.getWhere());
+		if (routing != null) {
+			request.setRouting(routing);
+		}
+
+		if (update.getWhere() != null) {
+			request.setQuery(QueryBuilders.filteredQuery(null, FilterMaker.explan(update.getWhere())));
+		}
+		if (update.getOrderBys().isEmpty()) {
+			// no order to keep, the shards are read without sorting
+			request.setSearchType(SearchType.SCAN);
+		} else {
+			for (Order order : update.getOrderBys()) {
+				request.addSort(order.getName(), SortOrder.valueOf(order.getType()));
+			}
+		}
+
+		request.setVersion(true);
+		request.addFields(Insert.ROUTING, Insert.PARENT);
+		if (constant) {
+			// only the columns assigned are compared
+			List<String> columns = new ArrayList<>(update.getAssignments().keySet());
+			request.setFetchSource(columns.toArray(new String[columns.size()]), null);
+		} else {
+			request.setFetchSource(true);
+		}
+		return request;
+	}
+
+	/**
+	 * Partial update of a document read by the search
+	 *
+	 * @return null if the values assigned are the ones of the document
+	 */
+	public UpdateRequest request(SearchHit hit) throws SqlParseException {
+		Map<String, Object> source = hit.getSource() == null ? new HashMap<String, Object>() : hit.getSource();
+		Map<String, Object> assigned = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> assignment : update.getAssignments().entrySet()) {
+			Object value = assignment.getValue();
+			if (value instanceof SQLExpr) {
+				value = visitor.eval((SQLExpr) value, source, assigned);
+			}
+			assigned.put(assignment.getKey(), value instanceof BigDecimal ? ((BigDecimal) value).doubleValue() : value);
+		}
+
+		boolean changed = false;
+		Map<String, Object> doc = new HashMap<>();
+		for (Map.Entry<String, Object> column : assigned.entrySet()) {
+			if (!same(get(source, column.getKey()), column.getValue())) {
+				changed = true;
+			}
+			put(doc, column.getKey(), column.getValue());
+		}
+		if (!changed) {
+			return null;
+		}
+
+		UpdateRequest request = new UpdateRequest(hit.getIndex(), hit.getType(), hit.getId()).doc(doc);
+		request.routing(routing(hit));
+		request.parent(parent(hit));
+		if (!constant) {
+			request.version(hit.getVersion());
+		}
+		return request;
+	}
+
+	/**
+	 * Values compare as MySQL does before it counts a row as changed, numbers by their value
+	 */
+	private boolean same(Object a, Object b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		if (a instanceof Number && b instanceof Number) {
+			try {
+				return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+			} catch (NumberFormatException e) {
+				// NaN or infinity
+				return a.toString().equals(b.toString());
+			}
+		}
+		return a.equals(b);
+	}
+
+	/**
+	 * Value of a column of the document, a dotted column is a field of an object
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object get(Map<String, Object> source, String column) {
+		if (source.containsKey(column)) {
+			return source.get(column);
+		}
+		int dot = column.indexOf('.');
+		if (dot < 0) {
+			return null;
+		}
+		Object object = source.get(column.substring(0, dot));
+		return object instanceof Map ? get((Map<String, Object>) object, column.substring(dot + 1)) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void put(Map<String, Object> doc, String column, Object value) {
+		int dot = column.indexOf('.');
+		if (dot < 0) {
+			doc.put(column, value);
+			return;
+		}
+
+		String name = column.substring(0, dot);
+		Object object = doc.get(name);
+		if (!(object instanceof Map)) {
+			object = new HashMap<String, Object>();
+			doc.put(name, object);
+		}
+		put((Map<String, Object>) object, column.substring(dot + 1), value);
+	}
+
+	/**
+	 * Evaluate an expression with the columns of a document. The values of the
+	 * previous evaluation are cleared from the nodes before they are visited.
+	 * NULL is handled as MySQL does, where the visitor of durid takes it as 0
+	 * or as an empty string: arithmetic, comparisons and functions of NULL are
+	 * NULL, but for IFNULL and COALESCE.
+	 */
+	static class RowEvalVisitor extends MySqlEvalVisitorImpl {
+
+		private Map<String, Object> source;
+		private Map<String, Object> assigned;
+
+		public Object eval(SQLExpr expr, Map<String, Object> source, Map<String, Object> assigned) throws SqlParseException {
+			this.source = source;
+			this.assigned = assigned;
+			expr.accept(this);
+			if (!expr.getAttributes().containsKey(SQLEvalVisitor.EVAL_VALUE)) {
+				throw new SqlParseException("can not evaluate " + expr);
+			}
+			return expr.getAttribute(SQLEvalVisitor.EVAL_VALUE);
+		}
+
+		@Override
+		public void preVisit(SQLObject x) {
+			x.getAttributes().remove(SQLEvalVisitor.EVAL_VALUE);
+		}
+
+		@Override
+		public boolean visit(SQLBinaryOpExpr x) {
+			switch (x.getOperator()) {
+			case Add:
+			case Subtract:
+			case Multiply:
+			case Divide:
+			case Modulus:
+			case GreaterThan:
+			case GreaterThanOrEqual:
+			case LessThan:
+			case LessThanOrEqual:
+				break;
+			default:
+				return super.visit(x);
+			}
+
+			x.getLeft().accept(this);
+			x.getRight().accept(this);
+			if (!evaluated(x.getLeft()) || !evaluated(x.getRight())) {
+				return false;
+			}
+			Object left = x.getLeft().getAttribute(SQLEvalVisitor.EVAL_VALUE);
+			Object right = x.getRight().getAttribute(SQLEvalVisitor.EVAL_VALUE);
+			if (left == null || right == null) {
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, null);
+				return false;
+			}
+
+			switch (x.getOperator()) {
+			case GreaterThan:
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, SQLEvalVisitorUtils.gt(left, right));
+				break;
+			case GreaterThanOrEqual:
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, SQLEvalVisitorUtils.gteq(left, right));
+				break;
+			case LessThan:
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, SQLEvalVisitorUtils.lt(left, right));
+				break;
+			case LessThanOrEqual:
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, SQLEvalVisitorUtils.lteq(left, right));
+				break;
+			default:
+				Number a = number(left);
+				Number b = number(right);
+				if (a != null && b != null) {
+					x.putAttribute(SQLEvalVisitor.EVAL_VALUE, arithmetic(x.getOperator(), a, b));
+				}
+				break;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean visit(SQLMethodInvokeExpr x) {
+			String name = x.getMethodName();
+			if ("ifnull".equalsIgnoreCase(name) || "coalesce".equalsIgnoreCase(name)) {
+				Object value = null;
+				for (SQLExpr parameter : x.getParameters()) {
+					parameter.accept(this);
+					if (!evaluated(parameter)) {
+						return false;
+					}
+					value = parameter.getAttribute(SQLEvalVisitor.EVAL_VALUE);
+					if (value != null) {
+						break;
+					}
+				}
+				x.putAttribute(SQLEvalVisitor.EVAL_VALUE, value);
+				return false;
+			}
+
+			for (SQLExpr parameter : x.getParameters()) {
+				parameter.accept(this);
+				if (evaluated(parameter) && parameter.getAttribute(SQLEvalVisitor.EVAL_VALUE) == null) {
+					x.putAttribute(SQLEvalVisitor.EVAL_VALUE, null);
+					return false;
+				}
+			}
+			return super.visit(x);
+		}
+
+		@Override
+		public boolean visit(SQLIdentifierExpr x) {
+			x.putAttribute(SQLEvalVisitor.EVAL_VALUE, column(x.getName()));
+			return false;
+		}
+
+		@Override
+		public boolean visit(SQLPropertyExpr x) {
+			x.putAttribute(SQLEvalVisitor.EVAL_VALUE, column(x.toString()));
+			return false;
+		}
+
+		private boolean evaluated(SQLExpr expr) {
+			return expr.getAttributes().containsKey(SQLEvalVisitor.EVAL_VALUE);
+		}
+
+		/**
+		 * A string is read as a number, 0 if it is not one, as MySQL does in arithmetic
+		 *
+		 * @return null if the value can not be a number
+		 */
+		private Number number(Object value) {
+			if (value instanceof Float) {
+				return ((Float) value).doubleValue();
+			} else if (value instanceof Number) {
+				return (Number) value;
+			} else if (value instanceof Boolean) {
+				return (Boolean) value ? 1 : 0;
+			} else if (value instanceof String) {
+				try {
+					return Double.valueOf(((String) value).trim());
+				} catch (NumberFormatException e) {
+					return 0d;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * A double operand makes the result a double, otherwise it is exact: an
+		 * integer, or a decimal for decimal operands and for a division, which has
+		 * 4 digits more than its dividend. A division by zero is NULL.
+		 */
+		private Object arithmetic(SQLBinaryOperator operator, Number a, Number b) {
+			if (a instanceof Double || b instanceof Double) {
+				double x = a.doubleValue();
+				double y = b.doubleValue();
+				switch (operator) {
+				case Add:
+					return x + y;
+				case Subtract:
+					return x - y;
+				case Multiply:
+					return x * y;
+				case Divide:
+					return y == 0 ? null : x / y;
+				default:
+					return y == 0 ? null : x % y;
+				}
+			}
+
+			BigDecimal x = decimal(a);
+			BigDecimal y = decimal(b);
+			BigDecimal result;
+			switch (operator) {
+			case Add:
+				result = x.add(y);
+				break;
+			case Subtract:
+				result = x.subtract(y);
+				break;
+			case Multiply:
+				result = x.multiply(y);
+				break;
+			case Divide:
+				return y.signum() == 0 ? null : x.divide(y, x.scale() + 4, RoundingMode.HALF_UP);
+			default:
+				if (y.signum() == 0) {
+					return null;
+				}
+				result = x.remainder(y);
+				break;
+			}
+			if (a instanceof BigDecimal || b instanceof BigDecimal) {
+				return result;
+			}
+			BigInteger integer = result.toBigInteger();
+			return integer.bitLength() < 64 ? (Object) integer.longValue() : integer;
+		}
+
+		private BigDecimal decimal(Number value) {
+			if (value instanceof BigDecimal) {
+				return (BigDecimal) value;
+			} else if (value instanceof BigInteger) {
+				return new BigDecimal((BigInteger) value);
+			}
+			return BigDecimal.valueOf(value.longValue());
+		}
+
+		/**
+		 * A column assigned before in the statement has its new value
+		 */
+		private Object column(String name) {
+			name = name.replace("`", "");
+			return assigned.containsKey(name) ? assigned.get(name) : get(source, name);
+		}
+	}
+}
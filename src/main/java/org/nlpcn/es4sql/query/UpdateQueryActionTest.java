@@ -0,0 +1,60 @@
+package org.nlpcn.es4sql.query;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.durid.sql.SQLUtils;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class UpdateQueryActionTest {
+	private final UpdateQueryAction.RowEvalVisitor visitor = new UpdateQueryAction.RowEvalVisitor();
+	private final Map<String, Object> source = new HashMap<String, Object>();
+
+	@Test
+	public void testNull() throws Exception {
+		source.put("c", null);
+		assertNull(eval("c + 1"));
+		assertNull(eval("missing + 1"));
+		assertNull(eval("1 - c * 2"));
+		assertNull(eval("c > 1"));
+		assertEquals(1L, eval("IFNULL(c, 0) + 1"));
+		assertEquals(2, eval("COALESCE(missing, c, 2)"));
+	}
+
+	@Test
+	public void testDecimal() throws Exception {
+		source.put("c", 41);
+		assertEquals(42L, eval("c + 1"));
+		assertEquals(new BigDecimal("2.5000"), eval("5 / 2"));
+		assertEquals(new BigDecimal("0.3333"), eval("1 / 3"));
+		assertEquals(new BigDecimal("2.5"), eval("1.5 + 1"));
+		source.put("d", 16.4d);
+		assertEquals(2.5d, eval("c / d"));
+		assertNull(eval("c / 0"));
+		assertNull(eval("c % 0"));
+		assertEquals(1L, eval("c % 2"));
+	}
+
+	@Test
+	public void testConcat() throws Exception {
+		source.put("a", "x");
+		source.put("b", null);
+		assertEquals("xy", eval("CONCAT(a, 'y')"));
+		assertNull(eval("CONCAT(a, b)"));
+		assertNull(eval("CONCAT(a, missing, 'y')"));
+	}
+
+	@Test
+	public void testAssignedBefore() throws Exception {
+		source.put("c", 1);
+		Map<String, Object> assigned = new HashMap<String, Object>();
+		assigned.put("c", null);
+		assertNull(visitor.eval(SQLUtils.toMySqlExpr("c + 1"), source, assigned));
+	}
+
+	private Object eval(String expr) throws Exception {
+		return visitor.eval(SQLUtils.toMySqlExpr(expr), source, new HashMap<String, Object>());
+	}
+}
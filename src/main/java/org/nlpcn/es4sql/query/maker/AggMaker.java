@@ -9,6 +9,7 @@ import java.util.Map;
 import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
 import org.elasticsearch.search.aggregations.ValuesSourceAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramBuilder;
@@ -23,11 +24,30 @@ import org.nlpcn.es4sql.Util;
 import org.nlpcn.es4sql.domain.Field;
 import org.nlpcn.es4sql.domain.KVValue;
 import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Where;
 import org.nlpcn.es4sql.exception.SqlParseException;
 
 public class AggMaker {
 
+	/**
+	 * terms with no more distinct values than this are counted exactly on every shard
+	 */
+	private static final long EXACT_TERMS = 10000;
+	private static final long LOW_CARDINALITY = 1024;
+	private static final int MAX_PRECISION = 40000;
+
 	private Map<String, KVValue> groupMap = new HashMap<>();
+	private Statistics statistics;
+	private long matchedDocs = -1;
+
+	/**
+	 * Use the statistics of the index to tune the aggregations
+	 * @param where where clause of the query, to estimate how many documents are aggregated
+	 */
+	public void setStatistics(Statistics statistics, Where where) {
+		this.statistics = statistics;
+		this.matchedDocs = (long) Math.ceil(statistics.getDocCount() * statistics.getSelectivity(where));
+	}
 
 	/**
 	 * 分组查的聚合函数
@@ -77,6 +97,50 @@ public class AggMaker {
 		}
 	}
 
+	/**
+	 * Choose the execution hint and shard size of a terms aggregation from the statistics.
+	 * When only a few documents match, collecting terms in a map is cheaper than
+	 * loading the global ordinals of every term. Shards return all buckets
+	 * of a field with few distinct values, so that the counts are exact.
+	 * 
+	 * @param size number of buckets asked for, 0 for all of them
+	 * @param topLevel if the aggregation is not under another bucket aggregation
+	 */
+	public void tune(TermsBuilder terms, String field, int size, boolean topLevel) {
+		long cardinality = statistics == null ? -1 : statistics.getCardinality(field);
+		if (cardinality < 0) {
+			return;
+		}
+
+		if (matchedDocs < cardinality) {
+			terms.executionHint("map");
+		} else if (topLevel && cardinality <= LOW_CARDINALITY) {
+			terms.executionHint("global_ordinals_low_cardinality");
+		} else {
+			terms.executionHint("global_ordinals");
+		}
+
+		if (size > 0 && cardinality <= EXACT_TERMS) {
+			terms.shardSize((int) Math.max(size, cardinality));
+		}
+	}
+
+	/**
+	 * A large GROUP BY over several fields is pruned to the top buckets of the
+	 * first field before the sub aggregations are collected, so that the
+	 * combinations of the buckets which are dropped anyway are never built.
+	 * 
+	 * @param size number of buckets of the first field asked for
+	 */
+	public void partition(TermsBuilder terms, String field, int size) {
+		long cardinality = statistics == null ? -1 : statistics.getCardinality(field);
+		if (size > 0 && cardinality > size * 4L) {
+			terms.collectMode(SubAggCollectionMode.BREADTH_FIRST);
+		} else if (cardinality >= 0) {
+			terms.collectMode(SubAggCollectionMode.DEPTH_FIRST);
+		}
+	}
+
 	private ValuesSourceAggregationBuilder<?> makeRangeGroup(MethodField field) throws SqlParseException {
 		switch (field.getName().toLowerCase()) {
 		case "range":
@@ -249,7 +313,8 @@ public class AggMaker {
 
 		// Cardinality is approximate DISTINCT.
 		if ("DISTINCT".equals(field.getOption())) {
-			return AggregationBuilders.cardinality(field.getAlias()).precisionThreshold(40000).field(field.getParams().get(0).value.toString());
+			String fieldName = field.getParams().get(0).value.toString();
+			return AggregationBuilders.cardinality(field.getAlias()).precisionThreshold(precision(fieldName)).field(fieldName);
 		}
 
 		String fieldName = field.getParams().get(0).value.toString();
@@ -263,6 +328,18 @@ public class AggMaker {
 		}
 	}
 
+	/**
+	 * Counts below the precision threshold are close to exact, a field known to
+	 * have few distinct values does not need the memory of the maximum threshold
+	 */
+	private int precision(String field) {
+		long cardinality = statistics == null ? -1 : statistics.getCardinality(field);
+		if (cardinality < 0 || cardinality * 2 >= MAX_PRECISION) {
+			return MAX_PRECISION;
+		}
+		return (int) Math.max(100, cardinality * 2);
+	}
+
 	/**
 	 * TOPHITS查询
 	 * 
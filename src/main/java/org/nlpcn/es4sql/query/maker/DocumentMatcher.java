@@ -0,0 +1,225 @@
+package org.nlpcn.es4sql.query.maker;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.durid.sql.ast.SQLExpr;
+import org.durid.sql.ast.expr.SQLIdentifierExpr;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.domain.Where.CONN;
+
+/**
+ * Evaluate a where clause against a document read by the proxy, the conditions
+ * are grouped as FilterMaker groups them in bool filters. A field with several
+ * values matches if one of them does. Strings compare with their case, as the
+ * terms of a not analyzed field do: a condition on an analyzed field can only
+ * be evaluated by elasticsearch.
+ */
+public class DocumentMatcher {
+
+	private DocumentMatcher() {
+	}
+
+	/**
+	 * @return false if a condition can only be evaluated by elasticsearch, a query function for example
+	 */
+	public static boolean isSupported(Where where) {
+		if (where instanceof Condition) {
+			Object value = ((Condition) where).getValue();
+			if (value instanceof Object[]) {
+				for (Object item : (Object[]) value) {
+					if (item instanceof SQLExpr) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return !(value instanceof SQLExpr) || isMissing(value);
+		}
+		for (Where sub : where.getWheres()) {
+			if (!isSupported(sub)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean matches(Where where, Map<String, Object> document) {
+		where = unwrap(where);
+		if (where instanceof Condition) {
+			return matches((Condition) where, document);
+		}
+
+		boolean must = true;
+		boolean should = false;
+		boolean hasShould = false;
+		for (Where sub : where.getWheres()) {
+			sub = unwrap(sub);
+			boolean match = matches(sub, document);
+			if (sub.getConn() == CONN.AND) {
+				must &= match;
+			} else {
+				hasShould = true;
+				should |= match;
+			}
+		}
+		return must && (!hasShould || should);
+	}
+
+	private static Where unwrap(Where where) {
+		while (!(where instanceof Condition) && where.getWheres().size() == 1) {
+			where = where.getWheres().getFirst();
+		}
+		return where;
+	}
+
+	private static boolean matches(Condition condition, Map<String, Object> document) {
+		Collection<?> values = values(get(document, condition.getName()));
+		Object value = condition.getValue();
+		switch (condition.getOpear()) {
+		case IS:
+		case EQ:
+			return value == null || isMissing(value) ? values.isEmpty() : any(condition, values);
+		case ISN:
+		case N:
+			return value == null || isMissing(value) ? !values.isEmpty() : !any(condition, values);
+		case NIN:
+		case NLIKE:
+		case NBETWEEN:
+			return !any(condition, values);
+		default:
+			return any(condition, values);
+		}
+	}
+
+	/**
+	 * @return true if one of the values of the field matches the positive form of the condition
+	 */
+	private static boolean any(Condition condition, Collection<?> values) {
+		Object value = condition.getValue();
+		for (Object field : values) {
+			switch (condition.getOpear()) {
+			case IS:
+			case ISN:
+			case EQ:
+			case N:
+				if (compare(field, value) == 0) {
+					return true;
+				}
+				break;
+			case GT:
+				if (compare(field, value) > 0) {
+					return true;
+				}
+				break;
+			case GTE:
+				if (compare(field, value) >= 0) {
+					return true;
+				}
+				break;
+			case LT:
+				if (compare(field, value) < 0) {
+					return true;
+				}
+				break;
+			case LTE:
+				if (compare(field, value) <= 0) {
+					return true;
+				}
+				break;
+			case LIKE:
+			case NLIKE:
+				if (like(String.valueOf(value)).matcher(String.valueOf(field)).matches()) {
+					return true;
+				}
+				break;
+			case IN:
+			case NIN:
+				for (Object item : (Object[]) value) {
+					if (compare(field, item) == 0) {
+						return true;
+					}
+				}
+				break;
+			case BETWEEN:
+			case NBETWEEN:
+				Object[] range = (Object[]) value;
+				if (compare(field, range[0]) >= 0 && compare(field, range[1]) <= 0) {
+					return true;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compare a value of a document with a literal, numbers by their value
+	 */
+	public static int compare(Object field, Object value) {
+		if (field == null || value == null) {
+			return field == null ? (value == null ? 0 : -1) : 1;
+		}
+		if (field instanceof Number || value instanceof Number) {
+			try {
+				return new BigDecimal(field.toString()).compareTo(new BigDecimal(value.toString()));
+			} catch (NumberFormatException e) {
+				// a string which is not a number compares as a string
+			}
+		}
+		if (field instanceof Boolean || value instanceof Boolean) {
+			return Boolean.valueOf(field.toString()).compareTo(Boolean.valueOf(value.toString()));
+		}
+		return field.toString().compareTo(value.toString());
+	}
+
+	private static Pattern like(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (char c : pattern.toCharArray()) {
+			if (c == '%') {
+				regex.append(".*");
+			} else if (c == '_') {
+				regex.append('.');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+
+	private static boolean isMissing(Object value) {
+		return value instanceof SQLIdentifierExpr && "missing".equalsIgnoreCase(((SQLIdentifierExpr) value).getName());
+	}
+
+	private static Collection<?> values(Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (value instanceof Collection) {
+			return (Collection<?>) value;
+		}
+		return Collections.singletonList(value);
+	}
+
+	/**
+	 * Value of a field of a document, a dotted name is a field of an object
+	 */
+	@SuppressWarnings("unchecked")
+	public static Object get(Map<String, Object> document, String name) {
+		if (document.containsKey(name)) {
+			return document.get(name);
+		}
+		int dot = name.indexOf('.');
+		if (dot < 0) {
+			return null;
+		}
+		Object object = document.get(name.substring(0, dot));
+		return object instanceof Map ? get((Map<String, Object>) object, name.substring(dot + 1)) : null;
+	}
+}
@@ -0,0 +1,65 @@
+package org.nlpcn.es4sql.query.maker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DocumentMatcherTest {
+	private final Map<String, Object> document = new HashMap<String, Object>();
+
+	@Before
+	public void setUp() {
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("city", "Paris");
+		document.put("name", "Alice");
+		document.put("age", 30);
+		document.put("tags", Arrays.asList("a", "b"));
+		document.put("address", address);
+	}
+
+	@Test
+	public void testCase() throws Exception {
+		assertTrue(matches("name = 'Alice'"));
+		assertFalse(matches("name = 'alice'"));
+		assertTrue(matches("name LIKE 'Al%'"));
+		assertFalse(matches("name LIKE 'al%'"));
+		assertTrue(matches("name > 'B' OR name < 'B'"));
+		assertFalse(matches("name > 'B'"));
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		assertTrue(matches("age = 30.0"));
+		assertTrue(matches("age BETWEEN 20 AND 40"));
+		assertFalse(matches("age IN (1, 2)"));
+		assertTrue(matches("age >= 30 AND age < 31"));
+	}
+
+	@Test
+	public void testValuesAndObjects() throws Exception {
+		assertTrue(matches("tags = 'b'"));
+		assertFalse(matches("tags NOT IN ('a', 'c')"));
+		assertTrue(matches("address.city = 'Paris'"));
+		assertTrue(matches("missing_field IS NULL"));
+		assertFalse(matches("name IS NULL"));
+	}
+
+	@Test
+	public void testGroups() throws Exception {
+		assertTrue(matches("age = 1 OR (name = 'Alice' AND tags = 'a')"));
+		assertFalse(matches("age = 30 AND (name = 'Bob' OR tags = 'c')"));
+	}
+
+	private boolean matches(String where) throws Exception {
+		Where parsed = new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr("select * from t where " + where)).getWhere();
+		assertTrue(DocumentMatcher.isSupported(parsed));
+		return DocumentMatcher.matches(parsed, document);
+	}
+}
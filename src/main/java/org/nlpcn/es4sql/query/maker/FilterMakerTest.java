@@ -0,0 +1,65 @@
+package org.nlpcn.es4sql.query.maker;
+
+import org.durid.sql.SQLUtils;
+import org.durid.sql.ast.expr.SQLQueryExpr;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.parse.SqlParser;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FilterMakerTest {
+	@Test
+	public void testStringsOnAnalyzedField() throws Exception {
+		// the same match_phrase semantics on both sides of the bool execution threshold
+		for (int size : new int[] {1, 63, 64, 65, 5000}) {
+			String filter = filter(strings(size), false);
+			assertFalse(filter, filter.contains("\"terms\""));
+			assertTrue(filter.contains("\"phrase\""));
+		}
+	}
+
+	@Test
+	public void testStringsOnExactField() throws Exception {
+		for (int size : new int[] {1, 63, 64, 65, 5000}) {
+			String filter = filter(strings(size), true);
+			assertTrue(filter, filter.contains("\"terms\""));
+			assertFalse(filter.contains("\"phrase\""));
+		}
+		assertTrue(filter(strings(64), true).contains("\"execution\":\"bool\""));
+		assertTrue(filter(strings(65), true).contains("\"execution\":\"plain\""));
+		assertTrue(filter(strings(5000), true).contains("\"execution\":\"fielddata\""));
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		String filter = filter("1, 2, 3", false);
+		assertTrue(filter, filter.contains("\"terms\""));
+		assertTrue(filter.contains("[1,2,3]"));
+	}
+
+	@Test
+	public void testMixed() throws Exception {
+		assertTrue(filter("1, 'a'", false).contains("\"phrase\""));
+		assertTrue(filter("1, 'a'", true).contains("\"terms\""));
+	}
+
+	private String strings(int size) {
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < size; i ++) {
+			list.append(i == 0 ? "" : ", ").append("'CA").append(i).append("'");
+		}
+		return list.toString();
+	}
+
+	private String filter(String list, boolean exact) throws Exception {
+		Select select = new SqlParser().parseSelect((SQLQueryExpr) SQLUtils.toMySqlExpr("select * from t where state in (" + list + ")"));
+		((Condition) select.getWhere().getWheres().get(0)).setExact(exact);
+		XContentBuilder builder = XContentFactory.jsonBuilder();
+		FilterMaker.explan(select.getWhere()).toXContent(builder, ToXContent.EMPTY_PARAMS);
+		return builder.string();
+	}
+}
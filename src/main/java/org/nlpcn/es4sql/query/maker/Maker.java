@@ -1,5 +1,6 @@
 package org.nlpcn.es4sql.query.maker;
 
+import java.util.Arrays;
 import java.util.Set;
 
 import org.elasticsearch.common.collect.Sets;
@@ -17,6 +18,13 @@ public abstract class Maker {
 
 	private static final Set<OPEAR> NOT_OPEAR_SET = Sets.newHashSet(OPEAR.N, OPEAR.NIN, OPEAR.ISN, OPEAR.NBETWEEN);
 
+	/** a terms filter with at most this many values is executed as a bool of term filters */
+	private static final int TERMS_BOOL = 64;
+	/** a terms filter with more values checks the field data of each document instead of looking up every term */
+	private static final int TERMS_FIELDDATA = 4096;
+	/** values per terms filter, a larger list is split under an or filter */
+	private static final int TERMS_CHUNK = 65536;
+
 	private boolean isQuery = false;
 
 	protected Maker(Boolean isQuery) {
@@ -171,6 +179,11 @@ public abstract class Maker {
 		case NIN:
 		case IN:
 			Object[] values = (Object[]) value;
+			if (isTermsList(cond, values)) {
+				FilterBuilder termsFilter = makeTerms(name, values);
+				x = isQuery ? QueryBuilders.constantScoreQuery(termsFilter) : termsFilter;
+				break;
+			}
 			MatchQueryBuilder[] matchQueries = new MatchQueryBuilder[values.length];
 			for(int i = 0; i < values.length; i++) {
 				matchQueries[i] = QueryBuilders.matchPhraseQuery(name, values[i]);
@@ -206,6 +219,51 @@ public abstract class Maker {
 		return x;
 	}
 
+	/**
+	 * Numbers, and strings on a field the mapping does not analyze, are looked up
+	 * as terms. Strings on an analyzed field keep the match_phrase semantics of
+	 * the = operator, however long the list is.
+	 */
+	private boolean isTermsList(Condition cond, Object[] values) {
+		if (values.length == 0) {
+			return false;
+		}
+		boolean numbers = true;
+		for (Object value : values) {
+			if (value instanceof String) {
+				numbers = false;
+			} else if (!(value instanceof Number)) {
+				return false;
+			}
+		}
+		return numbers || cond.isExact();
+	}
+
+	/**
+	 * A short list is executed as a bool of term filters which are cached one by
+	 * one, a long one as a single bitset, and a huge one against the field data
+	 * without caching as it is unlikely to come again.
+	 */
+	private FilterBuilder makeTerms(String name, Object[] values) {
+		if (values.length > TERMS_CHUNK) {
+			OrFilterBuilder orFilter = FilterBuilders.orFilter();
+			for (int from = 0; from < values.length; from += TERMS_CHUNK) {
+				orFilter.add(makeTerms(name, Arrays.copyOfRange(values, from, Math.min(values.length, from + TERMS_CHUNK))));
+			}
+			return orFilter;
+		}
+
+		TermsFilterBuilder termsFilter = FilterBuilders.termsFilter(name, values);
+		if (values.length <= TERMS_BOOL) {
+			termsFilter.execution("bool");
+		} else if (values.length <= TERMS_FIELDDATA) {
+			termsFilter.execution("plain");
+		} else {
+			termsFilter.execution("fielddata").cache(false);
+		}
+		return termsFilter;
+	}
+
 	private ToXContent fixNot(Condition cond, ToXContent bqb) {
 		if (NOT_OPEAR_SET.contains(cond.getOpear())) {
 			if (isQuery) {
@@ -0,0 +1,71 @@
+package org.nlpcn.es4sql.query.maker;
+
+import org.durid.sql.ast.SQLExpr;
+import org.nlpcn.es4sql.domain.Condition;
+import org.nlpcn.es4sql.domain.Condition.OPEAR;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.domain.Where.CONN;
+
+/**
+ * Routing values of a where clause on a table routed by a column. A condition
+ * column = value or column IN (values) which the bool filter of FilterMaker
+ * requires pins the shards the documents can be on.
+ */
+public class RoutingMaker {
+
+	private RoutingMaker() {
+	}
+
+	/**
+	 * @param column the column the documents are routed by, may be null
+	 * @return the routing values, null if the documents may be on any shard
+	 */
+	public static String[] explan(Where where, String column) {
+		if (where == null || column == null) {
+			return null;
+		}
+		while (!(where instanceof Condition) && where.getWheres().size() == 1) {
+			where = where.getWheres().getFirst();
+		}
+		if (where instanceof Condition) {
+			return values((Condition) where, column);
+		}
+
+		for (Where sub : where.getWheres()) {
+			// an OR condition is a should of the bool filter, it does not pin the shards
+			if (sub.getConn() != CONN.AND) {
+				continue;
+			}
+			String[] routing = explan(sub, column);
+			if (routing != null) {
+				return routing;
+			}
+		}
+		return null;
+	}
+
+	private static String[] values(Condition condition, String column) {
+		if (!column.equals(condition.getName())) {
+			return null;
+		}
+		if (condition.getOpear() == OPEAR.EQ) {
+			return literal(condition.getValue()) ? new String[] {condition.getValue().toString()} : null;
+		}
+		if (condition.getOpear() == OPEAR.IN) {
+			Object[] values = (Object[]) condition.getValue();
+			String[] routing = new String[values.length];
+			for (int i = 0; i < values.length; i++) {
+				if (!literal(values[i])) {
+					return null;
+				}
+				routing[i] = values[i].toString();
+			}
+			return routing;
+		}
+		return null;
+	}
+
+	private static boolean literal(Object value) {
+		return value != null && !(value instanceof SQLExpr);
+	}
+}
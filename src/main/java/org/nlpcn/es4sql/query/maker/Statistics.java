@@ -0,0 +1,25 @@
+package org.nlpcn.es4sql.query.maker;
+
+import org.nlpcn.es4sql.domain.Where;
+
+/**
+ * Statistics of an index collected by ANALYZE TABLE, used to choose how
+ * aggregations are executed
+ */
+public interface Statistics {
+
+	/**
+	 * @return number of documents in the index
+	 */
+	long getDocCount();
+
+	/**
+	 * @return estimated number of distinct values of the field, -1 if unknown
+	 */
+	long getCardinality(String field);
+
+	/**
+	 * @return estimated fraction of the documents matching the where clause, 1 if there is no where clause
+	 */
+	double getSelectivity(Where where);
+}